@@ -0,0 +1,158 @@
+package org.cooder.units;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+
+import org.cooder.units.quantity.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 加法、乘法、单位转换、比较，以及金额汇总
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArithmeticBenchmark {
+    private UnitNumber<Length>[] lengths;
+    private UnitNumber<?>[] prices;
+    private UnitNumber<Money>[] money;
+    private int i;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Units.init();
+        Random r = Workloads.random();
+        lengths = (UnitNumber<Length>[]) new UnitNumber<?>[Workloads.SIZE];
+        prices = new UnitNumber<?>[Workloads.SIZE];
+        for (int k = 0; k < Workloads.SIZE; k++) {
+            Unit<Length> u = r.nextBoolean() ? Units.米 : Units.厘米;
+            lengths[k] = new UnitNumber<>(Workloads.decimal(r), u);
+            prices[k] = UnitNumber.parse(Workloads.decimal(r).toPlainString() + " 元/平米");
+        }
+        money = Workloads.money();
+    }
+
+    @Benchmark
+    public UnitNumber<Length> add() {
+        int k = i++;
+        return lengths[k & Workloads.MASK].add(lengths[(k + 1) & Workloads.MASK]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UnitNumber<Length> addThreads4() {
+        int k = i++;
+        return lengths[k & Workloads.MASK].add(lengths[(k + 1) & Workloads.MASK]);
+    }
+
+    @Benchmark
+    public UnitNumber<?> multiply() {
+        int k = i++;
+        return lengths[k & Workloads.MASK].multiply(lengths[(k + 1) & Workloads.MASK]);
+    }
+
+    /**
+     * 面积乘以单价，结果为元
+     */
+    @Benchmark
+    public UnitNumber<?> multiplyComposite() {
+        int k = i++;
+        UnitNumber<Length> a = lengths[k & Workloads.MASK];
+        UnitNumber<?> area = UnitNumber.to(a.multiply(a), Units.平方米);
+        return area.multiply(prices[k & Workloads.MASK]);
+    }
+
+    /**
+     * 单价除以面积，每行的单位组合相同
+     */
+    @Benchmark
+    public UnitNumber<?> divideComposite() {
+        int k = i++;
+        return prices[k & Workloads.MASK].divide(lengths[k & Workloads.MASK]);
+    }
+
+    @Benchmark
+    public UnitNumber<?> inverse() {
+        return lengths[i++ & Workloads.MASK].inverse();
+    }
+
+    @Benchmark
+    public UnitNumber<Length> to() {
+        return lengths[i++ & Workloads.MASK].to(Units.毫米);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int k = i++;
+        return lengths[k & Workloads.MASK].compareTo(lengths[(k + 1) & Workloads.MASK]);
+    }
+
+    /**
+     * 汇总元和万元混合的金额
+     */
+    @Benchmark
+    @OperationsPerInvocation(Workloads.SIZE)
+    public UnitNumber<Money> moneyRollup() {
+        UnitNumber<Money> sum = new UnitNumber<>(0, Units.元);
+        for (UnitNumber<Money> m : money) {
+            sum = sum.add(m);
+        }
+        return sum;
+    }
+
+    /**
+     * 米和厘米混合的长度，精确求和
+     */
+    @Benchmark
+    @OperationsPerInvocation(Workloads.SIZE)
+    public UnitNumber<Length> lengthRollupExact() {
+        UnitAccumulator<Length> acc = new UnitAccumulator<>(Units.米, NumericMode.EXACT);
+        for (UnitNumber<Length> l : lengths) {
+            acc.add(l);
+        }
+        return acc.sum();
+    }
+
+    /**
+     * 米和厘米混合的长度，double补偿求和
+     */
+    @Benchmark
+    @OperationsPerInvocation(Workloads.SIZE)
+    public UnitNumber<Length> lengthRollupDouble() {
+        UnitAccumulator<Length> acc = new UnitAccumulator<>(Units.米, NumericMode.DOUBLE);
+        for (UnitNumber<Length> l : lengths) {
+            acc.add(l);
+        }
+        return acc.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.SIZE)
+    public UnitNumber<Money> moneyRollupAccumulator() {
+        UnitAccumulator<Money> acc = new UnitAccumulator<>(Units.元);
+        for (UnitNumber<Money> m : money) {
+            acc.add(m);
+        }
+        return acc.sum();
+    }
+}
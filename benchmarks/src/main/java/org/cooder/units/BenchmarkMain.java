@@ -0,0 +1,41 @@
+package org.cooder.units;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口，参数与JMH命令行相同。<br>
+ * 没有指定 -rf/-rff 时，结果以JSON格式写入 target/jmh-result-{版本号}.json，便于比较不同版本的结果。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if(cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cli);
+        if(!cli.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if(!cli.getResult().hasValue()) {
+            String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+            File dir = new File("target");
+            dir.mkdirs();
+            builder.result(new File(dir, "jmh-result-" + (version != null ? version : "dev") + ".json").getPath());
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.units.indriya.function.Calculus;
+import tech.units.indriya.spi.NumberSystem;
+
+/**
+ * BigDecimal的长运算链：米和厘米混合的长度连续相加、乘以系数、除以数量，
+ * 比较不限制小数位数和限制小数位数({@link CustomNumberSystem#getMaxScale()})时每一步的耗时
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChainBenchmark {
+    private static final int LENGTH = 256;
+
+    @Param({ "2147483647", "10" })
+    public int maxScale;
+
+    private UnitNumber<Length>[] lengths;
+    private BigDecimal[] factors;
+    private NumberSystem old;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Units.init();
+        old = Calculus.currentNumberSystem();
+        Calculus.setCurrentNumberSystem(new CustomNumberSystem(new MathContext(0, RoundingMode.HALF_EVEN), maxScale));
+
+        Random r = Workloads.random();
+        lengths = (UnitNumber<Length>[]) new UnitNumber<?>[LENGTH];
+        factors = new BigDecimal[LENGTH];
+        for (int k = 0; k < LENGTH; k++) {
+            Unit<Length> u = r.nextBoolean() ? Units.米 : Units.厘米;
+            lengths[k] = new UnitNumber<>(Workloads.decimal(r), u);
+            factors[k] = BigDecimal.valueOf(900 + r.nextInt(200), 3);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Calculus.setCurrentNumberSystem(old);
+    }
+
+    /**
+     * 每一步加一个长度，结果的小数位数随转换和相加增长
+     */
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public UnitNumber<Length> addChain() {
+        UnitNumber<Length> sum = new UnitNumber<>(BigDecimal.ZERO, Units.米);
+        for (UnitNumber<Length> l : lengths) {
+            sum = sum.add(l);
+        }
+        return sum;
+    }
+
+    /**
+     * 每一步加一个长度、乘以系数、再除以3，模拟逐级分摊的计算
+     */
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public UnitNumber<Length> mixedChain() {
+        UnitNumber<Length> x = new UnitNumber<>(BigDecimal.ONE, Units.米);
+        for (int k = 0; k < LENGTH; k++) {
+            x = x.add(lengths[k]).multiply(factors[k]).divide(3);
+        }
+        return x;
+    }
+}
@@ -0,0 +1,71 @@
+package org.cooder.units;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.measure.Quantity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.units.indriya.quantity.Quantities;
+
+/**
+ * 格式化：indriya的Quantity#toString与UnitNumberFormatter写入复用的StringBuilder
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatBenchmark {
+    private UnitNumber<?>[] numbers;
+    private Quantity<?>[] quantities;
+    private final StringBuilder sb = new StringBuilder(256);
+    private final UnitNumberFormatter scaled = UnitNumberFormatter.ofScale(2);
+    private int i;
+
+    @Setup
+    public void setup() {
+        Units.init();
+        String[] s = Workloads.mixedQuantities();
+        numbers = new UnitNumber<?>[s.length];
+        quantities = new Quantity<?>[s.length];
+        for (int k = 0; k < s.length; k++) {
+            numbers[k] = UnitNumber.parse(s[k]);
+            quantities[k] = Quantities.getQuantity(numbers[k].getValue(), numbers[k].getUnit());
+        }
+    }
+
+    @Benchmark
+    public String quantityToString() {
+        return quantities[i++ & Workloads.MASK].toString();
+    }
+
+    @Benchmark
+    public String unitNumberToString() {
+        return numbers[i++ & Workloads.MASK].toString();
+    }
+
+    @Benchmark
+    public StringBuilder formatter() {
+        sb.setLength(0);
+        return UnitNumberFormatter.DEFAULT.format(numbers[i++ & Workloads.MASK], sb);
+    }
+
+    @Benchmark
+    public StringBuilder formatterScaled() {
+        sb.setLength(0);
+        return scaled.format(numbers[i++ & Workloads.MASK], sb);
+    }
+}
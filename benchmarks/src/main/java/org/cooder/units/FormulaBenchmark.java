@@ -0,0 +1,61 @@
+package org.cooder.units;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 计价公式：逐个调用UnitNumber的乘法、加法，与编译后的UnitFormula
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormulaBenchmark {
+    private UnitNumber<?>[][] rows;
+    private double[][] values;
+    private UnitFormula formula;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Units.init();
+        formula = UnitFormula.compile("长(m) * 宽(m) * 单价(元/平米) + 人工(人天) * 日薪(元/人天)").to(Units.元);
+        Random r = Workloads.random();
+        rows = new UnitNumber<?>[Workloads.SIZE][];
+        values = new double[Workloads.SIZE][];
+        for (int k = 0; k < Workloads.SIZE; k++) {
+            double[] v = { 1 + r.nextInt(100), 1 + r.nextInt(100), Workloads.decimal(r).doubleValue(), r.nextInt(10),
+                    Workloads.decimal(r).doubleValue() };
+            values[k] = v;
+            rows[k] = new UnitNumber<?>[] { new UnitNumber<>(v[0], Units.米), new UnitNumber<>(v[1], Units.米),
+                    UnitNumber.parse(v[2] + " 元/平米"), new UnitNumber<>(v[3], Units.人天),
+                    UnitNumber.parse(v[4] + " 元/人天") };
+        }
+    }
+
+    @Benchmark
+    public UnitNumber<?> chained() {
+        UnitNumber<?>[] row = rows[i++ & Workloads.MASK];
+        return UnitNumber.add(row[0].multiply(row[1]).multiply(row[2]), row[3].multiply(row[4]));
+    }
+
+    @Benchmark
+    public double compiled() {
+        return formula.evaluate(values[i++ & Workloads.MASK]);
+    }
+}
@@ -0,0 +1,84 @@
+package org.cooder.units;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.measure.Unit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 解析数量和单位，输入混合了SKU单位、内置单位和组合单位
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+    private String[] quantities;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Units.init();
+        quantities = Workloads.mixedQuantities();
+    }
+
+    @Benchmark
+    public UnitNumber<?> parseQuantity() {
+        return UnitNumber.parse(quantities[i++ & Workloads.MASK]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UnitNumber<?> parseQuantityThreads4() {
+        return UnitNumber.parse(quantities[i++ & Workloads.MASK]);
+    }
+
+    @Benchmark
+    public Unit<?> parseUnit(UnitState s) {
+        return s.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Unit<?> parseUnitThreads4(UnitState s) {
+        return s.next();
+    }
+
+    /**
+     * 解析单位，分别测试使用和不使用缓存
+     */
+    @State(Scope.Thread)
+    public static class UnitState {
+        @Param({ "true", "false" })
+        boolean cache;
+
+        private String[] units;
+        private int i;
+
+        @Setup
+        public void setup() {
+            Units.init();
+            units = Workloads.unitStrings();
+        }
+
+        Unit<?> next() {
+            return Units.parse(units[i++ & Workloads.MASK], cache);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.cooder.units;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.measure.Unit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 按字符串和别名查找已注册的单位
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistryBenchmark {
+    private static final String[] ALIASES = new String[] {
+            "米", "厘米", "平米", "千克", "克", "元", "万元", "人天", "升",
+    };
+
+    private String[] strings;
+    private String[] names;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Units.init();
+        // getUnit按单位的字符串形式查找，nameFor按别名查找
+        strings = new String[Workloads.SIZE];
+        names = new String[Workloads.SIZE];
+        for (int k = 0; k < strings.length; k++) {
+            names[k] = k % 2 == 0 ? Workloads.SKU_UNITS[k % Workloads.SKU_UNITS.length] : ALIASES[k % ALIASES.length];
+            strings[k] = Units.nameFor(names[k]).toString();
+        }
+    }
+
+    @Benchmark
+    public Unit<?> getUnit() {
+        return Units.getUnit(strings[i++ & Workloads.MASK]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Unit<?> getUnitThreads4() {
+        return Units.getUnit(strings[i++ & Workloads.MASK]);
+    }
+
+    @Benchmark
+    public Unit<?> nameFor() {
+        return Units.nameFor(names[i++ & Workloads.MASK]);
+    }
+}
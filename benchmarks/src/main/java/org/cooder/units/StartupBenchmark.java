@@ -0,0 +1,31 @@
+package org.cooder.units;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 冷启动：在新的JVM中第一次使用单位库的耗时，包括加载indriya和注册所有内置单位。<br>
+ * 每个fork只执行一次。<br>
+ * 预算为500毫秒：单核环境中实测约300~340毫秒，其中 {@link UnitsMetrics#startupNanos()} 统计的Units类初始化约300毫秒，
+ * 大部分是indriya自身的类加载和SimpleUnitFormat的初始化。超出预算时应当先检查新增的静态初始化。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    @Benchmark
+    public UnitNumber<?> firstParse() {
+        return UnitNumber.parse("5 箱");
+    }
+}
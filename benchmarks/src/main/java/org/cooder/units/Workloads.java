@@ -0,0 +1,99 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import javax.measure.Unit;
+
+import org.cooder.units.quantity.Money;
+
+/**
+ * 基准测试使用的数据，固定随机种子，保证每次运行的数据相同
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class Workloads {
+    static final int SIZE = 1024;
+    static final int MASK = SIZE - 1;
+
+    /**
+     * 常见的SKU单位
+     */
+    static final String[] SKU_UNITS = new String[] {
+            "个", "箱", "件", "套", "桶", "瓶", "块", "张", "卷", "袋",
+    };
+
+    /**
+     * 常见的组合单位
+     */
+    static final String[] COMPOSITE_UNITS = new String[] {
+            "元/平米", "元/个", "kg/桶", "元/箱", "m/s", "元/延米", "万元/人天", "元/立方米",
+    };
+
+    /**
+     * 内置的非组合单位
+     */
+    static final String[] SIMPLE_UNITS = new String[] {
+            "米", "厘米", "平米", "千克", "克", "元", "万元", "人天", "升", "m", "kg", "cm",
+    };
+
+    private Workloads() {
+    }
+
+    static Random random() {
+        return new Random(20211101L);
+    }
+
+    /**
+     * 混合SKU单位、内置单位和组合单位的字符串，比如 "12 箱"、"3.5 元/平米"
+     */
+    static String[] mixedQuantities() {
+        Random r = random();
+        String[] ret = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            String[] units;
+            int k = r.nextInt(10);
+            if(k < 5) {
+                units = SKU_UNITS;
+            } else if(k < 8) {
+                units = SIMPLE_UNITS;
+            } else {
+                units = COMPOSITE_UNITS;
+            }
+            String value = r.nextBoolean() ? String.valueOf(r.nextInt(1000)) : decimal(r).toPlainString();
+            ret[i] = value + " " + units[r.nextInt(units.length)];
+        }
+        return ret;
+    }
+
+    /**
+     * 单位字符串，其中一半是组合单位
+     */
+    static String[] unitStrings() {
+        Random r = random();
+        String[] ret = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            String[] units = r.nextBoolean() ? COMPOSITE_UNITS : (r.nextBoolean() ? SKU_UNITS : SIMPLE_UNITS);
+            ret[i] = units[r.nextInt(units.length)];
+        }
+        return ret;
+    }
+
+    /**
+     * 以元和万元为单位的金额，约一成是万元
+     */
+    static UnitNumber<Money>[] money() {
+        Random r = random();
+        @SuppressWarnings("unchecked")
+        UnitNumber<Money>[] ret = (UnitNumber<Money>[]) new UnitNumber<?>[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            Unit<Money> u = r.nextInt(10) == 0 ? Units.万元 : Units.元;
+            ret[i] = new UnitNumber<>(decimal(r), u);
+        }
+        return ret;
+    }
+
+    static BigDecimal decimal(Random r) {
+        return BigDecimal.valueOf(r.nextInt(1000000), 2);
+    }
+}
@@ -0,0 +1,223 @@
+package org.cooder.units;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+/**
+ * 线程安全的求和器，与 {@link java.util.concurrent.atomic.LongAdder} 类似，内部分为多个单元，
+ * 不同的线程累加到不同的单元上，多个线程同时累加时几乎没有竞争；求和时再合并所有单元。<br>
+ * 每个线程从线程id的散列值开始选择单元，遇到其他线程正在使用时与LongAdder一样重新散列，换一个单元累加，
+ * 并记住新的位置，所以两个线程不会一直争用同一个单元。<br>
+ * 适合多个工作线程同时汇总人天、金额等数据。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <Q> 量的类型
+ */
+public final class ConcurrentUnitAccumulator<Q extends Quantity<Q>> {
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * 每个线程当前选择的单元的散列值，所有求和器共用
+     */
+    private static final ThreadLocal<int[]> PROBE = ThreadLocal.withInitial(() -> new int[] { initialProbe() });
+
+    private final Unit<Q> unit;
+    private final Cell<Q>[] cells;
+    private final int mask;
+
+    /**
+     * @param unit 结果的单位
+     */
+    public ConcurrentUnitAccumulator(Unit<Q> unit) {
+        this(unit, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param unit    结果的单位
+     * @param stripes 单元的个数，会调整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentUnitAccumulator(Unit<Q> unit, int stripes) {
+        int n = 1;
+        while (n < stripes && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        NumericMode mode = Units.numericMode(unit);
+        this.unit = unit;
+        this.cells = (Cell<Q>[]) new Cell<?>[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++) {
+            cells[i] = new Cell<>(unit, mode);
+        }
+    }
+
+    public Unit<Q> getUnit() {
+        return unit;
+    }
+
+    /**
+     * 累加一个量
+     *
+     * @param n 加数，单位必须可以转换为结果的单位
+     */
+    public void add(UnitNumber<Q> n) {
+        add(n.getValue(), n.getUnit());
+    }
+
+    /**
+     * 累加一个量
+     *
+     * @param value 数值
+     * @param u     单位，必须可以转换为结果的单位
+     */
+    public void add(Number value, Unit<Q> u) {
+        int[] probe = PROBE.get();
+        int h = probe[0];
+        Cell<Q> cell = cells[h & mask];
+        if(!cell.tryLock()) {
+            // 单元正在被其他线程使用，换一个单元，失败太多次时在最后一个单元上等待
+            boolean locked = false;
+            for (int i = 0; i < cells.length && !locked; i++) {
+                h = rehash(h);
+                cell = cells[h & mask];
+                locked = cell.tryLock();
+            }
+            probe[0] = h;
+            if(!locked) {
+                cell.lock();
+            }
+        }
+        try {
+            cell.add(value, u);
+        } finally {
+            cell.unlock();
+        }
+    }
+
+    /**
+     * @return 累加的个数
+     */
+    public long count() {
+        long c = 0;
+        for (Cell<Q> cell : cells) {
+            cell.lock();
+            try {
+                c += cell.count();
+            } finally {
+                cell.unlock();
+            }
+        }
+        return c;
+    }
+
+    /**
+     * 合并所有单元得到当前的和。与其他线程的累加同时进行时，结果不包含尚未完成的累加
+     *
+     * @return 当前的和，没有加数时为0
+     */
+    public UnitNumber<Q> sum() {
+        return snapshot().sum();
+    }
+
+    /**
+     * @return 合并所有单元后的求和器，与当前对象相互独立
+     */
+    public UnitAccumulator<Q> snapshot() {
+        Summation<Q> ret = new Summation<>(unit, cells[0].getNumericMode());
+        for (Cell<Q> cell : cells) {
+            cell.lock();
+            try {
+                ret.merge(cell);
+            } finally {
+                cell.unlock();
+            }
+        }
+        return new UnitAccumulator<>(ret);
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        for (Cell<Q> cell : cells) {
+            cell.lock();
+            try {
+                cell.reset();
+            } finally {
+                cell.unlock();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sum().toString();
+    }
+
+    private static int initialProbe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 与LongAdder相同的xorshift
+     */
+    private static int rehash(int h) {
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        return h;
+    }
+
+    /**
+     * 单元的锁，一个自旋锁，临界区只有一次累加。<br>
+     * 锁的状态放在这个类中，保证它在 {@link Summation} 的字段之后、{@link Cell} 的填充之前，与单元的状态在同一个缓存行上
+     */
+    private static class LockedSummation<Q extends Quantity<Q>> extends Summation<Q> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<LockedSummation> BUSY = AtomicIntegerFieldUpdater.newUpdater(LockedSummation.class, "busy");
+
+        /**
+         * 为1时已加锁
+         */
+        private volatile int busy;
+
+        LockedSummation(Unit<Q> unit, NumericMode mode) {
+            super(unit, mode);
+        }
+
+        final boolean tryLock() {
+            return busy == 0 && BUSY.compareAndSet(this, 0, 1);
+        }
+
+        final void lock() {
+            while (!tryLock()) {
+                Thread.yield();
+            }
+        }
+
+        final void unlock() {
+            busy = 0;
+        }
+    }
+
+    /**
+     * 单元，求和的状态就是单元自己的字段，加锁也在单元上。<br>
+     * HotSpot会重排同一个类的字段，但总是把父类的字段放在子类的前面，所以填充放在子类中：
+     * 对象头、{@link Summation} 的字段和锁之后是128字节的填充，连续创建的单元之间不会共享缓存行(包括相邻缓存行的预取)
+     */
+    @SuppressWarnings("unused")
+    private static final class Cell<Q extends Quantity<Q>> extends LockedSummation<Q> {
+        private long p0, p1, p2, p3, p4, p5, p6, p7;
+        private long p8, p9, pa, pb, pc, pd, pe, pf;
+
+        Cell(Unit<Q> unit, NumericMode mode) {
+            super(unit, mode);
+        }
+    }
+}
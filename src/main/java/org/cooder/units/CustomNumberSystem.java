@@ -1,21 +1,109 @@
 package org.cooder.units;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 
 import tech.units.indriya.function.DefaultNumberSystem;
 
+/**
+ * 默认的数值系统，在indriya的基础上可以限制BigDecimal的有效数字和小数位数。<br>
+ * 较长的乘除运算链中，BigDecimal的位数会不断增长，每一步都更慢。每一步的结果按 {@link #getMathContext()}
+ * 限制有效数字，按 {@link #getMaxScale()} 限制小数位数，默认都不限制，与indriya的计算结果一致。<br>
+ * 值为整数的BigDecimal(比如 3.00)仍然在每一步转换为Integer或Long，后续运算的结果(包括输出的小数位数)依赖这一点；
+ * 大部分非整数可以不分配对象直接排除，只有可能为整数的值才需要去掉末尾的0。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
 public class CustomNumberSystem extends DefaultNumberSystem {
+    /**
+     * 不限制有效数字
+     */
+    public static final int UNLIMITED_PRECISION = 0;
+
+    /**
+     * 不限制小数位数
+     */
+    public static final int UNLIMITED_SCALE = Integer.MAX_VALUE;
+
+    private static final double MAX_LONG_DOUBLE = 0x1p62;
+
+    private final MathContext mathContext;
+    private final int maxScale;
+
+    /**
+     * 不限制有效数字和小数位数
+     */
+    public CustomNumberSystem() {
+        this(new MathContext(UNLIMITED_PRECISION, RoundingMode.HALF_EVEN), UNLIMITED_SCALE);
+    }
+
+    /**
+     * @param mathContext 有效数字和舍入方式，有效数字为0表示不限制
+     * @param maxScale    最多保留的小数位数，超出时按mathContext的舍入方式舍入
+     *
+     * @throws IllegalArgumentException 如果maxScale小于0
+     */
+    public CustomNumberSystem(MathContext mathContext, int maxScale) {
+        if(maxScale < 0) {
+            throw new IllegalArgumentException("illegal maxScale: " + maxScale);
+        }
+        this.mathContext = mathContext;
+        this.maxScale = maxScale;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    public int getMaxScale() {
+        return maxScale;
+    }
 
     @Override
     public Number narrow(Number number) {
         if(number instanceof BigDecimal) {
-            final BigDecimal decimal = ((BigDecimal) number);
-            if(decimal.stripTrailingZeros().scale() <= 0) {
-                super.narrow(number);
-            } else {
-                return number;
+            BigDecimal decimal = bound((BigDecimal) number);
+            if(decimal.scale() <= 0) {
+                return super.narrow(decimal);
+            }
+            if(!mayBeIntegral(decimal)) {
+                return decimal;
+            }
+            BigDecimal stripped = decimal.stripTrailingZeros();
+            return stripped.scale() <= 0 ? super.narrow(stripped) : decimal;
+        }
+        if(number instanceof Double || number instanceof Float) {
+            // 整数值的double直接转换为long，不经过BigDecimal
+            double v = number.doubleValue();
+            if(v % 1 == 0 && v != 0 && Math.abs(v) < MAX_LONG_DOUBLE) {
+                return super.narrow((long) v);
             }
         }
         return super.narrow(number);
     }
+
+    /**
+     * 小数位数大于0的BigDecimal是否可能为整数：
+     * 为0，或者绝对值不小于1且非标度值可以被 2<sup>scale</sup> 整除(10<sup>scale</sup> 的必要条件)
+     */
+    private static boolean mayBeIntegral(BigDecimal decimal) {
+        if(decimal.signum() == 0) {
+            return true;
+        }
+        if(decimal.precision() <= decimal.scale()) {
+            return false;
+        }
+        return decimal.unscaledValue().getLowestSetBit() >= decimal.scale();
+    }
+
+    private BigDecimal bound(BigDecimal decimal) {
+        if(mathContext.getPrecision() > 0 && decimal.precision() > mathContext.getPrecision()) {
+            decimal = decimal.round(mathContext);
+        }
+        if(decimal.scale() > maxScale) {
+            decimal = decimal.setScale(maxScale, mathContext.getRoundingMode());
+        }
+        return decimal;
+    }
 }
@@ -0,0 +1,333 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import javax.measure.Unit;
+
+import org.cooder.units.quantity.Money;
+
+/**
+ * 定点数表示的金额，数值为 {@code unscaled × 10^-scale} 元。<br>
+ * 默认的scale由已注册的最小货币单位决定，比如注册了 "分" (0.01元)后为2，金额就是以分为单位的long。
+ * 加、减、乘以数量都是long运算，不创建BigDecimal；溢出时自动改用BigDecimal计算。<br>
+ * 通过 {@link #of(UnitNumber)} 和 {@link #to(Unit)} 与 {@link UnitNumber} 互相转换。
+ *
+ * <pre>
+ * FixedMoney price = FixedMoney.of(UnitNumber.parse("12.5 元").asType(Money.class));
+ * FixedMoney total = price.multiply(3).add(FixedMoney.of(2, Units.万元));
+ * UnitNumber&lt;Money&gt; n = total.to(Units.万元);
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class FixedMoney implements Comparable<FixedMoney> {
+    public static final FixedMoney ZERO = new FixedMoney(0, 0, null);
+
+    private static final int MAX_SCALE = 18;
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private static volatile MoneyScale moneyScale;
+
+    private final long unscaled;
+    private final int scale;
+
+    /**
+     * 溢出时的数值(单位为元)，不为null时unscaled和scale无效
+     */
+    private final BigDecimal big;
+
+    private FixedMoney(long unscaled, int scale, BigDecimal big) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.big = big;
+    }
+
+    /**
+     * 把金额转换为定点数
+     *
+     * @param number 金额，单位可以是元、万元或者其他注册过的货币单位
+     *
+     * @return FixedMoney实例
+     */
+    public static FixedMoney of(UnitNumber<Money> number) {
+        return of(number.getValue(), number.getUnit());
+    }
+
+    /**
+     * @param amount 数值
+     * @param unit   货币单位
+     *
+     * @return FixedMoney实例
+     */
+    public static FixedMoney of(Number amount, Unit<Money> unit) {
+        checkMoney(unit);
+        if(unit.equals(Units.元) && Numbers.isIntegral(amount)) {
+            return ofUnscaled(amount.longValue(), 0);
+        }
+        Number v = UnitConverters.of(unit, Units.元).convert(Numbers.toBigDecimal(amount));
+        return valueOf(Numbers.toBigDecimal(v));
+    }
+
+    /**
+     * 以元为单位的 {@code unscaled × 10^-scale}
+     */
+    public static FixedMoney ofUnscaled(long unscaled, int scale) {
+        if(scale < 0 || scale > MAX_SCALE) {
+            return valueOf(BigDecimal.valueOf(unscaled, scale));
+        }
+        int s = defaultScale();
+        if(scale < s) {
+            return align(unscaled, scale, s);
+        }
+        return new FixedMoney(unscaled, scale, null);
+    }
+
+    /**
+     * 以元为单位的金额
+     */
+    public static FixedMoney valueOf(BigDecimal yuan) {
+        int s = Math.max(defaultScale(), Math.max(0, yuan.stripTrailingZeros().scale()));
+        if(s <= MAX_SCALE) {
+            BigInteger unscaledValue = yuan.setScale(s).unscaledValue();
+            if(unscaledValue.bitLength() < 64) {
+                return new FixedMoney(unscaledValue.longValue(), s, null);
+            }
+        }
+        return new FixedMoney(0, 0, yuan);
+    }
+
+    /**
+     * @return 数值是否仍为long表示，溢出后为false
+     */
+    public boolean isCompact() {
+        return big == null;
+    }
+
+    /**
+     * @return 以 10^-scale 元为单位的数值
+     *
+     * @throws ArithmeticException 如果已经溢出
+     */
+    public long unscaledValue() {
+        if(big != null) {
+            throw new ArithmeticException("overflow: " + big);
+        }
+        return unscaled;
+    }
+
+    /**
+     * @return 小数位数，溢出后为BigDecimal的scale
+     */
+    public int scale() {
+        return big == null ? scale : big.scale();
+    }
+
+    public FixedMoney add(FixedMoney that) {
+        if(big == null && that.big == null) {
+            try {
+                if(scale == that.scale) {
+                    return new FixedMoney(Math.addExact(unscaled, that.unscaled), scale, null);
+                }
+                int s = Math.max(scale, that.scale);
+                return new FixedMoney(Math.addExact(rescale(unscaled, scale, s), rescale(that.unscaled, that.scale, s)), s, null);
+            } catch (ArithmeticException e) {
+                // 溢出，改用BigDecimal
+            }
+        }
+        return valueOf(toBigDecimal().add(that.toBigDecimal()));
+    }
+
+    public FixedMoney subtract(FixedMoney that) {
+        if(big == null && that.big == null) {
+            try {
+                if(scale == that.scale) {
+                    return new FixedMoney(Math.subtractExact(unscaled, that.unscaled), scale, null);
+                }
+                int s = Math.max(scale, that.scale);
+                return new FixedMoney(Math.subtractExact(rescale(unscaled, scale, s), rescale(that.unscaled, that.scale, s)), s, null);
+            } catch (ArithmeticException e) {
+                // 溢出，改用BigDecimal
+            }
+        }
+        return valueOf(toBigDecimal().subtract(that.toBigDecimal()));
+    }
+
+    /**
+     * 乘以数量，比如单价乘以件数
+     */
+    public FixedMoney multiply(long count) {
+        if(big == null) {
+            try {
+                return new FixedMoney(Math.multiplyExact(unscaled, count), scale, null);
+            } catch (ArithmeticException e) {
+                // 溢出，改用BigDecimal
+            }
+        }
+        return valueOf(toBigDecimal().multiply(BigDecimal.valueOf(count)));
+    }
+
+    public FixedMoney negate() {
+        if(big == null && unscaled != Long.MIN_VALUE) {
+            return new FixedMoney(-unscaled, scale, null);
+        }
+        return valueOf(toBigDecimal().negate());
+    }
+
+    public int signum() {
+        return big == null ? Long.signum(unscaled) : big.signum();
+    }
+
+    /**
+     * @return 以元为单位的数值
+     */
+    public BigDecimal toBigDecimal() {
+        return big == null ? BigDecimal.valueOf(unscaled, scale) : big;
+    }
+
+    /**
+     * 转换为指定货币单位的量
+     *
+     * @param unit 货币单位
+     *
+     * @return UnitNumber实例
+     */
+    public UnitNumber<Money> to(Unit<Money> unit) {
+        checkMoney(unit);
+        Number value = toBigDecimal();
+        if(!unit.equals(Units.元)) {
+            value = UnitConverters.of(Units.元, unit).convert(value);
+        }
+        return new UnitNumber<>(value, unit);
+    }
+
+    /**
+     * @return 以元为单位的量
+     */
+    public UnitNumber<Money> toUnitNumber() {
+        return to(Units.元);
+    }
+
+    @Override
+    public int compareTo(FixedMoney that) {
+        if(big == null && that.big == null) {
+            if(scale == that.scale) {
+                return Long.compare(unscaled, that.unscaled);
+            }
+            try {
+                int s = Math.max(scale, that.scale);
+                return Long.compare(rescale(unscaled, scale, s), rescale(that.unscaled, that.scale, s));
+            } catch (ArithmeticException e) {
+                // 溢出，改用BigDecimal
+            }
+        }
+        return toBigDecimal().compareTo(that.toBigDecimal());
+    }
+
+    /**
+     * 数值相等即相等，与scale无关
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if(obj instanceof FixedMoney) {
+            return compareTo((FixedMoney) obj) == 0;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        if(big == null) {
+            return hash(unscaled, scale);
+        }
+        BigDecimal d = big.stripTrailingZeros();
+        if(d.scale() >= 0 && d.unscaledValue().bitLength() < 64) {
+            return hash(d.unscaledValue().longValue(), d.scale());
+        }
+        return d.hashCode();
+    }
+
+    /**
+     * 保留scale位小数，比如 "12.50 元"
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + Units.元;
+    }
+
+    /**
+     * 已注册的货币单位中，最小单位相对于元的小数位数，比如注册了 "分" 时为2
+     */
+    static int defaultScale() {
+        Units.Snapshot snapshot = Units.snapshot();
+        MoneyScale ms = moneyScale;
+        if(ms == null || ms.snapshot != snapshot) {
+            int s = 0;
+            for (Unit<?> u : snapshot.units) {
+                if(!Units.元.equals(u.getSystemUnit()) || u.equals(Units.元)) {
+                    continue;
+                }
+                BigDecimal f = Numbers.toBigDecimal(UnitConverters.toSystemUnit(u).convert(BigDecimal.ONE)).stripTrailingZeros();
+                if(f.unscaledValue().equals(BigInteger.ONE) && f.scale() <= MAX_SCALE) {
+                    s = Math.max(s, f.scale());
+                }
+            }
+            ms = new MoneyScale(snapshot, s);
+            moneyScale = ms;
+        }
+        return ms.scale;
+    }
+
+    private static FixedMoney align(long unscaled, int scale, int target) {
+        try {
+            return new FixedMoney(rescale(unscaled, scale, target), target, null);
+        } catch (ArithmeticException e) {
+            return new FixedMoney(0, 0, BigDecimal.valueOf(unscaled, scale));
+        }
+    }
+
+    private static int hash(long unscaled, int scale) {
+        while (scale > 0 && unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        return Long.hashCode(unscaled) * 31 + scale;
+    }
+
+    private static long rescale(long unscaled, int from, int to) {
+        if(from == to) {
+            return unscaled;
+        }
+        if(to - from > MAX_SCALE) {
+            throw new ArithmeticException("overflow");
+        }
+        return Math.multiplyExact(unscaled, POW10[to - from]);
+    }
+
+    private static void checkMoney(Unit<Money> unit) {
+        if(!Units.元.equals(unit.getSystemUnit())) {
+            String msg = String.format("[%s] is not money", unit);
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    /**
+     * 根据某个注册表快照计算出的默认scale
+     */
+    private static final class MoneyScale {
+        private final Units.Snapshot snapshot;
+        private final int scale;
+
+        MoneyScale(Units.Snapshot snapshot, int scale) {
+            this.snapshot = snapshot;
+            this.scale = scale;
+        }
+    }
+}
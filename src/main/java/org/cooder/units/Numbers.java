@@ -0,0 +1,42 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import tech.units.indriya.function.RationalNumber;
+
+/**
+ * 数值类型相关的工具方法
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class Numbers {
+    private Numbers() {
+    }
+
+    /**
+     * @return 是否为long能精确表示的整数类型
+     */
+    static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    /**
+     * 转换为BigDecimal，double按照 {@link Double#toString(double)} 的十进制形式转换
+     */
+    static BigDecimal toBigDecimal(Number n) {
+        if(n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        }
+        if(n instanceof BigInteger) {
+            return new BigDecimal((BigInteger) n);
+        }
+        if(isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        if(n instanceof RationalNumber) {
+            return ((RationalNumber) n).bigDecimalValue();
+        }
+        return new BigDecimal(n.toString());
+    }
+}
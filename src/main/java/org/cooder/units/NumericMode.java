@@ -0,0 +1,23 @@
+package org.cooder.units;
+
+/**
+ * 数值的计算方式。<br>
+ * 默认所有的量都使用 {@link #EXACT}，与indriya的计算结果一致，适合金额。
+ * 长度、面积、角度等工程量更关心吞吐量，可以通过 {@link Units#setNumericMode(javax.measure.Unit, NumericMode)}
+ * 为某一类量选择 {@link #DOUBLE}，也可以只在某一次汇总中选择，比如
+ * {@link UnitAccumulator#UnitAccumulator(javax.measure.Unit, NumericMode)}。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public enum NumericMode {
+    /**
+     * 精确计算，整数、BigDecimal和有理数都不会丢失精度
+     */
+    EXACT,
+
+    /**
+     * 使用double计算，单位转换直接乘以比例系数，求和使用Kahan补偿求和。<br>
+     * 非线性的单位(比如摄氏度)以及与 {@link #EXACT} 的量之间的乘除仍然精确计算。
+     */
+    DOUBLE;
+}
@@ -0,0 +1,415 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+import javax.measure.Unit;
+
+/**
+ * 按key分组汇总量，比如编制工程量清单时按材料汇总大量的明细行。<br>
+ * 每组的量统一转换为该组的目标单位后计算个数、和、最小值、最大值和平均值，
+ * 同一组中可以混用可以互相转换的单位(比如 mm 和 m、元和万元)。
+ * 单位与目标单位不匹配的行(比如目标单位为 "个" 的组中出现了 "套")不会导致整个汇总失败，而是记录在 {@link Result#mismatches()} 中。<br>
+ * 汇总使用fork-join并行：输入按下标分段，每段独立汇总为部分结果，再按顺序合并，
+ * 所以分组的顺序(按第一次出现的顺序)和不匹配行的顺序都与顺序执行相同。
+ *
+ * <pre>
+ * QuantityAggregator&lt;Item, String&gt; agg = new QuantityAggregator&lt;&gt;(Item::getMaterial, Item::getQuantity,
+ *         material -&gt; catalog.unitOf(material));
+ * QuantityAggregator.Result&lt;Item, String&gt; r = agg.aggregate(items);
+ * for (QuantityAggregator.Group&lt;String&gt; g : r.groups().values()) {
+ *     System.out.println(g.getKey() + ": " + g.sum());
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <T> 行的类型
+ * @param <K> 分组的key
+ */
+public final class QuantityAggregator<T, K> {
+    /**
+     * 每段的最少行数，更少时不再拆分
+     */
+    private static final int MIN_SPLIT = 1024;
+
+    private final Function<? super T, ? extends K> key;
+    private final Function<? super T, ? extends UnitNumber<?>> quantity;
+    private final Function<? super K, ? extends Unit<?>> targetUnit;
+
+    /**
+     * @param key        行的分组key
+     * @param quantity   行的量
+     * @param targetUnit 每组的目标单位，返回null时该组的所有行都记为不匹配
+     */
+    public QuantityAggregator(Function<? super T, ? extends K> key, Function<? super T, ? extends UnitNumber<?>> quantity,
+            Function<? super K, ? extends Unit<?>> targetUnit) {
+        this.key = key;
+        this.quantity = quantity;
+        this.targetUnit = targetUnit;
+    }
+
+    /**
+     * 在 {@link ForkJoinPool#commonPool()} 中并行汇总
+     */
+    public Result<T, K> aggregate(List<? extends T> rows) {
+        return aggregate(rows, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在指定的线程池中并行汇总
+     */
+    public Result<T, K> aggregate(List<? extends T> rows, ForkJoinPool pool) {
+        List<? extends T> list = rows instanceof RandomAccess ? rows : new ArrayList<>(rows);
+        int threshold = Math.max(MIN_SPLIT, list.size() / (pool.getParallelism() * 4));
+        Partial<T, K> p = pool.invoke(new Task(list, 0, list.size(), threshold));
+        return p.toResult();
+    }
+
+    /**
+     * 在当前线程中汇总
+     */
+    public Result<T, K> aggregateSequential(List<? extends T> rows) {
+        Partial<T, K> p = new Partial<>();
+        int i = 0;
+        for (T row : rows) {
+            add(p, i++, row);
+        }
+        return p.toResult();
+    }
+
+    /**
+     * @return 空的部分结果，用于自行拆分数据时通过 {@link #add(Partial, long, Object)} 和 {@link Partial#merge(Partial)} 汇总
+     */
+    public Partial<T, K> newPartial() {
+        return new Partial<>();
+    }
+
+    /**
+     * 把一行汇总到部分结果中
+     *
+     * @param p     部分结果
+     * @param index 行号，用于报告不匹配的行
+     * @param row   行
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void add(Partial<T, K> p, long index, T row) {
+        K k = key.apply(row);
+        State s = p.groups.get(k);
+        if(s == null) {
+            s = new State(targetUnit.apply(k));
+            p.groups.put(k, s);
+        }
+
+        UnitNumber<?> n = quantity.apply(row);
+        String error;
+        if(n == null) {
+            error = "no quantity";
+        } else if(s.unit == null) {
+            error = String.format("[%s] has no target unit", k);
+        } else {
+            error = s.add(n);
+        }
+        if(error != null) {
+            p.mismatches.add(new Mismatch(index, row, k, n, error));
+        }
+    }
+
+    private final class Task extends RecursiveTask<Partial<T, K>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> rows;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        Task(List<? extends T> rows, int from, int to, int threshold) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Partial<T, K> compute() {
+            if(to - from <= threshold) {
+                Partial<T, K> p = new Partial<>();
+                for (int i = from; i < to; i++) {
+                    add(p, i, rows.get(i));
+                }
+                return p;
+            }
+
+            int mid = (from + to) >>> 1;
+            Task left = new Task(rows, from, mid, threshold);
+            Task right = new Task(rows, mid, to, threshold);
+            right.fork();
+            Partial<T, K> p = left.compute();
+            return p.merge(right.join());
+        }
+    }
+
+    /**
+     * 部分结果，可以与后面的部分结果合并。不是线程安全的
+     */
+    public static final class Partial<T, K> {
+        private final Map<K, State> groups = new LinkedHashMap<>();
+        private final List<Mismatch<T, K>> mismatches = new ArrayList<>();
+
+        private Partial() {
+        }
+
+        /**
+         * 合并后面的部分结果
+         *
+         * @param that 后面的部分结果，合并后不能再使用
+         *
+         * @return this
+         */
+        public Partial<T, K> merge(Partial<T, K> that) {
+            for (Map.Entry<K, State> e : that.groups.entrySet()) {
+                State s = groups.get(e.getKey());
+                if(s == null) {
+                    groups.put(e.getKey(), e.getValue());
+                } else {
+                    s.merge(e.getValue());
+                }
+            }
+            mismatches.addAll(that.mismatches);
+            return this;
+        }
+
+        /**
+         * @return 汇总结果，没有任何匹配行的组不包含在结果中
+         */
+        public Result<T, K> toResult() {
+            Map<K, Group<K>> ret = new LinkedHashMap<>(groups.size() * 2);
+            for (Map.Entry<K, State> e : groups.entrySet()) {
+                State s = e.getValue();
+                if(s.count() > 0) {
+                    ret.put(e.getKey(), new Group<>(e.getKey(), s));
+                }
+            }
+            return new Result<>(Collections.unmodifiableMap(ret), Collections.unmodifiableList(mismatches));
+        }
+    }
+
+    /**
+     * 一组的中间状态，记录目标单位的统计和已经确认不匹配的单位
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static final class State {
+        final Unit unit;
+        final UnitNumberStatistics stats;
+
+        private Unit<?> lastChecked;
+        private Map<Unit<?>, String> rejected;
+
+        State(Unit<?> unit) {
+            this.unit = unit;
+            this.stats = unit == null ? null : new UnitNumberStatistics(unit);
+        }
+
+        /**
+         * @return 不匹配的原因，匹配时返回null
+         */
+        String add(UnitNumber<?> n) {
+            Unit<?> u = n.getUnit();
+            if(u != unit && u != lastChecked) {
+                String error = check(u);
+                if(error != null) {
+                    return error;
+                }
+                lastChecked = u;
+            }
+            stats.accept(n);
+            return null;
+        }
+
+        void merge(State that) {
+            if(stats != null) {
+                stats.combine(that.stats);
+            }
+        }
+
+        long count() {
+            return stats == null ? 0 : stats.getCount();
+        }
+
+        private String check(Unit u) {
+            if(rejected == null) {
+                rejected = new HashMap<>();
+            } else {
+                String error = rejected.get(u);
+                if(error != null) {
+                    return error;
+                }
+            }
+            try {
+                UnitNumber.checkDimensionless(unit, u);
+                if(!unit.isCompatible(u)) {
+                    throw new IllegalStateException(String.format("[%s] is not [%s]", u, unit));
+                }
+                return null;
+            } catch (IllegalStateException e) {
+                rejected.put(u, e.getMessage());
+                return e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * 汇总结果
+     */
+    public static final class Result<T, K> {
+        private final Map<K, Group<K>> groups;
+        private final List<Mismatch<T, K>> mismatches;
+
+        private Result(Map<K, Group<K>> groups, List<Mismatch<T, K>> mismatches) {
+            this.groups = groups;
+            this.mismatches = mismatches;
+        }
+
+        /**
+         * @return 所有的组，按key第一次出现的顺序
+         */
+        public Map<K, Group<K>> groups() {
+            return groups;
+        }
+
+        /**
+         * @return key对应的组，没有时返回null
+         */
+        public Group<K> group(K key) {
+            return groups.get(key);
+        }
+
+        /**
+         * @return 单位不匹配而没有汇总的行，按行号排序
+         */
+        public List<Mismatch<T, K>> mismatches() {
+            return mismatches;
+        }
+    }
+
+    /**
+     * 一组的汇总结果，所有的量都以目标单位表示
+     */
+    public static final class Group<K> {
+        private final K key;
+        private final Unit<?> unit;
+        private final long count;
+        private final UnitNumber<?> sum;
+        private final UnitNumber<?> min;
+        private final UnitNumber<?> max;
+
+        private Group(K key, State s) {
+            this.key = key;
+            this.unit = s.unit;
+            this.count = s.stats.getCount();
+            this.sum = s.stats.getSum();
+            this.min = s.stats.getMin();
+            this.max = s.stats.getMax();
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return 目标单位
+         */
+        public Unit<?> getUnit() {
+            return unit;
+        }
+
+        /**
+         * @return 汇总的行数，不包括不匹配的行
+         */
+        public long count() {
+            return count;
+        }
+
+        public UnitNumber<?> sum() {
+            return sum;
+        }
+
+        public UnitNumber<?> min() {
+            return min;
+        }
+
+        public UnitNumber<?> max() {
+            return max;
+        }
+
+        /**
+         * @return 平均值，即 sum ÷ count
+         */
+        public UnitNumber<?> average() {
+            return sum.divide(count);
+        }
+
+        @Override
+        public String toString() {
+            return key + ": count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max;
+        }
+    }
+
+    /**
+     * 单位不匹配的行
+     */
+    public static final class Mismatch<T, K> {
+        private final long index;
+        private final T row;
+        private final K key;
+        private final UnitNumber<?> quantity;
+        private final String message;
+
+        private Mismatch(long index, T row, K key, UnitNumber<?> quantity, String message) {
+            this.index = index;
+            this.row = row;
+            this.key = key;
+            this.quantity = quantity;
+            this.message = message;
+        }
+
+        /**
+         * @return 行号，从0开始
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        public T getRow() {
+            return row;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return 行的量，可能为null
+         */
+        public UnitNumber<?> getQuantity() {
+            return quantity;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + " " + key + ": " + quantity + ", " + message;
+        }
+    }
+}
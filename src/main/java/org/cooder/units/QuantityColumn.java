@@ -0,0 +1,303 @@
+package org.cooder.units;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.AbstractConverter;
+
+/**
+ * 一列单位相同的量，数值保存在 {@code double[]} 中，只保存一个单位。<br>
+ * 适合大批量数据的计算：单位转换、加减、乘以系数、求和、最大最小值都直接在数组上进行，
+ * 整列只查找一次单位转换器，不为每个元素创建 {@link UnitNumber}。<br>
+ * 与 {@link UnitNumber} 一样，QuantityColumn是不可变的，计算结果是新的实例。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <Q> 量的类型
+ */
+public final class QuantityColumn<Q extends Quantity<Q>> {
+    private final double[] values;
+    private final Unit<Q> unit;
+
+    /**
+     * @param values 数值，会复制一份
+     * @param unit   单位
+     */
+    public QuantityColumn(double[] values, Unit<Q> unit) {
+        this(unit, values.clone());
+    }
+
+    /**
+     * 直接使用数组，不复制
+     */
+    private QuantityColumn(Unit<Q> unit, double[] values) {
+        if(unit == null) {
+            throw new IllegalArgumentException("unit is null");
+        }
+        this.values = values;
+        this.unit = unit;
+    }
+
+    /**
+     * 把一组量转换为指定的单位后组成一列
+     *
+     * @param numbers 量
+     * @param unit    列的单位
+     *
+     * @return QuantityColumn实例
+     */
+    public static <Q extends Quantity<Q>> QuantityColumn<Q> of(List<UnitNumber<Q>> numbers, Unit<Q> unit) {
+        double[] values = new double[numbers.size()];
+        Unit<Q> last = unit;
+        UnitConverter c = AbstractConverter.IDENTITY;
+        int i = 0;
+        for (UnitNumber<Q> n : numbers) {
+            Unit<Q> u = n.getUnit();
+            if(u != last) {
+                UnitNumber.checkDimensionless(u, unit);
+                c = UnitConverters.of(u, unit);
+                last = u;
+            }
+            values[i++] = c.convert(n.getValue().doubleValue());
+        }
+        return new QuantityColumn<>(unit, values);
+    }
+
+    /**
+     * 一组量组成一列，列的单位为第一个量的单位
+     *
+     * @param numbers 量，不能为空
+     *
+     * @return QuantityColumn实例
+     */
+    public static <Q extends Quantity<Q>> QuantityColumn<Q> of(List<UnitNumber<Q>> numbers) {
+        if(numbers.isEmpty()) {
+            throw new IllegalArgumentException("numbers is empty");
+        }
+        return of(numbers, numbers.get(0).getUnit());
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Unit<Q> getUnit() {
+        return unit;
+    }
+
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    public UnitNumber<Q> get(int index) {
+        return new UnitNumber<>(values[index], unit);
+    }
+
+    /**
+     * @return 数值的副本
+     */
+    public double[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * @return 只读的列表，元素在访问时创建
+     */
+    public List<UnitNumber<Q>> toList() {
+        return new AbstractList<UnitNumber<Q>>() {
+            @Override
+            public UnitNumber<Q> get(int index) {
+                return QuantityColumn.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    /**
+     * @return 元素在访问时创建的流，按数组下标拆分，适合并行流，比如与 {@link UnitCollectors} 一起使用
+     */
+    public Stream<UnitNumber<Q>> stream() {
+        return Arrays.stream(values).mapToObj(v -> new UnitNumber<>(v, unit));
+    }
+
+    /**
+     * 整列进行单位转换。线性的转换(绝大多数单位)先求出比例系数，再对数组逐个相乘
+     *
+     * @param unit 转换后的单位
+     *
+     * @return 单位转换后的列
+     */
+    public QuantityColumn<Q> to(Unit<Q> unit) {
+        UnitNumber.checkDimensionless(this.unit, unit);
+        if(unit.equals(this.unit)) {
+            return this;
+        }
+        return new QuantityColumn<>(unit, convert(values, UnitConverters.of(this.unit, unit)));
+    }
+
+    /**
+     * 逐个元素相加，addend会先转换为当前列的单位
+     *
+     * @param addend 加量，长度必须与当前列相同
+     *
+     * @return this + addend
+     */
+    public QuantityColumn<Q> add(QuantityColumn<Q> addend) {
+        return addition(addend, 1);
+    }
+
+    /**
+     * 逐个元素相减，subtrahend会先转换为当前列的单位
+     *
+     * @param subtrahend 减数，长度必须与当前列相同
+     *
+     * @return this - subtrahend
+     */
+    public QuantityColumn<Q> subtract(QuantityColumn<Q> subtrahend) {
+        return addition(subtrahend, -1);
+    }
+
+    /**
+     * 每个元素乘以相同的数值，单位不会变化。
+     * 与 {@link UnitNumber#multiply(Number)} 一致，非线性的单位(比如摄氏度)在国际标准单位下相乘
+     *
+     * @param multiplicand 乘数
+     *
+     * @return this × multiplicand
+     */
+    public QuantityColumn<Q> multiply(Number multiplicand) {
+        double m = multiplicand.doubleValue();
+        double[] res = new double[values.length];
+        UnitConverter toSystem = UnitConverters.toSystemUnit(unit);
+        if(toSystem.isLinear()) {
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i] * m;
+            }
+            return new QuantityColumn<>(unit, res);
+        }
+
+        UnitConverter fromSystem = UnitConverters.fromSystemUnit(unit);
+        for (int i = 0; i < res.length; i++) {
+            res[i] = fromSystem.convert(toSystem.convert(values[i]) * m);
+        }
+        return new QuantityColumn<>(unit, res);
+    }
+
+    /**
+     * 求和，数值在double中逐个累加，非线性的单位(比如摄氏度)与 {@link UnitNumber#add(UnitNumber)} 一样在国际标准单位下累加。
+     * double的舍入误差随元素个数累积，需要精确的和时使用 {@link UnitAccumulator}。<br>
+     * 空列的和为当前单位的0
+     *
+     * @return 当前单位的和
+     */
+    public UnitNumber<Q> sum() {
+        if(values.length == 0) {
+            return new UnitNumber<>(0.0, unit);
+        }
+        UnitConverter toSystem = UnitConverters.toSystemUnit(unit);
+        if(toSystem.isLinear()) {
+            double s = 0;
+            for (double v : values) {
+                s += v;
+            }
+            return new UnitNumber<>(s, unit);
+        }
+
+        // 非线性的单位(比如摄氏度)，在国际标准单位下求和
+        double s = 0;
+        for (double v : values) {
+            s += toSystem.convert(v);
+        }
+        return new UnitNumber<>(UnitConverters.fromSystemUnit(unit).convert(s), unit);
+    }
+
+    /**
+     * @return 最小值
+     *
+     * @throws IllegalStateException 如果列为空
+     */
+    public UnitNumber<Q> min() {
+        checkNotEmpty();
+        double m = values[0];
+        for (int i = 1; i < values.length; i++) {
+            m = Math.min(m, values[i]);
+        }
+        return new UnitNumber<>(m, unit);
+    }
+
+    /**
+     * @return 最大值
+     *
+     * @throws IllegalStateException 如果列为空
+     */
+    public UnitNumber<Q> max() {
+        checkNotEmpty();
+        double m = values[0];
+        for (int i = 1; i < values.length; i++) {
+            m = Math.max(m, values[i]);
+        }
+        return new UnitNumber<>(m, unit);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values) + " " + unit;
+    }
+
+    private QuantityColumn<Q> addition(QuantityColumn<Q> that, int sign) {
+        if(that.values.length != values.length) {
+            String msg = String.format("size not match: %d, %d", values.length, that.values.length);
+            throw new IllegalArgumentException(msg);
+        }
+        UnitNumber.checkDimensionless(unit, that.unit);
+
+        double[] res = new double[values.length];
+        UnitConverter toSystem = UnitConverters.toSystemUnit(unit);
+        if(toSystem.isLinear()) {
+            double[] other = that.unit.equals(unit) ? that.values : convert(that.values, UnitConverters.of(that.unit, unit));
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i] + sign * other[i];
+            }
+            return new QuantityColumn<>(unit, res);
+        }
+
+        // 与UnitNumber的加减法一致，非线性的单位在国际标准单位下计算
+        UnitConverter thatToSystem = UnitConverters.toSystemUnitOf(that.unit, unit);
+        UnitConverter fromSystem = UnitConverters.fromSystemUnit(unit);
+        for (int i = 0; i < res.length; i++) {
+            res[i] = fromSystem.convert(toSystem.convert(values[i]) + sign * thatToSystem.convert(that.values[i]));
+        }
+        return new QuantityColumn<>(unit, res);
+    }
+
+    private static double[] convert(double[] values, UnitConverter c) {
+        double[] res = new double[values.length];
+        if(c.isLinear()) {
+            double factor = c.convert(1.0);
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i] * factor;
+            }
+        } else {
+            for (int i = 0; i < res.length; i++) {
+                res[i] = c.convert(values[i]);
+            }
+        }
+        return res;
+    }
+
+    private void checkNotEmpty() {
+        if(values.length == 0) {
+            throw new IllegalStateException("column is empty");
+        }
+    }
+}
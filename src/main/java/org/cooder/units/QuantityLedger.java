@@ -0,0 +1,489 @@
+package org.cooder.units;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+import tech.units.indriya.function.Calculus;
+
+/**
+ * 只追加的台账，按 (key, 单位, 数值) 记录大量的量，数据保存在内存映射文件或者直接内存中，不占用堆。<br>
+ * 每条记录固定32字节：key(8)、单位ID(4)、scale(4)、非标度值(8)、CRC32(4)、标记(4)，
+ * 数值为 {@code 非标度值 × 10^-scale}，所以非标度值必须在long的范围内。
+ * 单位ID来自 {@link UnitDictionary}，不在字典中的单位不能写入。<br>
+ * 文件由64字节的文件头和按块映射的记录组成，文件头保存字典的指纹和 {@link #force()} 时已经落盘的记录数。
+ * 重新打开时从已落盘的位置向后校验CRC，遇到第一条不完整的记录为止，之后的内容清零，
+ * 这样进程崩溃后最多丢失最后一次 {@link #force()} 之后的记录，不会读到写了一半的记录。<br>
+ * 追加是同步的，读取可以与追加并发进行；读取只能看到调用时已经追加完成的记录。
+ *
+ * <pre>
+ * try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin())) {
+ *     ledger.append(projectId, UnitNumber.parse("8 人时"));
+ *     UnitNumber&lt;Time&gt; hours = ledger.total(projectId, Units.人天);
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class QuantityLedger implements Closeable {
+    static final int RECORD_SIZE = 32;
+    static final int HEADER_SIZE = 64;
+
+    private static final int MAGIC = 0x434C4447; // "CLDG"
+    private static final int VERSION = 1;
+    private static final int RECORD_MAGIC = 0x5245434F; // "RECO"
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_DICT_SIZE = 12;
+    private static final int H_DICT_FINGERPRINT = 16;
+    private static final int H_COMMITTED = 24;
+
+    private static final int R_KEY = 0;
+    private static final int R_UNIT = 8;
+    private static final int R_SCALE = 12;
+    private static final int R_UNSCALED = 16;
+    private static final int R_CRC = 24;
+    private static final int R_MAGIC = 28;
+
+    /**
+     * 默认每块映射 1M 条记录(32MB)
+     */
+    private static final int DEFAULT_CHUNK_RECORDS = 1 << 20;
+
+    private final UnitDictionary dictionary;
+    private final FileChannel channel;
+    private final ByteBuffer header;
+    private final int chunkRecords;
+    private final List<ByteBuffer> chunks = new CopyOnWriteArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    private volatile long size;
+
+    private QuantityLedger(UnitDictionary dictionary, FileChannel channel, int chunkRecords) throws IOException {
+        this.dictionary = dictionary;
+        this.channel = channel;
+        this.chunkRecords = chunkRecords;
+        this.header = channel == null ? ByteBuffer.allocateDirect(HEADER_SIZE)
+                : channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    }
+
+    /**
+     * 打开或者创建台账文件，已有的文件会进行崩溃恢复
+     *
+     * @param path       文件路径
+     * @param dictionary 单位字典，必须与写入时使用的字典相同，或者是它的 {@link UnitDictionary#extend(java.util.Collection) 扩展}
+     *
+     * @throws IllegalStateException 如果文件不是台账文件，或者字典不匹配
+     */
+    public static QuantityLedger open(Path path, UnitDictionary dictionary) throws IOException {
+        return open(path, dictionary, DEFAULT_CHUNK_RECORDS);
+    }
+
+    static QuantityLedger open(Path path, UnitDictionary dictionary, int chunkRecords) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean exists = channel.size() > 0;
+            QuantityLedger ledger = new QuantityLedger(dictionary, channel, chunkRecords);
+            if(exists) {
+                ledger.recover(channel.size());
+            } else {
+                ledger.writeHeader();
+                ledger.header.putLong(H_COMMITTED, 0);
+            }
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 创建使用直接内存的台账，不写文件，适合临时的大批量统计
+     */
+    public static QuantityLedger direct(UnitDictionary dictionary) {
+        try {
+            QuantityLedger ledger = new QuantityLedger(dictionary, null, DEFAULT_CHUNK_RECORDS);
+            ledger.writeHeader();
+            return ledger;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public UnitDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return 记录数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param key 记录的key，比如项目ID
+     * @param n   量，单位必须在字典中
+     *
+     * @return 记录的下标
+     *
+     * @throws IllegalArgumentException 如果单位不在字典中，或者数值超出范围
+     */
+    public long append(long key, UnitNumber<?> n) throws IOException {
+        int unitId = dictionary.id(n.getUnit());
+        if(unitId < 0) {
+            throw new IllegalArgumentException(String.format("[%s] not in dictionary", n.getUnit()));
+        }
+        BigDecimal d = Numbers.toBigDecimal(n.getValue());
+        if(d.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException(String.format("[%s] out of range", n.getValue()));
+        }
+
+        synchronized (this) {
+            long index = size;
+            ByteBuffer chunk = chunkFor(index);
+            int off = offsetOf(index);
+            chunk.putLong(off + R_KEY, key);
+            chunk.putInt(off + R_UNIT, unitId);
+            chunk.putInt(off + R_SCALE, d.scale());
+            chunk.putLong(off + R_UNSCALED, d.unscaledValue().longValue());
+            chunk.putInt(off + R_CRC, checksum(chunk, off));
+            chunk.putInt(off + R_MAGIC, RECORD_MAGIC);
+            size = index + 1;
+            return index;
+        }
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException 如果下标超出范围
+     */
+    public long key(long index) {
+        checkIndex(index);
+        return chunks.get(chunkIndex(index)).getLong(offsetOf(index) + R_KEY);
+    }
+
+    /**
+     * 读取一条记录的量。数值按十进制保存，读出的数值类型与写入时可能不同，但数值相等
+     *
+     * @throws IndexOutOfBoundsException 如果下标超出范围
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public UnitNumber<?> get(long index) {
+        checkIndex(index);
+        ByteBuffer chunk = chunks.get(chunkIndex(index));
+        int off = offsetOf(index);
+        Unit unit = dictionary.unit(chunk.getInt(off + R_UNIT));
+        BigDecimal d = BigDecimal.valueOf(chunk.getLong(off + R_UNSCALED), chunk.getInt(off + R_SCALE));
+        return new UnitNumber(Calculus.currentNumberSystem().narrow(d), unit);
+    }
+
+    /**
+     * @return 当前所有记录的量组成的流，按下标拆分，适合并行流，比如与 {@link UnitCollectors} 一起使用。
+     *         流创建之后追加的记录不包含在流中
+     */
+    public Stream<UnitNumber<?>> stream() {
+        return LongStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * 顺序读取从from开始的所有记录，不为记录创建对象
+     */
+    public void scan(long from, Visitor visitor) {
+        long end = size;
+        if(from < 0 || from > end) {
+            throw new IndexOutOfBoundsException("index: " + from + ", size: " + end);
+        }
+        for (long i = from; i < end; i++) {
+            ByteBuffer chunk = chunks.get(chunkIndex(i));
+            int off = offsetOf(i);
+            visitor.visit(i, chunk.getLong(off + R_KEY), dictionary.unit(chunk.getInt(off + R_UNIT)),
+                    chunk.getLong(off + R_UNSCALED), chunk.getInt(off + R_SCALE));
+        }
+    }
+
+    private void scanAll(RecordVisitor visitor) {
+        long end = size;
+        for (long i = 0; i < end; i++) {
+            ByteBuffer chunk = chunks.get(chunkIndex(i));
+            int off = offsetOf(i);
+            visitor.visit(chunk.getLong(off + R_KEY), chunk.getInt(off + R_UNIT), chunk.getLong(off + R_UNSCALED),
+                    chunk.getInt(off + R_SCALE));
+        }
+    }
+
+    /**
+     * 求一个key下所有记录的和。<br>
+     * 只统计与unit量纲相同的记录，所以同一个key下可以同时记录工时和费用，分别求和。
+     * 求和直接在映射的数据上进行，每种单位只转换一次。
+     *
+     * @param key  记录的key
+     * @param unit 结果的单位
+     *
+     * @return 和，没有记录时为0
+     */
+    public <Q extends Quantity<Q>> UnitNumber<Q> total(long key, Unit<Q> unit) {
+        boolean[] compatible = compatibleUnits(unit);
+        Totals t = new Totals();
+        scanAll((k, id, unscaled, scale) -> {
+            if(k == key && compatible[id]) {
+                t.add(id, unscaled, scale);
+            }
+        });
+        return t.sum(unit);
+    }
+
+    /**
+     * 求每个key下所有记录的和，只统计与unit量纲相同的记录
+     *
+     * @param unit 结果的单位
+     *
+     * @return key到和的映射
+     */
+    public <Q extends Quantity<Q>> Map<Long, UnitNumber<Q>> totals(Unit<Q> unit) {
+        boolean[] compatible = compatibleUnits(unit);
+        Map<Long, Totals> map = new HashMap<>();
+        scanAll((k, id, unscaled, scale) -> {
+            if(compatible[id]) {
+                map.computeIfAbsent(k, x -> new Totals()).add(id, unscaled, scale);
+            }
+        });
+
+        Map<Long, UnitNumber<Q>> ret = new HashMap<>(map.size() * 2);
+        for (Map.Entry<Long, Totals> e : map.entrySet()) {
+            ret.put(e.getKey(), e.getValue().sum(unit));
+        }
+        return ret;
+    }
+
+    /**
+     * 把已追加的记录写入磁盘，然后在文件头中记录落盘的位置。直接内存的台账不做任何事情
+     */
+    public synchronized void force() {
+        if(channel == null) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            ((MappedByteBuffer) chunk).force();
+        }
+        header.putLong(H_COMMITTED, size);
+        ((MappedByteBuffer) header).force();
+    }
+
+    /**
+     * 落盘并关闭文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(channel != null && channel.isOpen()) {
+            force();
+            channel.close();
+        }
+    }
+
+    /**
+     * @return 字典中每个单位是否可以汇总为unit：可以互相转换，并且无量纲的单位(比如 "元" 和 "个")必须是同一类
+     */
+    private boolean[] compatibleUnits(Unit<?> unit) {
+        boolean[] ret = new boolean[dictionary.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = isSameKind(unit, dictionary.unit(i));
+        }
+        return ret;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static boolean isSameKind(Unit unit, Unit that) {
+        if(!unit.isCompatible(that)) {
+            return false;
+        }
+        try {
+            UnitNumber.checkDimensionless(unit, that);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        header.putInt(H_DICT_SIZE, dictionary.size());
+        header.putInt(H_DICT_FINGERPRINT, dictionary.fingerprint());
+    }
+
+    private void recover(long fileSize) throws IOException {
+        if(fileSize < HEADER_SIZE || header.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalStateException("not a ledger file");
+        }
+        if(header.getInt(H_VERSION) != VERSION || header.getInt(H_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IllegalStateException("unsupported ledger version: " + header.getInt(H_VERSION));
+        }
+        // 字典只追加，写入时使用的字典必须是当前字典的前缀
+        int dictSize = header.getInt(H_DICT_SIZE);
+        if(dictSize > dictionary.size()
+                || dictionary.strings().subList(0, dictSize).hashCode() != header.getInt(H_DICT_FINGERPRINT)) {
+            throw new IllegalStateException("unit dictionary mismatch");
+        }
+
+        long committed = header.getLong(H_COMMITTED);
+        long capacity = (fileSize - HEADER_SIZE) / RECORD_SIZE;
+        if(committed < 0 || committed > capacity) {
+            throw new IllegalStateException("corrupted ledger header, committed: " + committed);
+        }
+
+        long n = committed;
+        while (n < capacity && isValid(n)) {
+            n++;
+        }
+        // 清除不完整的记录和之后的内容，避免以后被当作有效记录
+        for (long i = n; i < capacity; i++) {
+            ByteBuffer chunk = chunkFor(i);
+            int off = offsetOf(i);
+            if(chunk.getLong(off + R_CRC) != 0) {
+                chunk.putLong(off + R_CRC, 0);
+            }
+        }
+        size = n;
+        writeHeader();
+        header.putLong(H_COMMITTED, n);
+    }
+
+    private boolean isValid(long index) throws IOException {
+        ByteBuffer chunk = chunkFor(index);
+        int off = offsetOf(index);
+        return chunk.getInt(off + R_MAGIC) == RECORD_MAGIC && chunk.getInt(off + R_CRC) == checksum(chunk, off);
+    }
+
+    private int checksum(ByteBuffer chunk, int off) {
+        ByteBuffer b = chunk.duplicate();
+        b.limit(off + R_CRC).position(off);
+        crc.reset();
+        crc.update(b);
+        return (int) crc.getValue();
+    }
+
+    private ByteBuffer chunkFor(long index) throws IOException {
+        int c = chunkIndex(index);
+        while (chunks.size() <= c) {
+            long bytes = (long) chunkRecords * RECORD_SIZE;
+            if(channel == null) {
+                chunks.add(ByteBuffer.allocateDirect((int) bytes));
+            } else {
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + chunks.size() * bytes, bytes));
+            }
+        }
+        return chunks.get(c);
+    }
+
+    private int chunkIndex(long index) {
+        return (int) (index / chunkRecords);
+    }
+
+    private int offsetOf(long index) {
+        return (int) (index % chunkRecords) * RECORD_SIZE;
+    }
+
+    private void checkIndex(long index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * 记录的访问者，数值为 {@code unscaled × 10^-scale}
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long index, long key, Unit<?> unit, long unscaled, int scale);
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(long key, int unitId, long unscaled, int scale);
+    }
+
+    /**
+     * 按单位ID分别累加非标度值，最后每种单位只转换一次
+     */
+    private final class Totals {
+        private final long[] sums = new long[dictionary.size()];
+        private final int[] scales = new int[dictionary.size()];
+        private final boolean[] used = new boolean[dictionary.size()];
+        private BigDecimal[] overflow;
+
+        void add(int id, long unscaled, int scale) {
+            if(!used[id]) {
+                used[id] = true;
+                sums[id] = unscaled;
+                scales[id] = scale;
+                return;
+            }
+            try {
+                int s = scales[id];
+                if(scale > s) {
+                    sums[id] = Math.multiplyExact(sums[id], pow10(scale - s));
+                    scales[id] = s = scale;
+                }
+                long v = scale < s ? Math.multiplyExact(unscaled, pow10(s - scale)) : unscaled;
+                sums[id] = Math.addExact(sums[id], v);
+            } catch (ArithmeticException e) {
+                addOverflow(id, BigDecimal.valueOf(unscaled, scale));
+            }
+        }
+
+        <Q extends Quantity<Q>> UnitNumber<Q> sum(Unit<Q> unit) {
+            UnitAccumulator<Q> acc = new UnitAccumulator<>(unit);
+            for (int id = 0; id < used.length; id++) {
+                if(used[id]) {
+                    @SuppressWarnings("unchecked")
+                    Unit<Q> u = (Unit<Q>) dictionary.unit(id);
+                    BigDecimal d = BigDecimal.valueOf(sums[id], scales[id]);
+                    if(overflow != null && overflow[id] != null) {
+                        d = d.add(overflow[id]);
+                    }
+                    acc.add(Calculus.currentNumberSystem().narrow(d), u);
+                }
+            }
+            return acc.sum();
+        }
+
+        private void addOverflow(int id, BigDecimal d) {
+            if(overflow == null) {
+                overflow = new BigDecimal[used.length];
+            }
+            overflow[id] = overflow[id] == null ? d : overflow[id].add(d);
+        }
+
+        private long pow10(int n) {
+            if(n > 18) {
+                throw new ArithmeticException("overflow");
+            }
+            long p = 1;
+            for (int i = 0; i < n; i++) {
+                p *= 10;
+            }
+            return p;
+        }
+    }
+}
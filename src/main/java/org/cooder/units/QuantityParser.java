@@ -0,0 +1,578 @@
+package org.cooder.units;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.format.MeasurementParseException;
+
+import tech.units.indriya.AbstractUnit;
+import tech.units.indriya.format.NumberDelimiterQuantityFormat;
+import tech.units.indriya.format.SimpleQuantityFormat;
+import tech.units.indriya.format.SimpleUnitFormat;
+import tech.units.indriya.quantity.MixedQuantity;
+import tech.units.indriya.quantity.Quantities;
+
+/**
+ * 量和单位的解析器。<br>
+ * 直接扫描字符，把数值读成long或double，通过字典树查找单位的符号和别名(包括通过 {@link Units#addUnit(Unit, String)}、
+ * {@link Units#addSkuUnit(String, String)} 注册的中文名)，支持组合单位，比如 "kg/桶"，也支持混合单位的量，比如 "1 m 70 cm"。<br>
+ * 解析规则与indriya的 {@link SimpleQuantityFormat} 和 {@link SimpleUnitFormat} 保持一致，遇到不常见的写法(分数、千分位、科学计数法等)时，
+ * 交给indriya解析，保证结果相同。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class QuantityParser {
+    private static final char MIDDLE_DOT = '·';
+
+    /**
+     * indriya内置的、不能作为单个标识符解析的单位名，只在整体匹配时使用
+     */
+    private static final String[] WHOLE_LABELS = { "km/h", "m2", "m3" };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POW10 = new double[23];
+    private static final long[] LONG_POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        LONG_POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+        for (int i = 1; i < LONG_POW10.length; i++) {
+            LONG_POW10[i] = LONG_POW10[i - 1] * 10;
+        }
+    }
+
+    /**
+     * 当前Locale的数字格式与 "-12.5" 的写法一致时，才直接读取数值
+     */
+    private static final boolean PLAIN_NUMBERS = isPlainNumberFormat(NumberFormat.getInstance());
+
+    private static volatile Lexicon lexicon;
+
+    private QuantityParser() {
+    }
+
+    /**
+     * 从字符串里解析出量，结果与 {@link UnitNumber#parse(CharSequence)} 相同
+     *
+     * @param cs 字符串，比如 "12.5 平米"、"1 m 70 cm"
+     *
+     * @return 解析出来的UnitNumber实例
+     *
+     * @throws MeasurementParseException 如果无法解析
+     */
+    public static UnitNumber<?> parse(CharSequence cs) {
+        return parse(cs, 0, cs.length());
+    }
+
+    /**
+     * 从字符串的指定区间 [start, end) 里解析出量
+     *
+     * @param cs    字符串
+     * @param start 起始位置
+     * @param end   结束位置(不包含)
+     *
+     * @return 解析出来的UnitNumber实例
+     *
+     * @throws MeasurementParseException 如果无法解析
+     */
+    public static UnitNumber<?> parse(CharSequence cs, int start, int end) {
+        UnitNumber<?> n = tryParse(cs, start, end);
+        if(n == null) {
+            // 与 Quantities#getQuantity(CharSequence) 使用的 SimpleQuantityFormat "n u~ " 相同，只是单位格式换成注册表快照的
+            Quantity<?> q = NumberDelimiterQuantityFormat.builder()
+                    .setNumberFormat(NumberFormat.getInstance())
+                    .setUnitFormat(lexicon().snapshot.format())
+                    .setDelimiter(" ")
+                    .setRadixPartsDelimiter(" ")
+                    .build()
+                    .parse(cs.subSequence(start, end));
+            n = of(q);
+        }
+        return n;
+    }
+
+    /**
+     * 解析单位，结果与 {@link Units#parse(String)} 相同
+     *
+     * @param symbol 单位符号，比如 "kg/桶"
+     *
+     * @return Unit实例
+     *
+     * @throws MeasurementParseException 如果无法解析
+     */
+    public static Unit<?> parseUnit(CharSequence symbol) {
+        Lexicon lex = lexicon();
+        Unit<?> u = symbol == null ? null : new Cursor(lex, symbol, 0, symbol.length()).parseUnit(false);
+        if(u == null) {
+            // 与 SimpleQuantityFormat "n u" 解析 "0 " + symbol 相同：从数值之后开始解析，整个字符串不作为标签查找
+            u = lex.snapshot.format().parse("0 " + symbol, new ParsePosition(2));
+        }
+        return u;
+    }
+
+    private static UnitNumber<?> tryParse(CharSequence cs, int start, int end) {
+        if(!PLAIN_NUMBERS) {
+            return null;
+        }
+
+        // 与 String.split(" ") 一致，忽略末尾的空格
+        while (end > start && cs.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        Lexicon lex = lexicon();
+        Number value = null;
+        Unit<?> unit = null;
+        List<Quantity<?>> mixed = null;
+
+        int p = start;
+        while (p < end) {
+            int numberEnd = indexOfSpace(cs, p, end);
+            if(numberEnd == p || numberEnd == end) {
+                return null;
+            }
+
+            int unitStart = numberEnd + 1;
+            int unitEnd = indexOfSpace(cs, unitStart, end);
+            if(unitEnd == unitStart) {
+                return null;
+            }
+
+            Number n = readNumber(cs, p, numberEnd);
+            if(n == null) {
+                return null;
+            }
+            Unit<?> u = new Cursor(lex, cs, unitStart, unitEnd).parseUnit(true);
+            if(u == null) {
+                return null;
+            }
+
+            if(unit == null) {
+                value = n;
+                unit = u;
+            } else {
+                if(mixed == null) {
+                    mixed = new ArrayList<>();
+                    mixed.add(Quantities.getQuantity(value, unit));
+                }
+                mixed.add(Quantities.getQuantity(n, u));
+            }
+            p = unitEnd + 1;
+        }
+
+        if(unit == null) {
+            return null;
+        }
+        if(mixed == null) {
+            return create(value, unit);
+        }
+        return of(mixedAsLeading(mixed));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Quantity<?> mixedAsLeading(List<Quantity<?>> quantities) {
+        MixedQuantity m = MixedQuantity.of((List) quantities);
+        return m.to(quantities.get(0).getUnit());
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static UnitNumber<?> create(Number value, Unit<?> unit) {
+        return UnitNumber.valueOf(value, (Unit) unit);
+    }
+
+    private static UnitNumber<?> of(Quantity<?> q) {
+        return create(q.getValue(), q.getUnit());
+    }
+
+    private static int indexOfSpace(CharSequence cs, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if(cs.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 读取 "-?\d+(\.\d+)?" 形式的数值，得到与 {@link DecimalFormat#parse(String)} 相同的结果：整数为Long，小数为Double
+     *
+     * @return 数值，不是这种形式或者精度不够时返回null
+     */
+    static Number readNumber(CharSequence cs, int start, int end) {
+        int i = start;
+        boolean negative = cs.charAt(i) == '-';
+        if(negative) {
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = cs.charAt(i);
+            if(c >= '0' && c <= '9') {
+                if(++digits > 18) {
+                    return null;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if(scale >= 0) {
+                    scale++;
+                }
+            } else if(c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return null;
+            }
+        }
+
+        if(digits == 0 || scale == 0) {
+            return null;
+        }
+
+        if(scale < 0 || mantissa % LONG_POW10[scale] == 0) {
+            long v = scale < 0 ? mantissa : mantissa / LONG_POW10[scale];
+            if(v == 0 && negative) {
+                return null;
+            }
+            return negative ? -v : v;
+        }
+
+        if(mantissa >= MAX_EXACT_MANTISSA || scale >= POW10.length) {
+            return null;
+        }
+        double d = mantissa / POW10[scale];
+        return negative ? -d : d;
+    }
+
+    private static Lexicon lexicon() {
+        // 注册表发布了新的快照时，重建字典树
+        Units.Snapshot snapshot = Units.snapshot();
+        Lexicon lex = lexicon;
+        if(lex == null || lex.snapshot != snapshot) {
+            lex = new Lexicon(snapshot);
+            lexicon = lex;
+        }
+        return lex;
+    }
+
+    private static boolean isPlainNumberFormat(NumberFormat format) {
+        if(!(format instanceof DecimalFormat)) {
+            return false;
+        }
+        DecimalFormat df = (DecimalFormat) format;
+        DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+        return symbols.getDecimalSeparator() == '.'
+                && symbols.getZeroDigit() == '0'
+                && "-".equals(df.getNegativePrefix())
+                && "".equals(df.getPositivePrefix())
+                && "".equals(df.getNegativeSuffix())
+                && df.getMultiplier() == 1;
+    }
+
+    static boolean isUnitIdentifierPart(char ch) {
+        return Character.isLetter(ch)
+                || (!Character.isWhitespace(ch) && !Character.isDigit(ch) && (ch != MIDDLE_DOT) && (ch != '*') && (ch != '/') && (ch != '(') && (ch != ')')
+                        && (ch != '[') && (ch != ']') && (ch != '¹') && (ch != '²') && (ch != '³') && (ch != '^') && (ch != '+') && (ch != '-'));
+    }
+
+    /**
+     * 单位名到单位的映射，由 {@link Units} 注册的标签和别名构成；indriya内置的单位名在第一次用到时通过 {@link Units#FORMAT} 查找并记住。
+     * Units#FORMAT在类初始化之后不再修改，可以不加锁地并发解析
+     */
+    private static final class Lexicon {
+        private final Units.Snapshot snapshot;
+        private final UnitTrie trie;
+        private final Map<String, Unit<?>> learned = new ConcurrentHashMap<>();
+
+        Lexicon(Units.Snapshot snapshot) {
+            Map<String, Unit<?>> all = new LinkedHashMap<>();
+            for (String s : WHOLE_LABELS) {
+                all.put(s, Units.FORMAT.parse(s));
+            }
+            all.putAll(snapshot.labels);
+            this.snapshot = snapshot;
+            this.trie = new UnitTrie(all);
+        }
+
+        Unit<?> whole(CharSequence cs, int start, int end) {
+            return trie.get(cs, start, end);
+        }
+
+        Unit<?> identifier(CharSequence cs, int start, int end) {
+            Unit<?> u = trie.get(cs, start, end);
+            if(u != null) {
+                return u;
+            }
+
+            String name = cs.subSequence(start, end).toString();
+            u = learned.get(name);
+            if(u == null) {
+                try {
+                    u = Units.FORMAT.parseSingleUnit(name, new ParsePosition(0));
+                } catch (MeasurementParseException e) {
+                    return null;
+                }
+                learned.put(name, u);
+            }
+            return u;
+        }
+    }
+
+    private enum Token {
+        EOF, IDENTIFIER, OPEN_PAREN, CLOSE_PAREN, EXPONENT, MULTIPLY, DIVIDE, PLUS, INTEGER, FLOAT
+    }
+
+    /**
+     * 组合单位的语法与 SimpleUnitFormat#parseProductUnit 相同，比如 "a/b*c" 解析为 a/(b·c)。
+     * 遇到不支持的写法时返回null。
+     */
+    private static final class Cursor {
+        private final Lexicon lex;
+        private final CharSequence cs;
+        private final int end;
+        private int pos;
+
+        Cursor(Lexicon lex, CharSequence cs, int start, int end) {
+            this.lex = lex;
+            this.cs = cs;
+            this.pos = start;
+            this.end = end;
+        }
+
+        Unit<?> parseUnit(boolean wholeFirst) {
+            if(wholeFirst) {
+                Unit<?> u = lex.whole(cs, pos, end);
+                if(u != null) {
+                    return u;
+                }
+            }
+            return parseProductUnit();
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private Unit<?> parseProductUnit() {
+            Unit result = AbstractUnit.ONE;
+            Token token = nextToken();
+            if(token == null) {
+                return null;
+            }
+            switch (token) {
+            case IDENTIFIER:
+                result = parseSingleUnit();
+                break;
+            case OPEN_PAREN:
+                pos++;
+                result = parseProductUnit();
+                if(result == null || nextToken() != Token.CLOSE_PAREN) {
+                    return null;
+                }
+                pos++;
+                break;
+            default:
+                break;
+            }
+            if(result == null) {
+                return null;
+            }
+
+            token = nextToken();
+            while (token != null) {
+                switch (token) {
+                case EXPONENT:
+                    int[] e = readExponent();
+                    if(e[0] != 1) {
+                        result = result.pow(e[0]);
+                    }
+                    if(e[1] != 1) {
+                        result = result.root(e[1]);
+                    }
+                    break;
+                case MULTIPLY:
+                case DIVIDE:
+                    boolean multiply = token == Token.MULTIPLY;
+                    pos++;
+                    token = nextToken();
+                    if(token == Token.INTEGER) {
+                        long n = readLong();
+                        if(n != 1) {
+                            result = multiply ? result.multiply(n) : result.divide(n);
+                        }
+                    } else if(token == Token.FLOAT || token == null) {
+                        return null;
+                    } else {
+                        Unit u = parseProductUnit();
+                        if(u == null) {
+                            return null;
+                        }
+                        result = multiply ? result.multiply(u) : result.divide(u);
+                    }
+                    break;
+                case EOF:
+                case CLOSE_PAREN:
+                    return result;
+                default:
+                    return null;
+                }
+                token = nextToken();
+            }
+            return null;
+        }
+
+        private Unit<?> parseSingleUnit() {
+            int start = pos;
+            int i = start;
+            while ((++i < end) && isUnitIdentifierPart(cs.charAt(i))) {
+            }
+            pos = i;
+            return lex.identifier(cs, start, i);
+        }
+
+        /**
+         * @return 下一个token，遇到解析错误时返回null
+         */
+        private Token nextToken() {
+            while (pos < end) {
+                char c = cs.charAt(pos);
+                if(isUnitIdentifierPart(c)) {
+                    return Token.IDENTIFIER;
+                } else if(c == '(') {
+                    return Token.OPEN_PAREN;
+                } else if(c == ')') {
+                    return Token.CLOSE_PAREN;
+                } else if((c == '^') || (c == '¹') || (c == '²') || (c == '³')) {
+                    return Token.EXPONENT;
+                } else if(c == '*') {
+                    if(end == pos + 1) {
+                        return null;
+                    }
+                    char c2 = cs.charAt(pos + 1);
+                    return c2 == '*' ? Token.EXPONENT : Token.MULTIPLY;
+                } else if(c == MIDDLE_DOT) {
+                    return Token.MULTIPLY;
+                } else if(c == '/') {
+                    return Token.DIVIDE;
+                } else if(c == '+') {
+                    return Token.PLUS;
+                } else if((c == '-') || Character.isDigit(c)) {
+                    int index = pos + 1;
+                    while ((index < end) && (Character.isDigit(c) || (c == '-') || (c == '.') || (c == 'E'))) {
+                        c = cs.charAt(index++);
+                        if(c == '.') {
+                            return Token.FLOAT;
+                        }
+                    }
+                    return Token.INTEGER;
+                }
+                pos++;
+            }
+            return Token.EOF;
+        }
+
+        private int[] readExponent() {
+            char c = cs.charAt(pos);
+            if(c == '^') {
+                pos++;
+            } else if(c == '*') {
+                pos += 2;
+            }
+            int pow = 0;
+            boolean isPowNegative = false;
+            boolean parseRoot = false;
+
+            POWERLOOP: while (pos < end) {
+                c = cs.charAt(pos);
+                switch (c) {
+                case '-':
+                    isPowNegative = true;
+                    break;
+                case '¹':
+                    pow = pow * 10 + 1;
+                    break;
+                case '²':
+                    pow = pow * 10 + 2;
+                    break;
+                case '³':
+                    pow = pow * 10 + 3;
+                    break;
+                case ':':
+                    parseRoot = true;
+                    break POWERLOOP;
+                default:
+                    if(c >= '0' && c <= '9') {
+                        pow = pow * 10 + (c - '0');
+                    } else {
+                        break POWERLOOP;
+                    }
+                }
+                pos++;
+            }
+            if(pow == 0) {
+                pow = 1;
+            }
+
+            int root = 0;
+            boolean isRootNegative = false;
+            if(parseRoot) {
+                pos++;
+                ROOTLOOP: while (pos < end) {
+                    c = cs.charAt(pos);
+                    switch (c) {
+                    case '-':
+                        isRootNegative = true;
+                        break;
+                    case '¹':
+                        root = root * 10 + 1;
+                        break;
+                    case '²':
+                        root = root * 10 + 2;
+                        break;
+                    case '³':
+                        root = root * 10 + 3;
+                        break;
+                    default:
+                        if(c >= '0' && c <= '9') {
+                            root = root * 10 + (c - '0');
+                        } else {
+                            break ROOTLOOP;
+                        }
+                    }
+                    pos++;
+                }
+            }
+            if(root == 0) {
+                root = 1;
+            }
+
+            return new int[] { isPowNegative ? -pow : pow, isRootNegative ? -root : root };
+        }
+
+        private long readLong() {
+            int result = 0;
+            boolean isNegative = false;
+            while (pos < end) {
+                char c = cs.charAt(pos);
+                if(c == '-') {
+                    isNegative = true;
+                } else if((c >= '0') && (c <= '9')) {
+                    result = result * 10 + (c - '0');
+                } else {
+                    break;
+                }
+                pos++;
+            }
+            return isNegative ? -result : result;
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 从CSV/TSV文件中批量读取量的列，比如 "25 m²"、"3 套"。<br>
+ * 通过 {@link FileChannel} 分块读取，解码后的字符直接交给 {@link QuantityParser} 解析，不为每个单元格创建字符串；
+ * 解析结果按批次交给 {@link BatchHandler}，批次对象循环使用，占用的内存与文件大小无关。<br>
+ * 可以按行边界把文件切成多个分块，在多个线程上并行解析。
+ *
+ * <pre>
+ * long rows = QuantityReader.csv(path).header(true).columns(2, 3).read(batch -&gt; {
+ *     for (int i = 0; i &lt; batch.size(); i++) {
+ *         UnitNumber&lt;?&gt; amount = batch.get(i, 0);
+ *     }
+ * });
+ * </pre>
+ *
+ * 单元格可以用双引号括起来，但是一条记录不能跨越多行。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class QuantityReader {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final char QUOTE = '"';
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    /**
+     * 默认的错误处理：抛出IllegalArgumentException
+     */
+    private static final ErrorHandler THROW = (line, column, cell, e) -> {
+        throw new IllegalArgumentException("line " + line + ", column " + column + ": " + cell, e);
+    };
+
+    private final Path path;
+    private final char delimiter;
+    private Charset charset = StandardCharsets.UTF_8;
+    private int[] columns = { 0 };
+    private boolean header;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private ErrorHandler errorHandler = THROW;
+
+    /**
+     * 并行读取时每个分块的最小字节数，文件太小时不切分
+     */
+    long minChunkSize = 1 << 20;
+
+    public QuantityReader(Path path, char delimiter) {
+        if(delimiter == QUOTE || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("invalid delimiter: " + delimiter);
+        }
+        this.path = path;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * 读取逗号分隔的文件
+     */
+    public static QuantityReader csv(Path path) {
+        return new QuantityReader(path, ',');
+    }
+
+    /**
+     * 读取制表符分隔的文件
+     */
+    public static QuantityReader tsv(Path path) {
+        return new QuantityReader(path, '\t');
+    }
+
+    /**
+     * 要解析的列，从0开始编号，批次中的列按参数的顺序排列，默认只解析第0列
+     */
+    public QuantityReader columns(int... columns) {
+        if(columns.length == 0) {
+            throw new IllegalArgumentException("no columns");
+        }
+        for (int c : columns) {
+            if(c < 0) {
+                throw new IllegalArgumentException("invalid column: " + c);
+            }
+        }
+        this.columns = columns.clone();
+        return this;
+    }
+
+    /**
+     * 第一行是否为表头，表头不解析
+     */
+    public QuantityReader header(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public QuantityReader charset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * 每个批次的最大行数
+     */
+    public QuantityReader batchSize(int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("invalid batch size: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 读缓冲区的大小，单位为字节；超过缓冲区的长行会自动扩容
+     */
+    public QuantityReader bufferSize(int bufferSize) {
+        this.bufferSize = Math.max(bufferSize, MIN_BUFFER_SIZE);
+        return this;
+    }
+
+    /**
+     * 单元格无法解析时的处理方式，默认抛出IllegalArgumentException；处理后不抛异常时，该单元格的值为null
+     */
+    public QuantityReader onError(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * 在当前线程中读取整个文件
+     *
+     * @param handler 批次处理
+     *
+     * @return 读取的行数，不包括表头
+     */
+    public long read(BatchHandler handler) throws IOException {
+        return read(handler, 1);
+    }
+
+    /**
+     * 把文件切成最多parallelism个分块并行读取。<br>
+     * handler会在多个线程中同时被调用，每个分块使用各自的批次对象，批次之间的顺序不确定。
+     * 字符集中换行符不是单字节时不切分。
+     *
+     * @param handler     批次处理
+     * @param parallelism 并行度
+     *
+     * @return 读取的行数，不包括表头
+     */
+    public long read(BatchHandler handler, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, parallelism);
+            if(bounds.length == 2) {
+                return new Chunk(channel, 0, bounds[1], 1).read(handler);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(bounds.length - 1);
+            try {
+                List<Callable<Long>> counts = new ArrayList<>();
+                for (int i = 0; i < bounds.length - 2; i++) {
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    counts.add(() -> countLines(channel, start, end));
+                }
+
+                List<Callable<Long>> chunks = new ArrayList<>();
+                long line = 1;
+                int i = 0;
+                for (long count : invokeAll(pool, counts)) {
+                    chunks.add(new Chunk(channel, bounds[i], bounds[i + 1], line).reader(handler));
+                    line += count;
+                    i++;
+                }
+                chunks.add(new Chunk(channel, bounds[i], bounds[i + 1], line).reader(handler));
+
+                long rows = 0;
+                for (long r : invokeAll(pool, chunks)) {
+                    rows += r;
+                }
+                return rows;
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 分块的边界，每个分块都从行首开始
+     */
+    private long[] split(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        int n = (int) Math.max(1, Math.min(parallelism, size / Math.max(1, minChunkSize)));
+        if(n > 1 && !isSingleByteNewline(charset)) {
+            n = 1;
+        }
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        for (int i = 1; i < n; i++) {
+            long b = nextLineStart(channel, size / n * i, size);
+            if(b > bounds.get(bounds.size() - 1) && b < size) {
+                bounds.add(b);
+            }
+        }
+        bounds.add(size);
+
+        long[] ret = new long[bounds.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = bounds.get(i);
+        }
+        return ret;
+    }
+
+    private static boolean isSingleByteNewline(Charset charset) {
+        try {
+            ByteBuffer b = charset.newEncoder().encode(CharBuffer.wrap("\n"));
+            return b.remaining() == 1 && b.get(0) == '\n';
+        } catch (CharacterCodingException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long pos = from - 1;
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if(n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if(buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static long countLines(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+        long count = 0;
+        long pos = start;
+        while (pos < end) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - pos));
+            int n = channel.read(buf, pos);
+            if(n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if(buf.get(i) == '\n') {
+                    count++;
+                }
+            }
+            pos += n;
+        }
+        return count;
+    }
+
+    private static List<Long> invokeAll(ForkJoinPool pool, List<Callable<Long>> tasks) throws IOException {
+        List<Long> ret = new ArrayList<>(tasks.size());
+        for (Future<Long> f : pool.invokeAll(tasks)) {
+            try {
+                ret.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if(cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 文件中 [start, end) 字节区间的读取过程
+     */
+    private final class Chunk {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final int[] slots;
+        private final Batch batch;
+
+        private long line;
+        private long rows;
+        private CharBuffer chars;
+
+        Chunk(FileChannel channel, long start, long end, long firstLine) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.line = firstLine;
+            this.batch = new Batch(columns.length, batchSize);
+
+            int max = 0;
+            for (int c : columns) {
+                max = Math.max(max, c);
+            }
+            this.slots = new int[max + 1];
+            Arrays.fill(slots, -1);
+            for (int i = columns.length - 1; i >= 0; i--) {
+                slots[columns[i]] = i;
+            }
+        }
+
+        Callable<Long> reader(BatchHandler handler) {
+            return () -> read(handler);
+        }
+
+        long read(BatchHandler handler) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocateDirect(bufferSize);
+            chars = CharBuffer.allocate(bufferSize);
+            CharsetDecoder decoder = charset.newDecoder();
+
+            long pos = start;
+            boolean eof = false;
+            for (;;) {
+                if(!eof) {
+                    int max = (int) Math.min(bytes.remaining(), end - pos);
+                    if(max > 0) {
+                        int limit = bytes.limit();
+                        bytes.limit(bytes.position() + max);
+                        int n = channel.read(bytes, pos);
+                        bytes.limit(limit);
+                        if(n < 0) {
+                            eof = true;
+                        } else {
+                            pos += n;
+                        }
+                    }
+                    eof |= pos >= end;
+                }
+
+                bytes.flip();
+                CoderResult cr = decoder.decode(bytes, chars, eof);
+                bytes.compact();
+                if(cr.isError()) {
+                    cr.throwException();
+                }
+                boolean done = eof && cr.isUnderflow();
+                if(done) {
+                    decoder.flush(chars);
+                }
+
+                chars.flip();
+                int consumed = lines(done, handler);
+                chars.position(chars.position() + consumed);
+                chars.compact();
+
+                if(done) {
+                    break;
+                }
+                if(!chars.hasRemaining()) {
+                    CharBuffer bigger = CharBuffer.allocate(chars.capacity() * 2);
+                    chars.flip();
+                    bigger.put(chars);
+                    chars = bigger;
+                }
+            }
+
+            if(batch.size > 0) {
+                handler.accept(batch);
+                batch.clear();
+            }
+            return rows;
+        }
+
+        /**
+         * 处理缓冲区中完整的行
+         *
+         * @return 处理过的字符数
+         */
+        private int lines(boolean last, BatchHandler handler) {
+            char[] a = chars.array();
+            int len = chars.remaining();
+            int lineStart = 0;
+            for (int i = 0; i < len; i++) {
+                if(a[i] == '\n') {
+                    line(lineStart, i, handler);
+                    lineStart = i + 1;
+                }
+            }
+            if(last && lineStart < len) {
+                line(lineStart, len, handler);
+                lineStart = len;
+            }
+            return lineStart;
+        }
+
+        private void line(int s, int e, BatchHandler handler) {
+            long no = line++;
+            if(header && no == 1) {
+                return;
+            }
+
+            char[] a = chars.array();
+            if(e > s && a[e - 1] == '\r') {
+                e--;
+            }
+            if(e == s) {
+                return;
+            }
+
+            int row = batch.size;
+            batch.lines[row] = no;
+            for (UnitNumber<?>[] values : batch.values) {
+                values[row] = null;
+            }
+
+            int column = 0;
+            int i = s;
+            while (column < slots.length) {
+                int cellStart = i;
+                int cellEnd;
+                boolean escaped = false;
+                if(i < e && a[i] == QUOTE) {
+                    cellStart = ++i;
+                    while (i < e) {
+                        if(a[i] == QUOTE) {
+                            if(i + 1 < e && a[i + 1] == QUOTE) {
+                                escaped = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    cellEnd = i;
+                    while (i < e && a[i] != delimiter) {
+                        i++;
+                    }
+                } else {
+                    while (i < e && a[i] != delimiter) {
+                        i++;
+                    }
+                    cellEnd = i;
+                }
+
+                int slot = slots[column];
+                if(slot >= 0 && cellEnd > cellStart) {
+                    batch.values[slot][row] = parse(no, column, cellStart, cellEnd, escaped);
+                }
+                if(i >= e) {
+                    break;
+                }
+                i++;
+                column++;
+            }
+
+            batch.size++;
+            rows++;
+            if(batch.size == batch.capacity) {
+                handler.accept(batch);
+                batch.clear();
+            }
+        }
+
+        private UnitNumber<?> parse(long no, int column, int s, int e, boolean escaped) {
+            CharSequence cs = chars;
+            if(escaped) {
+                cs = new String(chars.array(), s, e - s).replace("\"\"", "\"");
+                s = 0;
+                e = cs.length();
+            }
+            try {
+                return QuantityParser.parse(cs, s, e);
+            } catch (RuntimeException ex) {
+                errorHandler.onError(no, column, cs.subSequence(s, e), ex);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 一批解析结果，按列存放。<br>
+     * 批次对象在 {@link BatchHandler#accept(Batch)} 返回后会被重新填充，需要保留的数据应在回调中复制出来。
+     */
+    public static final class Batch {
+        private final int capacity;
+        private final long[] lines;
+        private final UnitNumber<?>[][] values;
+        private int size;
+
+        Batch(int columns, int capacity) {
+            this.capacity = capacity;
+            this.lines = new long[capacity];
+            this.values = new UnitNumber<?>[columns][capacity];
+        }
+
+        /**
+         * 批次中的行数
+         */
+        public int size() {
+            return size;
+        }
+
+        public int columnCount() {
+            return values.length;
+        }
+
+        /**
+         * 第row行在文件中的行号，从1开始，包括表头
+         */
+        public long line(int row) {
+            checkRow(row);
+            return lines[row];
+        }
+
+        /**
+         * 第row行、第column列(按 {@link QuantityReader#columns(int...)} 的顺序)的值，单元格为空或者无法解析时为null
+         */
+        public UnitNumber<?> get(int row, int column) {
+            checkRow(row);
+            return values[column][row];
+        }
+
+        /**
+         * 第column列的数据，只有前 {@link #size()} 个元素有效
+         */
+        public UnitNumber<?>[] column(int column) {
+            return values[column];
+        }
+
+        private void checkRow(int row) {
+            if(row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+            }
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+
+    @FunctionalInterface
+    public interface BatchHandler {
+        void accept(Batch batch);
+    }
+
+    @FunctionalInterface
+    public interface ErrorHandler {
+        /**
+         * @param line   行号，从1开始
+         * @param column 列号，从0开始
+         * @param cell   单元格的内容
+         * @param e      解析时的异常
+         */
+        void onError(long line, int column, CharSequence cell, RuntimeException e);
+    }
+}
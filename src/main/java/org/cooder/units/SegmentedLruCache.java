@@ -0,0 +1,338 @@
+package org.cooder.units;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 容量有限的缓存，使用分段LRU(SLRU)淘汰策略。<br>
+ * 新加入的元素先进入试用区，再次命中后晋升到保护区；保护区满时最久未使用的元素降级回试用区，
+ * 需要淘汰时优先淘汰试用区中最久未使用的元素。这样只出现一次的键(比如输入错误的单位)不会把常用的键挤出缓存。<br>
+ * 容量较大时按键的哈希分为多个段，每个段单独加锁。<br>
+ * 通过 {@link #get(Object, Function)} 加载时，同一个键的并发加载只会执行一次，其他线程等待加载结果；加载失败的结果不会缓存。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <K> 键的类型
+ * @param <V> 值的类型
+ */
+public final class SegmentedLruCache<K, V> {
+    /**
+     * 保护区占每个段容量的比例
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * 容量不小于这个值时才分段
+     */
+    private static final int MIN_SEGMENTED_CAPACITY = 1024;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private volatile int capacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity 最多缓存的元素个数
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int capacity) {
+        checkCapacity(capacity);
+        int n = capacity >= MIN_SEGMENTED_CAPACITY ? MAX_SEGMENTS : 1;
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment<>();
+        }
+        setCapacity(capacity);
+    }
+
+    /**
+     * @return 缓存的值，不存在时返回null
+     */
+    public V getIfPresent(K key) {
+        V v = segmentFor(key).get(key);
+        (v != null ? hits : misses).increment();
+        return v;
+    }
+
+    /**
+     * 获取缓存的值，不存在时调用loader加载并缓存。同一个键的并发加载只会执行一次。
+     *
+     * @param key    键
+     * @param loader 加载函数，不能返回null
+     *
+     * @return 缓存的值
+     *
+     * @throws RuntimeException loader抛出的异常
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V v = getIfPresent(key);
+        return v != null ? v : load(key, loader);
+    }
+
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        evictions.add(segmentFor(key).put(key, value));
+    }
+
+    public void invalidate(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> s : segments) {
+            s.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 修改容量，缩小容量时会立即淘汰多出的元素。容量平均分配到每个段。
+     *
+     * @param capacity 最多缓存的元素个数
+     */
+    public void setCapacity(int capacity) {
+        checkCapacity(capacity);
+        this.capacity = capacity;
+        int n = segments.length;
+        for (int i = 0; i < n; i++) {
+            evictions.add(segments[i].setCapacity(capacity / n + (i < capacity % n ? 1 : 0)));
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loads.sum(), loadFailures.sum(), evictions.sum(), size(), capacity);
+    }
+
+    /**
+     * 加载并缓存，调用前已经通过 {@link #getIfPresent(Object)} 确认不存在
+     */
+    V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> f = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, f);
+        if(existing != null) {
+            return join(existing);
+        }
+
+        try {
+            // 等待加载锁的过程中，其他线程可能已经加载完成
+            V v = segmentFor(key).get(key);
+            if(v == null) {
+                v = Objects.requireNonNull(loader.apply(key));
+                loads.increment();
+                put(key, v);
+            }
+            f.complete(v);
+            return v;
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, f);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static void checkCapacity(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+    }
+
+    /**
+     * 缓存的统计数据
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long loadFailureCount;
+        private final long evictionCount;
+        private final int size;
+        private final int capacity;
+
+        Stats(long hitCount, long missCount, long loadCount, long loadFailureCount, long evictionCount, int size, int capacity) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.loadFailureCount = loadFailureCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return 成功加载的次数，并发加载同一个键只算一次
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public double getHitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 1.0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{hits=%d, misses=%d, loads=%d, loadFailures=%d, evictions=%d, size=%d, capacity=%d}",
+                    hitCount, missCount, loadCount, loadFailureCount, evictionCount, size, capacity);
+        }
+    }
+
+    /**
+     * 一个段，试用区和保护区都按访问顺序排列，最久未使用的在前面
+     */
+    private static final class Segment<K, V> {
+        private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, V> protectedArea = new LinkedHashMap<>(16, 0.75f, true);
+        private int capacity;
+        private int protectedCapacity;
+
+        synchronized V get(Object key) {
+            V v = protectedArea.get(key);
+            if(v != null) {
+                return v;
+            }
+
+            v = probation.remove(key);
+            if(v != null) {
+                protectedArea.put(cast(key), v);
+                demote();
+            }
+            return v;
+        }
+
+        /**
+         * @return 淘汰的元素个数
+         */
+        synchronized int put(K key, V value) {
+            if(protectedArea.containsKey(key)) {
+                protectedArea.put(key, value);
+                return 0;
+            }
+            probation.put(key, value);
+            return evict();
+        }
+
+        synchronized void remove(Object key) {
+            if(protectedArea.remove(key) == null) {
+                probation.remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedArea.clear();
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedArea.size();
+        }
+
+        synchronized int setCapacity(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = (int) (capacity * PROTECTED_RATIO);
+            demote();
+            return evict();
+        }
+
+        /**
+         * 保护区超出容量时，把最久未使用的元素降级到试用区
+         */
+        private void demote() {
+            while (protectedArea.size() > protectedCapacity) {
+                Iterator<Map.Entry<K, V>> it = protectedArea.entrySet().iterator();
+                Map.Entry<K, V> eldest = it.next();
+                it.remove();
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        private int evict() {
+            int evicted = 0;
+            while (probation.size() + protectedArea.size() > capacity) {
+                LinkedHashMap<K, V> from = probation.isEmpty() ? protectedArea : probation;
+                Iterator<K> it = from.keySet().iterator();
+                it.next();
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <K> K cast(Object key) {
+            return (K) key;
+        }
+    }
+}
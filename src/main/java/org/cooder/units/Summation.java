@@ -0,0 +1,181 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.Calculus;
+
+/**
+ * 求和的状态和算法，{@link UnitAccumulator} 和 {@link ConcurrentUnitAccumulator} 的单元共用。<br>
+ * 每个加数转换为结果的单位后直接累加到long或BigDecimal中，整数在long中精确累加，溢出或者有小数时改用BigDecimal；
+ * 计算方式为 {@link NumericMode#DOUBLE} 时在double中累加，使用Kahan-Babuška补偿求和。<br>
+ * ConcurrentUnitAccumulator的单元继承这个类，在子类中填充，使不同单元的状态不落在同一缓存行上，所以这个类不是final的。
+ * 不是线程安全的。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <Q> 量的类型
+ */
+class Summation<Q extends Quantity<Q>> {
+    private final Unit<Q> unit;
+
+    /**
+     * 累加时使用的单位：线性单位为unit本身，非线性单位(比如摄氏度)为国际标准单位
+     */
+    private final Unit<Q> sumUnit;
+
+    private final NumericMode mode;
+
+    private Unit<Q> lastUnit;
+    private UnitConverter lastConverter;
+
+    /**
+     * lastConverter的比例系数，非线性时为NaN，只在 {@link NumericMode#DOUBLE} 时使用
+     */
+    private double lastScale;
+
+    private long longSum;
+    private BigDecimal decimalSum;
+    private double doubleSum;
+    private double compensation;
+    private long count;
+
+    Summation(Unit<Q> unit, NumericMode mode) {
+        this.unit = unit;
+        this.sumUnit = UnitConverters.toSystemUnit(unit).isLinear() ? unit : unit.getSystemUnit();
+        this.mode = mode;
+    }
+
+    final Unit<Q> getUnit() {
+        return unit;
+    }
+
+    final NumericMode getNumericMode() {
+        return mode;
+    }
+
+    final void add(Number value, Unit<Q> u) {
+        if(mode == NumericMode.DOUBLE) {
+            double v = value.doubleValue();
+            if(u != sumUnit) {
+                converter(u);
+                v = Double.isNaN(lastScale) ? lastConverter.convert(v) : v * lastScale;
+            }
+            addDouble(v);
+            count++;
+            return;
+        }
+
+        if(u != sumUnit) {
+            value = converter(u).convert(value);
+        }
+        addValue(value);
+        count++;
+    }
+
+    /**
+     * 合并另一个求和的结果，结果的单位可以不同
+     */
+    final void merge(Summation<Q> that) {
+        if(that.sumUnit == sumUnit && that.mode == mode) {
+            addValue(that.longSum);
+            if(that.decimalSum != null) {
+                addValue(that.decimalSum);
+            }
+            addDouble(that.doubleSum);
+            compensation += that.compensation;
+            count += that.count;
+        } else if(that.count > 0) {
+            long c = count + that.count;
+            add(that.partial(), that.sumUnit);
+            count = c;
+        }
+    }
+
+    final long count() {
+        return count;
+    }
+
+    /**
+     * @return 当前的和，没有加数时为0
+     */
+    final UnitNumber<Q> sum() {
+        if(mode == NumericMode.DOUBLE) {
+            double s = doubleSum + compensation;
+            if(sumUnit != unit) {
+                s = UnitConverters.fromSystemUnit(unit).convert(s);
+            }
+            return new UnitNumber<>(s, unit);
+        }
+
+        Number s = Calculus.currentNumberSystem().narrow(partial());
+        if(sumUnit != unit) {
+            s = UnitConverters.fromSystemUnit(unit).convert(s);
+        }
+        return new UnitNumber<>(s, unit);
+    }
+
+    final void reset() {
+        longSum = 0;
+        decimalSum = null;
+        doubleSum = 0;
+        compensation = 0;
+        count = 0;
+    }
+
+    /**
+     * @return sumUnit单位下的和
+     */
+    private Number partial() {
+        if(mode == NumericMode.DOUBLE) {
+            return doubleSum + compensation;
+        }
+        if(decimalSum == null) {
+            return longSum;
+        }
+        return longSum == 0 ? decimalSum : decimalSum.add(BigDecimal.valueOf(longSum));
+    }
+
+    /**
+     * @return 从u到sumUnit的转换器，单位变化时才重新查找
+     */
+    private UnitConverter converter(Unit<Q> u) {
+        if(u != lastUnit) {
+            UnitNumber.checkDimensionless(unit, u);
+            lastConverter = UnitConverters.of(u, sumUnit);
+            lastScale = lastConverter.isLinear() ? lastConverter.convert(1.0) : Double.NaN;
+            lastUnit = u;
+        }
+        return lastConverter;
+    }
+
+    /**
+     * Kahan-Babuška求和，compensation记录每一步舍入丢掉的部分
+     */
+    private void addDouble(double v) {
+        double t = doubleSum + v;
+        if(Math.abs(doubleSum) >= Math.abs(v)) {
+            compensation += (doubleSum - t) + v;
+        } else {
+            compensation += (v - t) + doubleSum;
+        }
+        doubleSum = t;
+    }
+
+    private void addValue(Number value) {
+        if(Numbers.isIntegral(value)) {
+            long v = value.longValue();
+            long s = longSum + v;
+            // 与Math.addExact相同的溢出判断
+            if(((longSum ^ s) & (v ^ s)) >= 0) {
+                longSum = s;
+                return;
+            }
+        }
+        BigDecimal d = Numbers.toBigDecimal(value);
+        decimalSum = decimalSum == null ? d : decimalSum.add(d);
+    }
+}
@@ -0,0 +1,132 @@
+package org.cooder.units;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+/**
+ * 可变的求和器，用于对大量的量求和。<br>
+ * 创建时确定结果的单位，每个加数转换为该单位后直接累加到内部的long或BigDecimal中，
+ * 不会像 {@code a.add(b)} 那样每一步都创建新的 {@link UnitNumber}。
+ * 单位的检查和转换器的查找只在加数的单位变化时进行一次。<br>
+ * 整数在long中精确累加，溢出或者有小数时改用BigDecimal，结果与逐个相加一致。
+ * 计算方式为 {@link NumericMode#DOUBLE} 时在double中累加，使用Kahan-Babuška补偿求和，大量的数相加时误差不会累积。<br>
+ * 这个类不是线程安全的，多线程请使用 {@link ConcurrentUnitAccumulator}。
+ *
+ * <pre>
+ * UnitAccumulator&lt;Money&gt; total = new UnitAccumulator&lt;&gt;(Units.元);
+ * for (UnitNumber&lt;Money&gt; price : prices) {
+ *     total.add(price);
+ * }
+ * UnitNumber&lt;Money&gt; sum = total.sum();
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <Q> 量的类型
+ */
+public final class UnitAccumulator<Q extends Quantity<Q>> {
+    private final Summation<Q> summation;
+
+    /**
+     * 使用unit这类量的计算方式，参见 {@link Units#setNumericMode(Unit, NumericMode)}
+     *
+     * @param unit 结果的单位
+     */
+    public UnitAccumulator(Unit<Q> unit) {
+        this(unit, Units.numericMode(unit));
+    }
+
+    /**
+     * @param unit 结果的单位
+     * @param mode 计算方式，只对这个求和器有效
+     */
+    public UnitAccumulator(Unit<Q> unit, NumericMode mode) {
+        this(new Summation<>(unit, mode));
+    }
+
+    UnitAccumulator(Summation<Q> summation) {
+        this.summation = summation;
+    }
+
+    public Unit<Q> getUnit() {
+        return summation.getUnit();
+    }
+
+    public NumericMode getNumericMode() {
+        return summation.getNumericMode();
+    }
+
+    /**
+     * 累加一个量
+     *
+     * @param n 加数，单位必须可以转换为结果的单位
+     *
+     * @return this
+     */
+    public UnitAccumulator<Q> add(UnitNumber<Q> n) {
+        return add(n.getValue(), n.getUnit());
+    }
+
+    /**
+     * 累加一个量
+     *
+     * @param value 数值
+     * @param u     单位，必须可以转换为结果的单位
+     *
+     * @return this
+     */
+    public UnitAccumulator<Q> add(Number value, Unit<Q> u) {
+        summation.add(value, u);
+        return this;
+    }
+
+    /**
+     * 累加多个量
+     *
+     * @return this
+     */
+    public UnitAccumulator<Q> addAll(Iterable<UnitNumber<Q>> numbers) {
+        for (UnitNumber<Q> n : numbers) {
+            add(n);
+        }
+        return this;
+    }
+
+    /**
+     * 合并另一个求和器的结果
+     *
+     * @param that 另一个求和器，结果的单位可以不同
+     *
+     * @return this
+     */
+    public UnitAccumulator<Q> merge(UnitAccumulator<Q> that) {
+        summation.merge(that.summation);
+        return this;
+    }
+
+    /**
+     * @return 累加的个数
+     */
+    public long count() {
+        return summation.count();
+    }
+
+    /**
+     * @return 当前的和，没有加数时为0
+     */
+    public UnitNumber<Q> sum() {
+        return summation.sum();
+    }
+
+    /**
+     * 清零，可以重复使用
+     */
+    public void reset() {
+        summation.reset();
+    }
+
+    @Override
+    public String toString() {
+        return sum().toString();
+    }
+}
@@ -0,0 +1,221 @@
+package org.cooder.units;
+
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.Calculus;
+import tech.units.indriya.spi.NumberSystem;
+
+/**
+ * 单位乘、除、求倒数的结果表。<br>
+ * {@link UnitNumber#multiply(UnitNumber)} 等运算每次都要把两个量转换为国际单位制并组合出新的
+ * {@link tech.units.indriya.unit.ProductUnit}，而实际的数据中同一对单位(比如 米 × 米、元 ÷ 平方米)会反复出现。
+ * 这里按两个单位的驻留ID记录运算结果：结果的规范单位，以及两个操作数到国际单位制的转换器，
+ * 重复的运算只需要一次查表和数值计算。<br>
+ * 结果表按ID查找，新增时在锁内原地插入，装载因子超过一半时复制到两倍大小的新数组后整体替换；
+ * Result的字段都是final的，查找不需要加锁。结果表满了之后不再构造新的结果，也不再加锁。驻留信息随注册表快照重建，
+ * 所以每个结果记录了两个操作数的驻留信息，快照变化后旧的结果不会再命中。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class UnitAlgebra {
+    /**
+     * 结果个数上限，超过后新的运算不再记录
+     */
+    static final int MAX_RESULTS = 4096;
+
+    private static final int MULTIPLY = 0;
+    private static final int DIVIDE = 1;
+    private static final int INVERSE = 2;
+
+    /**
+     * 开放寻址表
+     */
+    private static volatile Result[] table = new Result[64];
+    private static int size;
+
+    /**
+     * 结果表已满，之后没有记录的运算直接返回null，不构造结果也不加锁
+     */
+    private static volatile boolean full;
+
+    private UnitAlgebra() {
+    }
+
+    /**
+     * @return {@code a × b} 的结果，单位未驻留或者结果表已满时返回null
+     */
+    static Result multiply(Unit<?> a, Unit<?> b) {
+        return get(MULTIPLY, a, b);
+    }
+
+    /**
+     * @return {@code a ÷ b} 的结果，单位未驻留或者结果表已满时返回null
+     */
+    static Result divide(Unit<?> a, Unit<?> b) {
+        return get(DIVIDE, a, b);
+    }
+
+    /**
+     * @return {@code 1 ÷ a} 的结果，单位未驻留或者结果表已满时返回null
+     */
+    static Result inverse(Unit<?> a) {
+        return get(INVERSE, a, null);
+    }
+
+    /**
+     * @return 已记录的结果个数，用于测试
+     */
+    static synchronized int size() {
+        return size;
+    }
+
+    private static Result get(int op, Unit<?> a, Unit<?> b) {
+        UnitInterner.Entry left = UnitInterner.entry(a);
+        UnitInterner.Entry right = b == null ? null : UnitInterner.entry(b);
+        if(left == null || (b != null && right == null)) {
+            return null;
+        }
+
+        long key = key(op, left, right);
+        Result[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            Result r = t[i];
+            if(r == null) {
+                break;
+            }
+            if(r.key == key && r.left == left && r.right == right) {
+                return r;
+            }
+        }
+        return full ? null : add(new Result(op, key, left, right));
+    }
+
+    private static synchronized Result add(Result r) {
+        Result[] t = table;
+        int mask = t.length - 1;
+        int i = hash(r.key) & mask;
+        for (;; i = (i + 1) & mask) {
+            Result old = t[i];
+            if(old == null) {
+                break;
+            }
+            if(old.key == r.key) {
+                if(old.left == r.left && old.right == r.right) {
+                    return old;
+                }
+                // 旧快照的结果，直接替换
+                t[i] = r;
+                return r;
+            }
+        }
+
+        if(size >= MAX_RESULTS) {
+            full = true;
+            return r;
+        }
+        if(size + 1 > t.length >> 1) {
+            Result[] bigger = new Result[t.length << 1];
+            for (Result old : t) {
+                if(old != null) {
+                    insert(bigger, old);
+                }
+            }
+            insert(bigger, r);
+            table = bigger;
+        } else {
+            insert(t, r);
+        }
+        size++;
+        return r;
+    }
+
+    private static void insert(Result[] t, Result r) {
+        int mask = t.length - 1;
+        int i = hash(r.key) & mask;
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = r;
+    }
+
+    private static long key(int op, UnitInterner.Entry left, UnitInterner.Entry right) {
+        return ((long) op << 62) | ((long) left.id << 31) | (right == null ? 0 : right.id);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 一次单位运算的结果
+     */
+    static final class Result {
+        private final long key;
+        private final UnitInterner.Entry left;
+        private final UnitInterner.Entry right;
+
+        /**
+         * 结果的规范单位
+         */
+        final Unit<?> unit;
+
+        /**
+         * 两个操作数到国际单位制的转换器，不需要转换时为null
+         */
+        private final UnitConverter leftConverter;
+        private final UnitConverter rightConverter;
+
+        private Result(int op, long key, UnitInterner.Entry left, UnitInterner.Entry right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            if(op == INVERSE) {
+                this.unit = UnitInterner.intern(left.unit.inverse());
+                this.leftConverter = null;
+                this.rightConverter = null;
+            } else {
+                Unit<?> u = op == MULTIPLY ? left.systemUnit.multiply(right.systemUnit)
+                        : left.systemUnit.divide(right.systemUnit);
+                this.unit = UnitInterner.intern(u);
+                this.leftConverter = converter(left.unit);
+                this.rightConverter = converter(right.unit);
+            }
+        }
+
+        /**
+         * 按 {@link tech.units.indriya.function.Calculator} 的方式计算 {@code a × b}，结果与indriya相同
+         */
+        Number multiply(Number a, Number b) {
+            NumberSystem ns = Calculus.currentNumberSystem();
+            return ns.narrow(ns.multiply(ns.narrow(toSystem(leftConverter, a)), ns.narrow(toSystem(rightConverter, b))));
+        }
+
+        /**
+         * 按 {@link tech.units.indriya.function.Calculator} 的方式计算 {@code a ÷ b}，结果与indriya相同
+         */
+        Number divide(Number a, Number b) {
+            NumberSystem ns = Calculus.currentNumberSystem();
+            return ns.narrow(ns.divide(ns.narrow(toSystem(leftConverter, a)), ns.narrow(toSystem(rightConverter, b))));
+        }
+
+        /**
+         * @return {@code 1 ÷ a}
+         */
+        Number inverse(Number a) {
+            NumberSystem ns = Calculus.currentNumberSystem();
+            return ns.narrow(ns.reciprocal(ns.narrow(a)));
+        }
+
+        private static Number toSystem(UnitConverter c, Number v) {
+            return c == null ? v : c.convert(v);
+        }
+
+        private static UnitConverter converter(Unit<?> unit) {
+            UnitConverter c = UnitConverters.toSystemUnit(unit);
+            return c.isIdentity() ? null : c;
+        }
+    }
+}
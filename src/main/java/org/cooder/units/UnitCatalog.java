@@ -0,0 +1,168 @@
+package org.cooder.units;
+
+import static tech.units.indriya.function.AbstractConverter.IDENTITY;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.measure.Unit;
+import javax.measure.format.MeasurementParseException;
+import javax.measure.quantity.Dimensionless;
+
+import org.cooder.units.quantity.SKU;
+
+import tech.units.indriya.unit.AlternateUnit;
+import tech.units.indriya.unit.TransformedUnit;
+
+/**
+ * 单位目录文件的解析。目录文件是UTF-8编码的文本，每行定义一个单位或别名，字段之间用空白分隔，# 开头的行是注释：
+ *
+ * <pre>
+ * # SKU单位：sku 符号 [名称]，名称默认与符号相同
+ * sku 箱
+ * sku pcs 件
+ *
+ * # 换算单位：unit 符号 名称 倍数 基准单位，倍数可以写成分数
+ * unit 厘 厘 1/1000 元
+ * unit 吨 吨 1000 千克
+ *
+ * # 别名：alias 单位 别名
+ * alias 千克 公斤
+ * </pre>
+ *
+ * 基准单位和别名指向的单位可以是已经注册的单位、组合单位，或者同一个文件中前面定义的单位。<br>
+ * 解析只创建单位实例，注册由 {@link Units#loadCatalog(Reader)} 一次完成。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class UnitCatalog {
+    /**
+     * 内置的目录，与这个类在同一个包下
+     */
+    static final String BUILTIN = "units.catalog";
+
+    private UnitCatalog() {
+    }
+
+    /**
+     * 解析目录文件
+     *
+     * @param reader 目录内容
+     * @param source 目录的来源，用于错误信息
+     *
+     * @return 按文件中的顺序排列的定义
+     *
+     * @throws IllegalArgumentException 如果格式错误，或者引用的单位不存在
+     */
+    static List<Definition> parse(Reader reader, String source) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<Definition> defs = new ArrayList<>();
+        Map<String, Unit<?>> local = new HashMap<>();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if(line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+
+            String[] f = line.split("\\s+");
+            try {
+                Definition d = parseLine(f, local);
+                if(d.isUnit) {
+                    local.put(d.unit.getSymbol(), d.unit);
+                }
+                local.put(d.alias, d.unit);
+                defs.add(d);
+            } catch (IllegalArgumentException | ArithmeticException | MeasurementParseException e) {
+                String msg = String.format("%s:%d: %s", source, lineNumber, e.getMessage());
+                throw new IllegalArgumentException(msg, e);
+            }
+        }
+        return defs;
+    }
+
+    private static Definition parseLine(String[] f, Map<String, Unit<?>> local) {
+        switch (f[0]) {
+        case "sku":
+            checkFields(f, 2, 3);
+            String name = f.length > 2 ? f[2] : f[1];
+            return new Definition(AlternateUnit.<Dimensionless>of(Units.ONE, f[1], name).asType(SKU.class), name, true);
+        case "unit":
+            checkFields(f, 5, 5);
+            return new Definition(new TransformedUnit<>(f[1], f[2], scale(resolve(f[4], local), f[3]), IDENTITY), f[2], true);
+        case "alias":
+            checkFields(f, 3, 3);
+            return new Definition(resolve(f[1], local), f[2], false);
+        default:
+            throw new IllegalArgumentException("unknown definition: " + f[0]);
+        }
+    }
+
+    private static void checkFields(String[] f, int min, int max) {
+        if(f.length < min || f.length > max) {
+            throw new IllegalArgumentException(String.format("[%s] expects %d to %d fields, got %d", f[0], min, max, f.length));
+        }
+    }
+
+    private static Unit<?> resolve(String s, Map<String, Unit<?>> local) {
+        Unit<?> u = local.get(s);
+        if(u == null) {
+            u = Units.nameFor(s);
+        }
+        if(u == null) {
+            u = Units.symbolFor(s);
+        }
+        return u != null ? u : Units.parse(s);
+    }
+
+    private static Unit<?> scale(Unit<?> base, String factor) {
+        long numerator;
+        long denominator;
+        int slash = factor.indexOf('/');
+        if(slash > 0) {
+            numerator = Long.parseLong(factor.substring(0, slash));
+            denominator = Long.parseLong(factor.substring(slash + 1));
+        } else {
+            // 小数按分数处理，比如 0.25 = 25/100，保证换算是精确的
+            BigDecimal d = new BigDecimal(factor).stripTrailingZeros();
+            int scale = Math.max(0, d.scale());
+            numerator = d.movePointRight(scale).longValueExact();
+            denominator = BigInteger.TEN.pow(scale).longValueExact();
+        }
+        if(numerator <= 0 || denominator <= 0) {
+            throw new IllegalArgumentException("factor must be positive: " + factor);
+        }
+
+        Unit<?> u = numerator == 1 ? base : base.multiply(numerator);
+        return denominator == 1 ? u : u.divide(denominator);
+    }
+
+    /**
+     * 一条定义：新单位及其别名，或者已有单位的别名
+     */
+    static final class Definition {
+        final Unit<?> unit;
+        final String alias;
+
+        /**
+         * true表示新单位，false表示为已有单位增加别名
+         */
+        final boolean isUnit;
+
+        Definition(Unit<?> unit, String alias, boolean isUnit) {
+            this.unit = unit;
+            this.alias = alias;
+            this.isUnit = isUnit;
+        }
+    }
+}
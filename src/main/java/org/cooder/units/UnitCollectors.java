@@ -0,0 +1,135 @@
+package org.cooder.units;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collector;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+/**
+ * 用于 {@link java.util.stream.Stream} 的 {@link Collector}，对 {@link UnitNumber} 求和、求平均值和统计。<br>
+ * 与 {@code stream.reduce(UnitNumber::add)} 相比，每个线程在可变的 {@link UnitAccumulator} 中累加，
+ * 不为每一步创建新的 {@link UnitNumber}，合并时只合并各线程的部分和，所以在并行流中可以随线程数线性扩展。
+ *
+ * <pre>
+ * UnitNumber&lt;Money&gt; total = prices.parallelStream().collect(UnitCollectors.summing(Units.元));
+ * Map&lt;Unit&lt;?&gt;, UnitNumber&lt;?&gt;&gt; byUnit = items.stream().collect(UnitCollectors.summingByUnit());
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitCollectors {
+    private UnitCollectors() {
+    }
+
+    /**
+     * 求和，每个量转换为unit后累加，使用unit这类量的计算方式
+     *
+     * @param unit 结果的单位
+     *
+     * @return 和，没有元素时为0
+     */
+    public static <Q extends Quantity<Q>> Collector<UnitNumber<Q>, ?, UnitNumber<Q>> summing(Unit<Q> unit) {
+        return summing(unit, Units.numericMode(unit));
+    }
+
+    /**
+     * 按指定的计算方式求和，比如对工程量使用 {@link NumericMode#DOUBLE}
+     *
+     * @param unit 结果的单位
+     * @param mode 计算方式
+     *
+     * @return 和，没有元素时为0
+     */
+    public static <Q extends Quantity<Q>> Collector<UnitNumber<Q>, ?, UnitNumber<Q>> summing(Unit<Q> unit, NumericMode mode) {
+        return Collector.of(() -> new UnitAccumulator<>(unit, mode), UnitAccumulator::add, UnitAccumulator::merge,
+                UnitAccumulator::sum, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * 与 {@link #summing(Unit)} 相同，用于元素类型为 {@code UnitNumber<?>} 的流，不需要先调用 {@link UnitNumber#asType(Class)}
+     *
+     * @throws javax.measure.UnconvertibleException 如果元素的单位不能转换为unit
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static <Q extends Quantity<Q>> Collector<UnitNumber<?>, ?, UnitNumber<Q>> summingAs(Unit<Q> unit) {
+        return (Collector) summing(unit);
+    }
+
+    /**
+     * 求平均值
+     *
+     * @param unit 结果的单位
+     *
+     * @return 平均值，没有元素时为null
+     */
+    public static <Q extends Quantity<Q>> Collector<UnitNumber<Q>, ?, UnitNumber<Q>> averaging(Unit<Q> unit) {
+        return Collector.of(() -> new UnitAccumulator<>(unit), UnitAccumulator::add, UnitAccumulator::merge,
+                acc -> acc.count() == 0 ? null : acc.sum().divide(acc.count()), Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * 统计个数、和、最小值、最大值和平均值
+     *
+     * @param unit 结果的单位
+     */
+    public static <Q extends Quantity<Q>> Collector<UnitNumber<Q>, ?, UnitNumberStatistics<Q>> summarizing(Unit<Q> unit) {
+        return Collector.of(() -> new UnitNumberStatistics<>(unit), UnitNumberStatistics::accept,
+                UnitNumberStatistics::combine, Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * 按单位分别求和，不做单位转换。适合单位各不相同的一组量，比如SKU单位的数量
+     *
+     * @return 单位到和的映射，按单位第一次出现的顺序
+     */
+    public static Collector<UnitNumber<?>, ?, Map<Unit<?>, UnitNumber<?>>> summingByUnit() {
+        return Collector.of(ByUnit::new, ByUnit::add, ByUnit::merge, ByUnit::toMap);
+    }
+
+    /**
+     * 每个单位对应一个求和器
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static final class ByUnit {
+        private final Map<Unit<?>, UnitAccumulator> sums = new LinkedHashMap<>();
+
+        /**
+         * 最近一次使用的单位，连续相同单位时不查找map
+         */
+        private Unit<?> lastUnit;
+        private UnitAccumulator last;
+
+        void add(UnitNumber<?> n) {
+            Unit u = n.getUnit();
+            if(u != lastUnit) {
+                last = sums.computeIfAbsent(u, UnitAccumulator::new);
+                lastUnit = u;
+            }
+            last.add(n.getValue(), u);
+        }
+
+        ByUnit merge(ByUnit that) {
+            for (Map.Entry<Unit<?>, UnitAccumulator> e : that.sums.entrySet()) {
+                UnitAccumulator acc = sums.get(e.getKey());
+                if(acc == null) {
+                    sums.put(e.getKey(), e.getValue());
+                } else {
+                    acc.merge(e.getValue());
+                }
+            }
+            lastUnit = null;
+            return this;
+        }
+
+        Map<Unit<?>, UnitNumber<?>> toMap() {
+            Map<Unit<?>, UnitNumber<?>> ret = new LinkedHashMap<>(sums.size() * 2);
+            for (Map.Entry<Unit<?>, UnitAccumulator> e : sums.entrySet()) {
+                ret.put(e.getKey(), e.getValue().sum());
+            }
+            return ret;
+        }
+    }
+}
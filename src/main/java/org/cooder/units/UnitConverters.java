@@ -0,0 +1,176 @@
+package org.cooder.units;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.AbstractConverter;
+
+/**
+ * 单位转换器缓存。<br>
+ * indriya 每次单位转换都会重新构建转换器链，比如 厘米 → m/100 → m，
+ * 这里按 (源单位, 目标单位) 缓存已经合并好的转换器，相同的单位对只解析一次。<br>
+ * 当 {@link Units#addUnit(Unit, String)} 或 {@link Units#addAlias(Unit, String)} 修改单位注册表时，缓存会被清空。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitConverters {
+    private static final int MAX_SIZE = 4096;
+
+    private static final int DIRECT = 0;
+    private static final int TO_SYSTEM = 1;
+    private static final int FROM_SYSTEM = 2;
+
+    private static final Map<Key, UnitConverter> CACHE = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private UnitConverters() {
+    }
+
+    /**
+     * 获取从源单位到目标单位的转换器
+     *
+     * @param from 源单位
+     * @param to   目标单位
+     * @param <Q>  量的类型
+     *
+     * @return 转换器
+     *
+     * @throws javax.measure.UnconvertibleException 如果两个单位无法转换
+     */
+    public static <Q extends Quantity<Q>> UnitConverter of(Unit<Q> from, Unit<Q> to) {
+        if(from == to) {
+            return AbstractConverter.IDENTITY;
+        }
+        return get(new Key(from, to, DIRECT));
+    }
+
+    /**
+     * 获取从指定单位到其国际标准单位的转换器
+     *
+     * @param unit 单位
+     *
+     * @return 转换器
+     */
+    public static UnitConverter toSystemUnit(Unit<?> unit) {
+        return get(new Key(unit, unit, TO_SYSTEM));
+    }
+
+    /**
+     * 获取从源单位到目标单位的国际标准单位的转换器，用于加减运算时把两个量统一到同一个国际标准单位
+     *
+     * @param from   源单位
+     * @param target 目标单位
+     *
+     * @return 转换器
+     */
+    static UnitConverter toSystemUnitOf(Unit<?> from, Unit<?> target) {
+        return get(new Key(from, target, TO_SYSTEM));
+    }
+
+    /**
+     * 获取从国际标准单位到指定单位的转换器，即 {@link #toSystemUnit(Unit)} 的逆
+     *
+     * @param unit 单位
+     *
+     * @return 转换器
+     */
+    public static UnitConverter fromSystemUnit(Unit<?> unit) {
+        return get(new Key(unit, unit, FROM_SYSTEM));
+    }
+
+    /**
+     * 清空缓存，统计数据不会被清空
+     */
+    public static void invalidate() {
+        CACHE.clear();
+    }
+
+    /**
+     * @return 命中缓存的次数
+     */
+    public static long hitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return 未命中缓存的次数
+     */
+    public static long missCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return 缓存的转换器数量
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    private static UnitConverter get(Key key) {
+        UnitConverter c = CACHE.get(key);
+        if(c != null) {
+            HITS.increment();
+            return c;
+        }
+
+        MISSES.increment();
+        c = key.resolve();
+        if(CACHE.size() >= MAX_SIZE) {
+            CACHE.clear();
+        }
+        CACHE.put(key, c);
+        return c;
+    }
+
+    private static final class Key {
+        private final Unit<?> from;
+        private final Unit<?> to;
+        private final int kind;
+        private final int hash;
+
+        Key(Unit<?> from, Unit<?> to, int kind) {
+            this.from = Objects.requireNonNull(from);
+            this.to = Objects.requireNonNull(to);
+            this.kind = kind;
+            this.hash = (31 * from.hashCode() + to.hashCode()) * 31 + kind;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        UnitConverter resolve() {
+            Unit f = from;
+            Unit t = to;
+            switch (kind) {
+            case TO_SYSTEM:
+                return f.getConverterTo(t.getSystemUnit());
+            case FROM_SYSTEM:
+                return f.getConverterTo(f.getSystemUnit()).inverse();
+            default:
+                return f.getConverterTo(t);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj) {
+                return true;
+            }
+            if(obj instanceof Key) {
+                Key that = (Key) obj;
+                return hash == that.hash && kind == that.kind && from.equals(that.from) && to.equals(that.to);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.measure.Unit;
+
+/**
+ * 单位字典，为 {@link UnitNumberCodec} 提供稳定的单位ID。<br>
+ * 字典由单位的字符串形式按顺序组成，ID就是在列表中的下标，通信的双方使用相同的列表就能得到相同的ID，与各自注册单位的顺序无关。<br>
+ * {@link #builtin()} 包含所有内置单位，站点自定义的单位通过 {@link #extend(Collection)} 追加在后面。
+ * 追加不会改变已有单位的ID，所以新版本的字典可以读取旧版本写入的数据。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitDictionary {
+    private static volatile UnitDictionary builtin;
+
+    private final List<String> strings;
+    private final Unit<?>[] units;
+    private final Map<Unit<?>, Integer> ids;
+    private final int fingerprint;
+
+    private UnitDictionary(List<String> strings) {
+        this.strings = Collections.unmodifiableList(strings);
+        this.units = new Unit<?>[strings.size()];
+        this.ids = new HashMap<>(strings.size() * 2);
+        for (int i = 0; i < units.length; i++) {
+            Unit<?> u = resolve(strings.get(i));
+            units[i] = u;
+            ids.putIfAbsent(u, i);
+        }
+        this.fingerprint = strings.hashCode();
+    }
+
+    /**
+     * 按列表的顺序创建字典
+     *
+     * @param strings 单位的字符串形式，必须是已经注册的单位或者可以解析的组合单位
+     *
+     * @throws IllegalArgumentException 如果有重复的单位，或者单位无法解析
+     */
+    public static UnitDictionary of(Collection<String> strings) {
+        List<String> list = new ArrayList<>(strings.size());
+        for (String s : strings) {
+            if(list.contains(s)) {
+                throw new IllegalArgumentException(String.format("[%s] duplicated", s));
+            }
+            list.add(s);
+        }
+        return new UnitDictionary(list);
+    }
+
+    /**
+     * @return 所有内置单位组成的字典，顺序与 {@link Units} 中注册的顺序相同
+     */
+    public static UnitDictionary builtin() {
+        UnitDictionary d = builtin;
+        if(d == null) {
+            List<String> list = new ArrayList<>();
+            for (Unit<?> u : Units.builtinUnits()) {
+                list.add(u.toString());
+            }
+            d = new UnitDictionary(list);
+            builtin = d;
+        }
+        return d;
+    }
+
+    /**
+     * 在当前字典后面追加单位，已经存在的单位忽略
+     *
+     * @param more 单位的字符串形式
+     *
+     * @return 新的字典，已有单位的ID不变
+     */
+    public UnitDictionary extend(Collection<String> more) {
+        List<String> list = new ArrayList<>(strings);
+        for (String s : more) {
+            if(!list.contains(s)) {
+                list.add(s);
+            }
+        }
+        return new UnitDictionary(list);
+    }
+
+    /**
+     * @return 单位的字符串形式，下标即ID
+     */
+    public List<String> strings() {
+        return strings;
+    }
+
+    public int size() {
+        return units.length;
+    }
+
+    /**
+     * 字典内容的指纹，通信的双方可以比较指纹确认使用的是同一个字典
+     */
+    public int fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return 单位的ID，不在字典中时返回-1
+     */
+    public int id(Unit<?> unit) {
+        Integer id = ids.get(unit);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @throws IllegalArgumentException 如果ID不在字典中
+     */
+    public Unit<?> unit(int id) {
+        if(id < 0 || id >= units.length) {
+            throw new IllegalArgumentException("unknown unit id: " + id);
+        }
+        return units[id];
+    }
+
+    private static Unit<?> resolve(String s) {
+        Unit<?> u = Units.getUnit(s);
+        return u != null ? u : Units.parse(s, true);
+    }
+}
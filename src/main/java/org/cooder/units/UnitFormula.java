@@ -0,0 +1,611 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+/**
+ * 编译后的带单位的公式，比如 {@code 长 * 宽 * 单价(元/平米) + 人工(人天) * 日薪(元/人天)}。<br>
+ * 公式只解析一次：变量的单位、单位之间的换算系数、加减法两边的量纲在编译时确定并检查，
+ * 量纲不匹配时编译失败，不用等到计算时才发现。计算时只做double运算，不创建对象，适合对大量的行重复计算。<br>
+ * 语法：<br>
+ * 1. 运算符 + - * / 和括号，乘除优先于加减；<br>
+ * 2. 变量名由字母、汉字、数字和下划线组成，不能以数字开头。变量名后面紧跟括号时括号中为变量的单位，比如 {@code 单价(元/平米)}，
+ * 没有写单位的变量在编译时通过参数提供单位；<br>
+ * 3. 数字常量默认无单位，也可以紧跟括号写单位，比如 {@code 1.5(元)}。<br>
+ * 与 {@link UnitNumber#multiply(UnitNumber)} 一样，每个变量先转换为国际标准单位再计算，
+ * 结果的单位默认为国际标准单位，可以通过 {@link #to(Unit)} 指定。<br>
+ * 编译后的公式是不可变的，可以在多个线程中共享。
+ *
+ * <pre>
+ * UnitFormula f = UnitFormula.compile("长 * 宽 * 单价(元/平米) + 人工(人天) * 日薪(元/人天)",
+ *         Collections.singletonMap("长", Units.米), ...).to(Units.元);
+ * double price = f.evaluate(长, 宽, 单价, 人工, 日薪);
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitFormula {
+    private final String expression;
+    private final List<String> variables;
+    private final Unit<?>[] variableUnits;
+    private final Node root;
+    private final Unit<?> unit;
+
+    private UnitFormula(String expression, List<String> variables, Unit<?>[] variableUnits, Node root, Unit<?> unit) {
+        this.expression = expression;
+        this.variables = variables;
+        this.variableUnits = variableUnits;
+        this.root = root;
+        this.unit = unit;
+    }
+
+    /**
+     * 编译公式，所有变量都必须在公式中写明单位
+     *
+     * @throws IllegalArgumentException 如果公式的语法错误，或者单位无法解析
+     * @throws IllegalStateException    如果量纲不匹配
+     */
+    public static UnitFormula compile(String expression) {
+        return compile(expression, Collections.<String, Unit<?>> emptyMap());
+    }
+
+    /**
+     * 编译公式
+     *
+     * @param expression 公式
+     * @param units      公式中没有写明单位的变量的单位
+     *
+     * @throws IllegalArgumentException 如果公式的语法错误，单位无法解析，或者变量没有单位
+     * @throws IllegalStateException    如果量纲不匹配
+     */
+    public static UnitFormula compile(String expression, Map<String, ? extends Unit<?>> units) {
+        Parser p = new Parser(expression, units);
+        Node root = p.parse();
+        return new UnitFormula(expression, Collections.unmodifiableList(p.names), p.units.toArray(new Unit<?>[0]),
+                root, root.unit);
+    }
+
+    /**
+     * 指定结果的单位，换算在编译时合并到公式中
+     *
+     * @throws IllegalStateException 如果结果的量纲与unit不同
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public UnitFormula to(Unit<?> unit) {
+        checkCompatible(this.unit, unit);
+        if(unit.equals(this.unit)) {
+            return this;
+        }
+        Node n = Node.convert(root, UnitConverters.of((Unit) this.unit, (Unit) unit), unit);
+        return new UnitFormula(expression, variables, variableUnits, n, unit);
+    }
+
+    /**
+     * @return 变量名，按在公式中第一次出现的顺序，下标与 {@link #evaluate(double...)} 的参数对应
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return 变量的下标，不存在时返回-1
+     */
+    public int indexOf(String variable) {
+        return variables.indexOf(variable);
+    }
+
+    /**
+     * @return 变量的单位，{@link #evaluate(double...)} 的参数以这个单位为准
+     */
+    public Unit<?> getVariableUnit(int index) {
+        return variableUnits[index];
+    }
+
+    /**
+     * @return 结果的单位
+     */
+    public Unit<?> getUnit() {
+        return unit;
+    }
+
+    /**
+     * 计算公式，不创建对象
+     *
+     * @param values 变量的值，顺序与 {@link #getVariables()} 相同，单位为 {@link #getVariableUnit(int) 变量的单位}
+     *
+     * @return {@link #getUnit() 结果单位}下的值
+     *
+     * @throws IllegalArgumentException 如果变量的个数不对
+     */
+    public double evaluate(double... values) {
+        if(values.length != variableUnits.length) {
+            String msg = String.format("[%s] expects %d values, got %d", expression, variableUnits.length, values.length);
+            throw new IllegalArgumentException(msg);
+        }
+        return root.eval(values);
+    }
+
+    /**
+     * 按列计算：每一列是一个变量的值，结果的第i个元素为第i行的计算结果
+     *
+     * @param columns 变量的值，顺序与 {@link #getVariables()} 相同，每一列的长度必须相同
+     */
+    public double[] evaluate(double[][] columns) {
+        if(columns.length != variableUnits.length) {
+            String msg = String.format("[%s] expects %d columns, got %d", expression, variableUnits.length, columns.length);
+            throw new IllegalArgumentException(msg);
+        }
+        int rows = columns.length == 0 ? 1 : columns[0].length;
+        for (double[] c : columns) {
+            if(c.length != rows) {
+                throw new IllegalArgumentException(String.format("size not match: %d, %d", rows, c.length));
+            }
+        }
+
+        double[] res = new double[rows];
+        double[] row = new double[columns.length];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns.length; j++) {
+                row[j] = columns[j][i];
+            }
+            res[i] = root.eval(row);
+        }
+        return res;
+    }
+
+    /**
+     * 计算公式，变量的值会转换为变量的单位
+     *
+     * @param values 变量名到值的映射
+     *
+     * @throws IllegalArgumentException 如果缺少变量
+     * @throws IllegalStateException    如果变量值的单位与变量的单位不匹配
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public UnitNumber<?> evaluate(Map<String, ? extends UnitNumber<?>> values) {
+        double[] v = new double[variableUnits.length];
+        for (int i = 0; i < v.length; i++) {
+            UnitNumber<?> n = values.get(variables.get(i));
+            if(n == null) {
+                throw new IllegalArgumentException(String.format("[%s] missing", variables.get(i)));
+            }
+            Unit u = variableUnits[i];
+            if(n.getUnit().equals(u)) {
+                v[i] = n.getValue().doubleValue();
+            } else {
+                checkCompatible(n.getUnit(), u);
+                v[i] = UnitConverters.of((Unit) n.getUnit(), u).convert(n.getValue().doubleValue());
+            }
+        }
+        return new UnitNumber(root.eval(v), unit);
+    }
+
+    /**
+     * 检查两个单位可以互相换算，无量纲单位还要是同一类量
+     *
+     * @throws IllegalStateException 如果不能换算
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static void checkCompatible(Unit<?> unit, Unit<?> that) {
+        UnitNumber.checkDimensionless((Unit) unit, (Unit) that);
+        if(!unit.isCompatible(that)) {
+            throw new IllegalStateException(String.format("[%s] is not [%s]", unit, that));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression + " -> " + unit;
+    }
+
+    /**
+     * 编译后的表达式树，每个节点的值都以节点的单位表示
+     */
+    private abstract static class Node {
+        final Unit<?> unit;
+
+        Node(Unit<?> unit) {
+            this.unit = unit;
+        }
+
+        abstract double eval(double[] v);
+
+        /**
+         * @return 值相同、单位不同的节点，单位只在编译时使用
+         */
+        abstract Node withUnit(Unit<?> unit);
+
+        boolean isConstant() {
+            return false;
+        }
+
+        /**
+         * 节点的值乘以常数，与已有的常数合并
+         */
+        static Node scale(Node n, double factor, Unit<?> unit) {
+            if(factor == 1) {
+                return n.unit == unit ? n : n.withUnit(unit);
+            }
+            if(n instanceof Const) {
+                return new Const(((Const) n).value * factor, unit);
+            }
+            if(n instanceof Scaled) {
+                Scaled s = (Scaled) n;
+                return new Scaled(s.node, s.factor * factor, unit);
+            }
+            return new Scaled(n, factor, unit);
+        }
+
+        static Node convert(Node n, UnitConverter c, Unit<?> unit) {
+            if(c.isIdentity()) {
+                return scale(n, 1, unit);
+            }
+            if(c.isLinear()) {
+                return scale(n, c.convert(1.0), unit);
+            }
+            if(n instanceof Const) {
+                return new Const(c.convert(((Const) n).value), unit);
+            }
+            return new Converted(n, c, unit);
+        }
+    }
+
+    private static final class Const extends Node {
+        final double value;
+
+        Const(double value, Unit<?> unit) {
+            super(unit);
+            this.value = value;
+        }
+
+        @Override
+        double eval(double[] v) {
+            return value;
+        }
+
+        @Override
+        Node withUnit(Unit<?> unit) {
+            return new Const(value, unit);
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static final class Variable extends Node {
+        final int index;
+
+        Variable(int index, Unit<?> unit) {
+            super(unit);
+            this.index = index;
+        }
+
+        @Override
+        double eval(double[] v) {
+            return v[index];
+        }
+
+        @Override
+        Node withUnit(Unit<?> unit) {
+            return new Variable(index, unit);
+        }
+    }
+
+    private static final class Scaled extends Node {
+        final Node node;
+        final double factor;
+
+        Scaled(Node node, double factor, Unit<?> unit) {
+            super(unit);
+            this.node = node;
+            this.factor = factor;
+        }
+
+        @Override
+        double eval(double[] v) {
+            return node.eval(v) * factor;
+        }
+
+        @Override
+        Node withUnit(Unit<?> unit) {
+            return new Scaled(node, factor, unit);
+        }
+    }
+
+    /**
+     * 非线性的单位换算，比如摄氏度
+     */
+    private static final class Converted extends Node {
+        final Node node;
+        final UnitConverter converter;
+
+        Converted(Node node, UnitConverter converter, Unit<?> unit) {
+            super(unit);
+            this.node = node;
+            this.converter = converter;
+        }
+
+        @Override
+        double eval(double[] v) {
+            return converter.convert(node.eval(v));
+        }
+
+        @Override
+        Node withUnit(Unit<?> unit) {
+            return new Converted(node, converter, unit);
+        }
+    }
+
+    private static final class Binary extends Node {
+        final char op;
+        final Node left;
+        final Node right;
+
+        Binary(char op, Node left, Node right, Unit<?> unit) {
+            super(unit);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(double[] v) {
+            double a = left.eval(v);
+            double b = right.eval(v);
+            switch (op) {
+            case '+':
+                return a + b;
+            case '-':
+                return a - b;
+            case '*':
+                return a * b;
+            default:
+                return a / b;
+            }
+        }
+
+        @Override
+        Node withUnit(Unit<?> unit) {
+            return new Binary(op, left, right, unit);
+        }
+    }
+
+    /**
+     * 递归下降的语法分析，同时完成单位的推导和检查
+     */
+    private static final class Parser {
+        private final String expression;
+        private final Map<String, ? extends Unit<?>> declared;
+        private final List<String> names = new ArrayList<>();
+        private final List<Unit<?>> units = new ArrayList<>();
+        private final Map<String, Node> leaves = new HashMap<>();
+        private int pos;
+
+        Parser(String expression, Map<String, ? extends Unit<?>> declared) {
+            this.expression = expression;
+            this.declared = declared;
+        }
+
+        Node parse() {
+            Node n = expression();
+            skipSpaces();
+            if(pos < expression.length()) {
+                throw error("unexpected '" + expression.charAt(pos) + "'");
+            }
+            return n;
+        }
+
+        private Node expression() {
+            Node n = term();
+            for (;;) {
+                char c = peek();
+                if(c != '+' && c != '-') {
+                    return n;
+                }
+                pos++;
+                n = addition(c, n, term());
+            }
+        }
+
+        private Node term() {
+            Node n = unary();
+            for (;;) {
+                char c = peek();
+                if(c != '*' && c != '/') {
+                    return n;
+                }
+                pos++;
+                n = product(c, n, unary());
+            }
+        }
+
+        private Node unary() {
+            char c = peek();
+            if(c == '-') {
+                pos++;
+                Node n = unary();
+                return Node.scale(n, -1, n.unit);
+            }
+            if(c == '+') {
+                pos++;
+                return unary();
+            }
+            return primary();
+        }
+
+        private Node primary() {
+            char c = peek();
+            if(c == '(') {
+                pos++;
+                Node n = expression();
+                expect(')');
+                return n;
+            }
+            if(isNumberStart(c)) {
+                double value = number();
+                Unit<?> u = annotation();
+                if(u == null) {
+                    return new Const(value, Units.ONE);
+                }
+                return Node.convert(new Const(value, u), UnitConverters.toSystemUnit(u), u.getSystemUnit());
+            }
+            if(isIdentifierStart(c)) {
+                return variable();
+            }
+            throw error(c == 0 ? "unexpected end" : "unexpected '" + c + "'");
+        }
+
+        private Node variable() {
+            int start = pos;
+            while (pos < expression.length() && isIdentifierPart(expression.charAt(pos))) {
+                pos++;
+            }
+            String name = expression.substring(start, pos);
+            Unit<?> u = annotation();
+
+            Node leaf = leaves.get(name);
+            if(leaf != null) {
+                if(u != null && !u.equals(units.get(names.indexOf(name)))) {
+                    throw error(String.format("[%s] declared with different units", name));
+                }
+                return leaf;
+            }
+
+            if(u == null) {
+                u = declared.get(name);
+                if(u == null) {
+                    throw error(String.format("[%s] has no unit", name));
+                }
+            }
+            names.add(name);
+            units.add(u);
+            // 变量先换算为国际标准单位，系数在编译时确定
+            leaf = Node.convert(new Variable(names.size() - 1, u), UnitConverters.toSystemUnit(u), u.getSystemUnit());
+            leaves.put(name, leaf);
+            return leaf;
+        }
+
+        /**
+         * 紧跟在变量名或数字后面的括号中为单位
+         */
+        private Unit<?> annotation() {
+            if(pos >= expression.length() || expression.charAt(pos) != '(') {
+                return null;
+            }
+            int start = ++pos;
+            int depth = 1;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+                if(c == '(') {
+                    depth++;
+                } else if(c == ')' && --depth == 0) {
+                    break;
+                }
+                pos++;
+            }
+            if(depth != 0) {
+                throw error("unclosed unit");
+            }
+            String symbol = expression.substring(start, pos++).trim();
+            try {
+                return Units.parse(symbol, true);
+            } catch (RuntimeException e) {
+                throw error(String.format("unknown unit [%s]", symbol));
+            }
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private Node addition(char op, Node left, Node right) {
+            checkCompatible(left.unit, right.unit);
+            if(!right.unit.equals(left.unit)) {
+                right = Node.convert(right, UnitConverters.of((Unit) right.unit, (Unit) left.unit), left.unit);
+            }
+            if(left.isConstant() && right.isConstant()) {
+                double a = ((Const) left).value;
+                double b = ((Const) right).value;
+                return new Const(op == '+' ? a + b : a - b, left.unit);
+            }
+            return new Binary(op, left, right, left.unit);
+        }
+
+        private Node product(char op, Node left, Node right) {
+            Unit<?> u = op == '*' ? left.unit.multiply(right.unit) : left.unit.divide(right.unit);
+            u = UnitInterner.intern(u);
+            if(right.isConstant()) {
+                double b = ((Const) right).value;
+                return Node.scale(left, op == '*' ? b : 1 / b, u);
+            }
+            if(left.isConstant() && op == '*') {
+                return Node.scale(right, ((Const) left).value, u);
+            }
+            return new Binary(op, left, right, u);
+        }
+
+        private double number() {
+            int start = pos;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+                if(Character.isDigit(c) || c == '.') {
+                    pos++;
+                } else if((c == 'e' || c == 'E') && pos + 1 < expression.length()) {
+                    char n = expression.charAt(pos + 1);
+                    if(Character.isDigit(n) || n == '-' || n == '+') {
+                        pos += 2;
+                    } else {
+                        break;
+                    }
+                } else {
+                    break;
+                }
+            }
+            try {
+                return Double.parseDouble(expression.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("illegal number");
+            }
+        }
+
+        private void expect(char c) {
+            if(peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            skipSpaces();
+            return pos < expression.length() ? expression.charAt(pos) : 0;
+        }
+
+        private void skipSpaces() {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String msg) {
+            return new IllegalArgumentException(String.format("[%s] %s at %d", expression, msg, pos));
+        }
+
+        private static boolean isNumberStart(char c) {
+            return Character.isDigit(c) || c == '.';
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+/**
+ * 单位的驻留表。每个出现过的单位(包括运行时组合出来的 {@link tech.units.indriya.unit.ProductUnit})都对应一个规范实例和一个从0开始的整数ID，
+ * 同时预先计算好两种关系：<br>
+ * 1. 可以互相转换(即 {@link Unit#isCompatible(Unit)})；<br>
+ * 2. 完全相同(可以互相转换，并且字符串形式相同)。<br>
+ * 两种关系都是等价关系，所以按关系把单位分组，每个单位记录所在组的编号，判断两个单位的关系时只需要比较编号，
+ * 不需要格式化单位。<br>
+ * 单位的字符串形式依赖于注册的标签，注册表发布新的快照后驻留表重新开始，ID只在同一个快照内有效。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class UnitInterner {
+    /**
+     * 驻留的单位个数上限，超过后新的单位不再驻留，使用普通的比较方式
+     */
+    static final int MAX_UNITS = 4096;
+
+    private static volatile Table table;
+
+    private UnitInterner() {
+    }
+
+    /**
+     * @return 单位的驻留信息，驻留表已满时返回null
+     */
+    static Entry entry(Unit<?> unit) {
+        return table().get(unit);
+    }
+
+    /**
+     * @return 与unit相等的规范实例，驻留表已满时返回unit本身
+     */
+    @SuppressWarnings("unchecked")
+    static <U extends Unit<?>> U intern(U unit) {
+        Entry e = entry(unit);
+        return e == null ? unit : (U) e.unit;
+    }
+
+    /**
+     * @return 单位的ID，驻留表已满时返回-1
+     */
+    static int id(Unit<?> unit) {
+        Entry e = entry(unit);
+        return e == null ? -1 : e.id;
+    }
+
+    /**
+     * 判断两个单位是否完全相同：可以互相转换，并且字符串形式相同
+     */
+    static boolean isSame(Unit<?> u, Unit<?> that) {
+        if(u == that) {
+            return true;
+        }
+        Table t = table();
+        Entry e1 = t.get(u);
+        Entry e2 = t.get(that);
+        if(e1 != null && e2 != null) {
+            return e1.sameClass == e2.sameClass;
+        }
+        return u.isCompatible(that) && Units.format(u).equals(Units.format(that));
+    }
+
+    /**
+     * 判断单位是否为无量纲单位，即可以转换为 {@link Units#ONE}
+     */
+    static boolean isDimensionless(Unit<?> u) {
+        Entry e = entry(u);
+        return e != null ? e.dimensionless : u.isCompatible(Units.ONE);
+    }
+
+    /**
+     * @return 单位的国际标准单位，驻留的单位只计算一次
+     */
+    static Unit<?> systemUnit(Unit<?> u) {
+        Entry e = entry(u);
+        return e != null ? e.systemUnit : u.getSystemUnit();
+    }
+
+    /**
+     * @return 到国际标准单位的转换是否为线性的(没有偏移量)，驻留的单位只计算一次
+     */
+    static boolean isLinear(Unit<?> u) {
+        Entry e = entry(u);
+        return e != null ? !Double.isNaN(e.systemScale) : UnitConverters.toSystemUnit(u).isLinear();
+    }
+
+    /**
+     * @return 单位所属的这类量的计算方式
+     */
+    static NumericMode numericMode(Unit<?> u) {
+        Map<Unit<?>, NumericMode> modes = Units.numericModes();
+        if(modes.isEmpty()) {
+            return NumericMode.EXACT;
+        }
+        Entry e = entry(u);
+        NumericMode m = e != null ? e.numericMode(modes) : modes.get(u.getSystemUnit());
+        return m == null ? NumericMode.EXACT : m;
+    }
+
+    /**
+     * @return {@link NumericMode#DOUBLE} 的单位到国际标准单位的比例系数，
+     *         精确计算、非线性或者没有驻留的单位返回NaN
+     */
+    static double doubleScale(Unit<?> u) {
+        Map<Unit<?>, NumericMode> modes = Units.numericModes();
+        if(modes.isEmpty()) {
+            return Double.NaN;
+        }
+        Entry e = entry(u);
+        return e != null && e.numericMode(modes) == NumericMode.DOUBLE ? e.systemScale : Double.NaN;
+    }
+
+    private static Table table() {
+        Units.Snapshot snapshot = Units.snapshot();
+        Table t = table;
+        if(t == null || t.snapshot != snapshot) {
+            synchronized (UnitInterner.class) {
+                t = table;
+                if(t == null || t.snapshot != snapshot) {
+                    t = new Table(snapshot);
+                    table = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 单位的驻留信息
+     */
+    static final class Entry {
+        final int id;
+        final Unit<?> unit;
+        final Unit<?> systemUnit;
+        final boolean dimensionless;
+
+        /**
+         * 单位的字符串形式，即 {@link Units#format(Unit)}
+         */
+        final String label;
+
+        /**
+         * 是否为 {@link Units#ONE}，格式化量时单位一不输出标签
+         */
+        final boolean one;
+
+        /**
+         * 到国际标准单位的比例系数，非线性的单位为NaN
+         */
+        final double systemScale;
+
+        /**
+         * 是否为注册的单位，只有注册的单位缓存小整数值的实例
+         */
+        final boolean registered;
+
+        /**
+         * 计算方式，在 {@link Units#setNumericMode(Unit, NumericMode)} 之后第一次使用时重新计算
+         */
+        private volatile ModeCache mode;
+
+        /**
+         * 小整数值的共享实例，参见 {@link UnitNumber#of(long, Unit)}，第一次使用时创建
+         */
+        private volatile UnitNumber<?>[] values;
+
+        /**
+         * 可以互相转换的单位所在组的编号
+         */
+        final int compatibleClass;
+
+        /**
+         * 完全相同的单位所在组的编号
+         */
+        final int sameClass;
+
+        private Entry(int id, Unit<?> unit, String label, int compatibleClass, int sameClass) {
+            this.id = id;
+            this.unit = unit;
+            this.systemUnit = unit.getSystemUnit();
+            this.dimensionless = unit.isCompatible(Units.ONE);
+            this.label = label;
+            this.one = unit.equals(Units.ONE);
+            this.compatibleClass = compatibleClass;
+            this.sameClass = sameClass;
+            this.systemScale = systemScale(unit);
+            this.registered = Units.contains(unit);
+        }
+
+        private static double systemScale(Unit<?> unit) {
+            try {
+                UnitConverter c = UnitConverters.toSystemUnit(unit);
+                return c.isLinear() ? c.convert(1.0) : Double.NaN;
+            } catch (UnsupportedOperationException e) {
+                // 比如非线性单位的倒数 1/℃，没有到国际标准单位的转换
+                return Double.NaN;
+            }
+        }
+
+        NumericMode numericMode(Map<Unit<?>, NumericMode> modes) {
+            ModeCache c = mode;
+            if(c == null || c.modes != modes) {
+                c = new ModeCache(modes, modes.get(systemUnit));
+                mode = c;
+            }
+            return c.mode;
+        }
+
+        /**
+         * @return 小整数值的共享实例，按 {@code value - low} 下标存取，元素第一次使用时创建
+         */
+        UnitNumber<?>[] values(int size) {
+            UnitNumber<?>[] v = values;
+            if(v == null) {
+                v = new UnitNumber<?>[size];
+                values = v;
+            }
+            return v;
+        }
+
+        boolean isCompatible(Entry that) {
+            return compatibleClass == that.compatibleClass;
+        }
+    }
+
+    /**
+     * 某一版计算方式设置下单位的计算方式
+     */
+    private static final class ModeCache {
+        final Map<Unit<?>, NumericMode> modes;
+        final NumericMode mode;
+
+        ModeCache(Map<Unit<?>, NumericMode> modes, NumericMode mode) {
+            this.modes = modes;
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * 某个注册表快照对应的驻留表。<br>
+     * 规范实例的Entry保存在按引用查找的开放寻址表中，新增时在锁内原地插入，装载因子超过一半时复制到两倍大小的新数组后整体替换。
+     * Entry的字段都是final或volatile的，查找不需要加锁：读线程总是看到完整的Entry，没有看到刚插入的Entry时通过byEquals找到。<br>
+     * 与规范实例相等的其他实例通过equals查找。
+     */
+    private static final class Table {
+        private final Units.Snapshot snapshot;
+        private final Map<Unit<?>, Entry> byEquals = new ConcurrentHashMap<>();
+
+        /**
+         * 开放寻址表，按 {@link Entry#unit} 的引用查找
+         */
+        private volatile Entry[] byIdentity = new Entry[32];
+
+        /**
+         * 驻留表已满，之后没有驻留的单位不再加锁
+         */
+        private volatile boolean full;
+
+        private final List<Unit<?>> compatibleClasses = new ArrayList<>();
+        private final Map<String, Integer> sameClasses = new HashMap<>();
+        private int size;
+
+        Table(Units.Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        Entry get(Unit<?> unit) {
+            Entry[] t = byIdentity;
+            int mask = t.length - 1;
+            int i = hash(unit) & mask;
+            for (;;) {
+                Entry k = t[i];
+                if(k == null) {
+                    break;
+                }
+                if(k.unit == unit) {
+                    return k;
+                }
+                i = (i + 1) & mask;
+            }
+
+            Entry e = byEquals.get(unit);
+            return e != null || full ? e : add(unit);
+        }
+
+        private synchronized Entry add(Unit<?> unit) {
+            Entry e = byEquals.get(unit);
+            if(e != null) {
+                return e;
+            }
+            if(size >= MAX_UNITS) {
+                full = true;
+                return null;
+            }
+
+            int compatible = -1;
+            for (int i = 0; i < compatibleClasses.size(); i++) {
+                if(compatibleClasses.get(i).isCompatible(unit)) {
+                    compatible = i;
+                    break;
+                }
+            }
+            if(compatible < 0) {
+                compatible = compatibleClasses.size();
+                compatibleClasses.add(unit);
+            }
+
+            String label = Units.format(unit);
+            String key = compatible + ":" + label;
+            Integer same = sameClasses.get(key);
+            if(same == null) {
+                same = sameClasses.size();
+                sameClasses.put(key, same);
+            }
+
+            e = new Entry(size++, unit, label, compatible, same);
+            byEquals.put(unit, e);
+
+            Entry[] t = byIdentity;
+            if(size > t.length >> 1) {
+                Entry[] grown = new Entry[t.length << 1];
+                for (Entry old : t) {
+                    if(old != null) {
+                        insert(grown, old);
+                    }
+                }
+                insert(grown, e);
+                byIdentity = grown;
+            } else {
+                insert(t, e);
+            }
+            return e;
+        }
+
+        private static void insert(Entry[] t, Entry e) {
+            int mask = t.length - 1;
+            int i = hash(e.unit) & mask;
+            while (t[i] != null) {
+                i = (i + 1) & mask;
+            }
+            t[i] = e;
+        }
+
+        private static int hash(Unit<?> unit) {
+            int h = System.identityHashCode(unit);
+            return h ^ (h >>> 16);
+        }
+    }
+}
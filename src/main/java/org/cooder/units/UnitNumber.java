@@ -1,13 +1,17 @@
 package org.cooder.units;
 
+import java.util.Objects;
+
 import javax.measure.Quantity;
 import javax.measure.Unit;
+import javax.measure.UnitConverter;
 import javax.measure.format.MeasurementParseException;
 
 import org.cooder.units.quantity.UNKNOWN;
 
 import tech.units.indriya.function.Calculus;
 import tech.units.indriya.quantity.Quantities;
+import tech.units.indriya.spi.NumberSystem;
 import tech.units.indriya.unit.ProductUnit;
 
 /**
@@ -17,7 +21,8 @@ import tech.units.indriya.unit.ProductUnit;
  * "https://jcp.org/aboutJava/communityprocess/mrel/jsr385/index.html">JSR-385</a>
  * 的核心接口
  * {@link javax.measure.Quantity}
- * 的封装。
+ * 的封装。<br>
+ * 只保存数值和单位，运算结果不经过indriya的Quantity，需要时通过 {@link #toQuantity()} 创建。
  * 
  * @see javax.measure.Quantity
  * 
@@ -26,24 +31,86 @@ import tech.units.indriya.unit.ProductUnit;
  * @param <Q> 量的类型
  */
 public final class UnitNumber<Q extends Quantity<Q>> {
+    /**
+     * {@link #of(long, Unit)} 共享实例的最大值，默认为127，可以通过这个系统属性调大
+     */
+    public static final String VALUE_CACHE_HIGH_PROPERTY = "cooder.units.valueCache.high";
+
+    static final int VALUE_CACHE_LOW = -128;
+    static final int VALUE_CACHE_HIGH = Math.max(127, Integer.getInteger(VALUE_CACHE_HIGH_PROPERTY, 127));
+
     public static final UnitNumber<?> UNKNOWN_NUMBER = new UnitNumber<>(1, Units.未知);
 
-    private final Quantity<Q> q;
+    private final Number value;
+    private final Unit<Q> unit;
 
+    /**
+     * @param value 数值，与indriya一样按当前的数值系统转换为最窄的类型
+     * @param unit  单位
+     */
     public UnitNumber(Number value, Unit<Q> unit) {
-        this.q = Quantities.getQuantity(value, unit);
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(unit);
+        this.value = Calculus.currentNumberSystem().narrow(value);
+        this.unit = UnitInterner.intern(unit);
     }
 
-    private UnitNumber(Quantity<Q> q) {
-        this(q.getValue(), q.getUnit());
+    /**
+     * 与 {@link Integer#valueOf(int)} 类似，注册的单位上 -128 到 127 之间的值返回共享的实例，比如 "1 个"、"0 元"，
+     * 其他的值创建新的实例。上限可以通过系统属性 {@value #VALUE_CACHE_HIGH_PROPERTY} 调大
+     *
+     * @param value 数值
+     * @param unit  单位
+     *
+     * @return UnitNumber实例
+     */
+    @SuppressWarnings("unchecked")
+    public static <Q extends Quantity<Q>> UnitNumber<Q> of(long value, Unit<Q> unit) {
+        if(value >= VALUE_CACHE_LOW && value <= VALUE_CACHE_HIGH) {
+            UnitInterner.Entry e = UnitInterner.entry(unit);
+            if(e != null && e.registered) {
+                UnitNumber<?>[] values = e.values(VALUE_CACHE_HIGH - VALUE_CACHE_LOW + 1);
+                int i = (int) value - VALUE_CACHE_LOW;
+                UnitNumber<?> n = values[i];
+                if(n == null) {
+                    n = new UnitNumber<>((int) value, (Unit<Q>) e.unit);
+                    values[i] = n;
+                }
+                return (UnitNumber<Q>) n;
+            }
+        }
+        return new UnitNumber<>(value, unit);
+    }
+
+    /**
+     * 整数值(包括值为整数的double)通过 {@link #of(long, Unit)} 创建，用于解析和运算的结果
+     */
+    static <Q extends Quantity<Q>> UnitNumber<Q> valueOf(Number value, Unit<Q> unit) {
+        if(Numbers.isIntegral(value)) {
+            return of(value.longValue(), unit);
+        }
+        if(value instanceof Double) {
+            double v = value.doubleValue();
+            if(v >= VALUE_CACHE_LOW && v <= VALUE_CACHE_HIGH && v % 1 == 0) {
+                return of((long) v, unit);
+            }
+        }
+        return new UnitNumber<>(value, unit);
     }
 
     public Number getValue() {
-        return q.getValue();
+        return value;
     }
 
     public Unit<Q> getUnit() {
-        return q.getUnit();
+        return unit;
+    }
+
+    /**
+     * @return 数值和单位相同的indriya的量，每次调用都创建新的实例
+     */
+    public Quantity<Q> toQuantity() {
+        return Quantities.getQuantity(value, unit);
     }
 
     /**
@@ -54,10 +121,9 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return this + addend
      */
     public UnitNumber<Q> add(UnitNumber<Q> addend) {
-        checkDimensionless(addend.getUnit());
+        checkDimensionless(addend.unit);
 
-        Quantity<Q> res = q.add(addend.q);
-        return cast(res);
+        return addition(addend, false);
     }
 
     /**
@@ -68,10 +134,9 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return this - subtrahend
      */
     public UnitNumber<Q> subtract(UnitNumber<Q> subtrahend) {
-        checkDimensionless(subtrahend.getUnit());
+        checkDimensionless(subtrahend.unit);
 
-        Quantity<Q> res = q.subtract(subtrahend.q);
-        return cast(res);
+        return addition(subtrahend, true);
     }
 
     /**
@@ -82,8 +147,10 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return this × multiplicand
      */
     public UnitNumber<Q> multiply(Number multiplicand) {
-        Quantity<Q> res = q.multiply(multiplicand);
-        return cast(res);
+        if(!Double.isNaN(UnitInterner.doubleScale(unit))) {
+            return valueOf(value.doubleValue() * multiplicand.doubleValue(), unit);
+        }
+        return scalar(multiplicand, false);
     }
 
     /**
@@ -94,9 +161,22 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * 
      * @return this × multiplicand
      */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     public UnitNumber<?> multiply(UnitNumber<?> multiplicand) {
-        Quantity<?> res = q.toSystemUnit().multiply(multiplicand.q.toSystemUnit());
-        return cast(res);
+        UnitAlgebra.Result r = UnitAlgebra.multiply(unit, multiplicand.unit);
+        if(r != null) {
+            double s1 = UnitInterner.doubleScale(unit);
+            double s2 = UnitInterner.doubleScale(multiplicand.unit);
+            if(!Double.isNaN(s1) && !Double.isNaN(s2)) {
+                return valueOf(value.doubleValue() * s1 * (multiplicand.value.doubleValue() * s2), (Unit) r.unit);
+            }
+            return valueOf(r.multiply(value, multiplicand.value), (Unit) r.unit);
+        }
+        // 驻留表已满
+        UnitNumber<?> a = toSystemUnit();
+        UnitNumber<?> b = multiplicand.toSystemUnit();
+        NumberSystem ns = Calculus.currentNumberSystem();
+        return valueOf(ns.multiply(a.value, b.value), (Unit) a.unit.multiply(b.unit));
     }
 
     /**
@@ -107,8 +187,10 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return this ÷ divisor
      */
     public UnitNumber<Q> divide(Number divisor) {
-        Quantity<Q> res = q.divide(divisor);
-        return cast(res);
+        if(!Double.isNaN(UnitInterner.doubleScale(unit))) {
+            return valueOf(value.doubleValue() / divisor.doubleValue(), unit);
+        }
+        return scalar(divisor, true);
     }
 
     /**
@@ -119,9 +201,22 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * 
      * @return this ÷ divisor
      */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     public UnitNumber<?> divide(UnitNumber<?> divisor) {
-        Quantity<?> res = q.toSystemUnit().divide(divisor.q.toSystemUnit());
-        return cast(res);
+        UnitAlgebra.Result r = UnitAlgebra.divide(unit, divisor.unit);
+        if(r != null) {
+            double s1 = UnitInterner.doubleScale(unit);
+            double s2 = UnitInterner.doubleScale(divisor.unit);
+            if(!Double.isNaN(s1) && !Double.isNaN(s2)) {
+                return valueOf(value.doubleValue() * s1 / (divisor.value.doubleValue() * s2), (Unit) r.unit);
+            }
+            return valueOf(r.divide(value, divisor.value), (Unit) r.unit);
+        }
+        // 驻留表已满
+        UnitNumber<?> a = toSystemUnit();
+        UnitNumber<?> b = divisor.toSystemUnit();
+        NumberSystem ns = Calculus.currentNumberSystem();
+        return valueOf(ns.divide(a.value, b.value), (Unit) a.unit.divide(b.unit));
     }
 
     /**
@@ -130,9 +225,16 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * 
      * @return 倒数
      */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     public UnitNumber<?> inverse() {
-        Quantity<?> res = q.inverse();
-        return cast(res);
+        UnitAlgebra.Result r = UnitAlgebra.inverse(unit);
+        if(r != null) {
+            if(!Double.isNaN(UnitInterner.doubleScale(unit))) {
+                return valueOf(1 / value.doubleValue(), (Unit) r.unit);
+            }
+            return valueOf(r.inverse(value), (Unit) r.unit);
+        }
+        return valueOf(Calculus.currentNumberSystem().reciprocal(value), (Unit) unit.inverse());
     }
 
     /**
@@ -141,8 +243,7 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return {@code -this}.
      */
     public UnitNumber<Q> negate() {
-        Quantity<Q> res = q.negate();
-        return cast(res);
+        return valueOf(Calculus.currentNumberSystem().negate(value), unit);
     }
 
     /**
@@ -153,10 +254,32 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return 单位转换后的量
      */
     public UnitNumber<Q> to(Unit<Q> unit) {
-        checkDimensionless(unit);
+        if(unit == this.unit || unit.equals(this.unit)) {
+            return this;
+        }
 
-        Quantity<Q> res = q.to(unit);
-        return cast(res);
+        long start = UnitsMetrics.start();
+        boolean success = false;
+        try {
+            checkDimensionless(unit);
+
+            Number v;
+            double s1 = UnitInterner.doubleScale(this.unit);
+            double s2 = UnitInterner.doubleScale(unit);
+            if(!Double.isNaN(s1) && !Double.isNaN(s2)) {
+                v = value.doubleValue() * (s1 / s2);
+            } else {
+                v = UnitConverters.of(this.unit, unit).convert(value);
+            }
+            UnitNumber<Q> n = valueOf(v, unit);
+            success = true;
+            if(start != 0) {
+                UnitsMetrics.conversion(this.unit, unit);
+            }
+            return n;
+        } finally {
+            UnitsMetrics.end(UnitsMetrics.Operation.CONVERT, start, success);
+        }
     }
 
     /**
@@ -165,7 +288,7 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return 单位转换后量
      */
     public UnitNumber<Q> toSystemUnit() {
-        return to(getUnit().getSystemUnit());
+        return to(unit.getSystemUnit());
     }
 
     /**
@@ -178,9 +301,9 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @see javax.measure.Quantity#isEquivalentTo(Quantity)
      */
     public boolean isEquivalentTo(UnitNumber<Q> that) {
-        checkDimensionless(that.getUnit());
+        checkDimensionless(that.unit);
 
-        return q.isEquivalentTo(that.q);
+        return compareValue(that) == 0;
     }
 
     /**
@@ -195,13 +318,14 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @throws IllegalStateException 如果两者的单位不完全一样
      */
     public int compareTo(UnitNumber<Q> that) {
-        checkDimensionless(that.getUnit());
-        return Calculus.currentNumberSystem().compare(this.getValue(), that.to(getUnit()).getValue());
+        checkDimensionless(that.unit);
+        return compareValue(that);
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends Quantity<T>> UnitNumber<T> asType(Class<T> type) throws ClassCastException {
-        Quantity<T> res = q.asType(type);
-        return cast(res);
+        unit.asType(type);
+        return (UnitNumber<T>) this;
     }
 
     /**
@@ -214,10 +338,7 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @throws IllegalStateException 如果两者的单位不完全一样
      */
     public UnitNumber<Q> assertMustBe(Unit<?> that) {
-        Unit<?> u = q.getUnit();
-        if(!u.isCompatible(that) || !u.toString().equals(that.toString())) {
-            throw unitNotMatch(u, that);
-        }
+        assertMustEq(unit, that);
         return this;
     }
 
@@ -227,9 +348,8 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return this
      */
     public UnitNumber<Q> assertIncludedInUnits() {
-        Unit<?> u = Units.getUnit(q.getUnit().toString());
-        if(u == null) {
-            String msg = String.format("[%s] is illegal", q.getUnit());
+        if(!Units.contains(unit)) {
+            String msg = String.format("[%s] is illegal", unit);
             throw new IllegalStateException(msg);
         }
         return this;
@@ -237,29 +357,88 @@ public final class UnitNumber<Q extends Quantity<Q>> {
 
     @Override
     public String toString() {
-        return q.toString();
+        return UnitNumberFormatter.DEFAULT.format(this);
     }
 
     @Override
     public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
         if(obj instanceof UnitNumber) {
-            return q.equals(((UnitNumber<?>) obj).q);
+            UnitNumber<?> that = (UnitNumber<?>) obj;
+            return unit.equals(that.unit) && value.equals(that.value);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return q.hashCode();
+        return 31 * unit.hashCode() + value.hashCode();
+    }
+
+    private int compareValue(UnitNumber<Q> that) {
+        Number thatValue = that.value;
+        if(that.unit != unit && !unit.equals(that.unit)) {
+            thatValue = UnitConverters.of(that.unit, unit).convert(thatValue);
+        }
+        return Calculus.currentNumberSystem().compare(value, thatValue);
+    }
+
+    /**
+     * 与indriya的加减法保持一致：两个量先转换为当前单位的国际标准单位，计算后再转换回当前单位。<br>
+     * {@link NumericMode#DOUBLE} 的量把that按比例系数转换为当前单位后直接用double计算；
+     * 单位相同并且是线性单位(没有偏移量，比如不是摄氏度)时直接计算，不需要转换
+     */
+    private UnitNumber<Q> addition(UnitNumber<Q> that, boolean subtract) {
+        Unit<Q> u = unit;
+        double s1 = UnitInterner.doubleScale(u);
+        if(!Double.isNaN(s1)) {
+            double s2 = that.unit == u ? s1 : UnitInterner.doubleScale(that.unit);
+            if(!Double.isNaN(s2)) {
+                double v2 = that.value.doubleValue();
+                if(s2 != s1) {
+                    v2 *= s2 / s1;
+                }
+                double v1 = value.doubleValue();
+                return valueOf(subtract ? v1 - v2 : v1 + v2, u);
+            }
+        }
+
+        NumberSystem ns = Calculus.currentNumberSystem();
+        if(that.unit == u && UnitInterner.isLinear(u)) {
+            return valueOf(subtract ? ns.subtract(value, that.value) : ns.add(value, that.value), u);
+        }
+
+        UnitConverter thisToSystem = UnitConverters.toSystemUnit(u);
+        UnitConverter thatToSystem = UnitConverters.toSystemUnitOf(that.unit, u);
+
+        Number v1 = ns.narrow(thisToSystem.convert(value));
+        Number v2 = ns.narrow(thatToSystem.convert(that.value));
+        Number res = ns.narrow(subtract ? ns.subtract(v1, v2) : ns.add(v1, v2));
+        if(!thisToSystem.isIdentity() || !thatToSystem.isIdentity()) {
+            res = UnitConverters.fromSystemUnit(u).convert(res);
+        }
+        return valueOf(res, u);
     }
 
     private void checkDimensionless(Unit<Q> that) {
-        Unit<Q> u = q.getUnit();
-        if(q.getUnit().isCompatible(Units.ONE)) {
-            if(q.getUnit().getSystemUnit() == that.getSystemUnit()) {
+        checkDimensionless(unit, that);
+    }
+
+    /**
+     * 检查单位u与that是否可以互相转换、相加减，无量纲的单位(比如 "个" 和 "桶")之间不能转换
+     */
+    static <Q extends Quantity<Q>> void checkDimensionless(Unit<Q> u, Unit<Q> that) {
+        if(u == that) {
+            return;
+        }
+
+        if(UnitInterner.isDimensionless(u)) {
+            if(UnitInterner.systemUnit(u) == UnitInterner.systemUnit(that)) {
                 return;
             }
-            assertMustBe(that);
+            assertMustEq(u, that);
         }
 
         if(that instanceof ProductUnit && u instanceof ProductUnit) {
@@ -295,11 +474,16 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return 解析出来的UnitNumber实例
      */
     public static UnitNumber<?> parse(CharSequence cs) {
+        long start = UnitsMetrics.start();
+        boolean success = false;
         try {
-            Quantity<?> q = Quantities.getQuantity(cs);
-            return cast(q);
+            UnitNumber<?> n = QuantityParser.parse(cs);
+            success = true;
+            return n;
         } catch (MeasurementParseException e) {
             throw new IllegalArgumentException(e.getParsedString(), e);
+        } finally {
+            UnitsMetrics.end(UnitsMetrics.Operation.PARSE, start, success);
         }
     }
 
@@ -312,7 +496,7 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return number1 + number2
      */
     public static UnitNumber<?> add(UnitNumber<?> number1, UnitNumber<?> number2) {
-        return number1.asType(UNKNOWN.class).add(number2.asType(UNKNOWN.class));
+        return unknown(number1).add(unknown(number2));
     }
 
     /**
@@ -324,11 +508,12 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @return number1 - number2
      */
     public static UnitNumber<?> subtract(UnitNumber<?> number1, UnitNumber<?> number2) {
-        return number1.asType(UNKNOWN.class).subtract(number2.asType(UNKNOWN.class));
+        return unknown(number1).subtract(unknown(number2));
     }
 
+    @SuppressWarnings("unchecked")
     public static UnitNumber<?> to(UnitNumber<?> number1, Unit<?> unit) {
-        return number1.asType(UNKNOWN.class).to(unit.asType(UNKNOWN.class));
+        return unknown(number1).to((Unit<UNKNOWN>) unit);
     }
 
     /**
@@ -344,17 +529,34 @@ public final class UnitNumber<Q extends Quantity<Q>> {
      * @throws IllegalStateException if unit not compatible
      */
     public static int compare(UnitNumber<?> x, UnitNumber<?> y) {
-        UnitNumber<UNKNOWN> n1 = x.asType(UNKNOWN.class);
-        UnitNumber<UNKNOWN> n2 = y.asType(UNKNOWN.class);
-        return Calculus.currentNumberSystem().compare(n1.to(n2.getUnit()).getValue(), n2.getValue());
+        UnitNumber<UNKNOWN> n2 = unknown(y);
+        return Calculus.currentNumberSystem().compare(unknown(x).to(n2.unit).value, n2.value);
+    }
+
+    /**
+     * 与indriya的数乘保持一致：非国际标准单位的量先转换为国际标准单位，计算后再转换回当前单位
+     */
+    private UnitNumber<Q> scalar(Number n, boolean divide) {
+        NumberSystem ns = Calculus.currentNumberSystem();
+        UnitConverter toSystem = UnitConverters.toSystemUnit(unit);
+        Number v = toSystem.isIdentity() ? value : ns.narrow(toSystem.convert(value));
+        v = ns.narrow(divide ? ns.divide(v, ns.narrow(n)) : ns.multiply(v, ns.narrow(n)));
+        if(!toSystem.isIdentity()) {
+            v = UnitConverters.fromSystemUnit(unit).convert(v);
+        }
+        return valueOf(v, unit);
     }
 
-    private static <T extends Quantity<T>> UnitNumber<T> cast(Quantity<T> q) {
-        return new UnitNumber<>(q);
+    /**
+     * 不检查量的类型，与 {@code asType(UNKNOWN.class)} 相同
+     */
+    @SuppressWarnings("unchecked")
+    private static UnitNumber<UNKNOWN> unknown(UnitNumber<?> n) {
+        return (UnitNumber<UNKNOWN>) n;
     }
 
     private static void assertMustEq(Unit<?> u, Unit<?> that) {
-        if(!u.isCompatible(that) || !u.toString().equals(that.toString())) {
+        if(!UnitInterner.isSame(u, that)) {
             throw unitNotMatch(u, that);
         }
     }
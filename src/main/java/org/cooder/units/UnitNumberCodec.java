@@ -0,0 +1,466 @@
+package org.cooder.units;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.measure.Unit;
+
+import tech.units.indriya.function.RationalNumber;
+import tech.units.indriya.unit.ProductUnit;
+
+/**
+ * {@link UnitNumber} 的二进制编码，比 {@link UnitNumber#toString()} 和 {@link UnitNumber#parse(CharSequence)} 更快、更紧凑。<br>
+ * 每个量依次写入：<br>
+ * 1. 单位：变长整数。字典中的单位写 ID+3；不在字典中的组合单位写 2，后面依次是每个组成单位及其幂和根；
+ * 其他单位写 1，后面跟UTF-8编码的字符串形式；批量编码时与前一个量单位相同写 0；<br>
+ * 2. 数值的类型：一个字节；<br>
+ * 3. 数值：整数按zigzag变长编码，小数按 (scale, 非标度值) 两个变长整数编码，double按8个字节，更大的数按补码字节数组。<br>
+ * 数值的类型会保留，解码后的量与原来的量 {@link UnitNumber#equals(Object) 相等}。<br>
+ * 批量编码时先写字典的指纹和个数，读取时校验指纹。<br>
+ * 编码器是线程安全的。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitNumberCodec {
+    private static final int SAME_UNIT = 0;
+    private static final int INLINE_UNIT = 1;
+    private static final int PRODUCT_UNIT = 2;
+    private static final int FIRST_ID = 3;
+
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte FLOAT = 4;
+    private static final byte BIG_DECIMAL = 5;
+    private static final byte BIG_INTEGER = 6;
+    private static final byte RATIONAL = 7;
+
+    /**
+     * 非标度值不超过这个精度时可以用long表示
+     */
+    private static final int LONG_PRECISION = 18;
+
+    private final UnitDictionary dictionary;
+
+    public UnitNumberCodec(UnitDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return 使用内置单位字典的编码器
+     */
+    public static UnitNumberCodec builtin() {
+        return new UnitNumberCodec(UnitDictionary.builtin());
+    }
+
+    public UnitDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException 如果buf的剩余空间不够
+     * @throws IllegalArgumentException         如果数值的类型不支持
+     */
+    public void write(UnitNumber<?> n, ByteBuffer buf) {
+        write(n, null, new BufferOut(buf));
+    }
+
+    public void write(UnitNumber<?> n, DataOutput out) throws IOException {
+        write(n, null, new DataOut(out));
+    }
+
+    /**
+     * @throws java.nio.BufferUnderflowException 如果数据不完整
+     * @throws IllegalArgumentException          如果数据格式错误
+     */
+    public UnitNumber<?> read(ByteBuffer buf) {
+        return read(null, new BufferIn(buf));
+    }
+
+    public UnitNumber<?> read(DataInput in) throws IOException {
+        return read(null, new DataIn(in));
+    }
+
+    /**
+     * 批量编码，连续相同的单位只写一次
+     */
+    public void writeBatch(List<? extends UnitNumber<?>> list, ByteBuffer buf) {
+        writeBatch(list, new BufferOut(buf));
+    }
+
+    public void writeBatch(List<? extends UnitNumber<?>> list, DataOutput out) throws IOException {
+        writeBatch(list, new DataOut(out));
+    }
+
+    /**
+     * @throws IllegalStateException 如果写入时使用的字典与当前字典不同
+     */
+    public List<UnitNumber<?>> readBatch(ByteBuffer buf) {
+        return readBatch(new BufferIn(buf));
+    }
+
+    public List<UnitNumber<?>> readBatch(DataInput in) throws IOException {
+        return readBatch(new DataIn(in));
+    }
+
+    private <E extends Exception> void writeBatch(List<? extends UnitNumber<?>> list, Out<E> out) throws E {
+        out.putInt(dictionary.fingerprint());
+        out.putVarLong(list.size());
+        Unit<?> prev = null;
+        for (UnitNumber<?> n : list) {
+            write(n, prev, out);
+            prev = n.getUnit();
+        }
+    }
+
+    private <E extends Exception> List<UnitNumber<?>> readBatch(In<E> in) throws E {
+        int fingerprint = in.getInt();
+        if(fingerprint != dictionary.fingerprint()) {
+            throw new IllegalStateException("unit dictionary mismatch");
+        }
+        long size = in.getVarLong();
+        if(size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("illegal size: " + size);
+        }
+
+        List<UnitNumber<?>> ret = new ArrayList<>((int) Math.min(size, 1024));
+        Unit<?> prev = null;
+        for (long i = 0; i < size; i++) {
+            UnitNumber<?> n = read(prev, in);
+            ret.add(n);
+            prev = n.getUnit();
+        }
+        return ret;
+    }
+
+    private <E extends Exception> void write(UnitNumber<?> n, Unit<?> prev, Out<E> out) throws E {
+        Unit<?> unit = n.getUnit();
+        if(unit == prev) {
+            out.putVarLong(SAME_UNIT);
+        } else {
+            writeUnit(unit, out);
+        }
+        writeValue(n.getValue(), out);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private <E extends Exception> UnitNumber<?> read(Unit<?> prev, In<E> in) throws E {
+        long code = in.getVarLong();
+        Unit unit;
+        if(code == SAME_UNIT) {
+            if(prev == null) {
+                throw new IllegalArgumentException("no previous unit");
+            }
+            unit = prev;
+        } else {
+            unit = readUnit(code, in);
+        }
+        return UnitNumber.valueOf(readValue(in), unit);
+    }
+
+    private <E extends Exception> void writeUnit(Unit<?> unit, Out<E> out) throws E {
+        int id = dictionary.id(unit);
+        if(id >= 0) {
+            out.putVarLong(id + FIRST_ID);
+        } else if(unit instanceof ProductUnit) {
+            // 组合单位的字符串形式可能有歧义(比如 元/m² 中的 m² 可能是平方米也可能是SQUARE_METRE)，按结构编码
+            ProductUnit<?> p = (ProductUnit<?>) unit;
+            out.putVarLong(PRODUCT_UNIT);
+            out.putVarLong(p.getUnitCount());
+            for (int i = 0; i < p.getUnitCount(); i++) {
+                writeUnit(p.getUnit(i), out);
+                out.putVarLong(zigzag(p.getUnitPow(i)));
+                out.putVarLong(p.getUnitRoot(i));
+            }
+        } else {
+            out.putVarLong(INLINE_UNIT);
+            out.putBytes(Units.format(unit).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private <E extends Exception> Unit<?> readUnit(long code, In<E> in) throws E {
+        if(code == INLINE_UNIT) {
+            return Units.parse(new String(in.getBytes(), StandardCharsets.UTF_8), true);
+        }
+        if(code == PRODUCT_UNIT) {
+            long count = in.getVarLong();
+            Unit<?> u = null;
+            for (long i = 0; i < count; i++) {
+                Unit<?> e = readUnit(in.getVarLong(), in);
+                int pow = (int) unzigzag(in.getVarLong());
+                int root = (int) in.getVarLong();
+                if(root != 1) {
+                    e = ProductUnit.ofRoot(e, root);
+                }
+                if(pow != 1) {
+                    e = ProductUnit.ofPow(e, pow);
+                }
+                u = u == null ? e : ProductUnit.ofProduct(u, e);
+            }
+            if(u == null) {
+                throw new IllegalArgumentException("empty product unit");
+            }
+            return u;
+        }
+        if(code < FIRST_ID) {
+            throw new IllegalArgumentException("no previous unit");
+        }
+        return dictionary.unit((int) Math.min(code - FIRST_ID, Integer.MAX_VALUE));
+    }
+
+    private static <E extends Exception> void writeValue(Number v, Out<E> out) throws E {
+        if(v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            out.put(INT);
+            out.putVarLong(zigzag(v.intValue()));
+        } else if(v instanceof Long) {
+            out.put(LONG);
+            out.putVarLong(zigzag(v.longValue()));
+        } else if(v instanceof Double) {
+            out.put(DOUBLE);
+            out.putLong(Double.doubleToRawLongBits(v.doubleValue()));
+        } else if(v instanceof BigDecimal) {
+            BigDecimal d = (BigDecimal) v;
+            if(d.precision() <= LONG_PRECISION) {
+                out.put(DECIMAL);
+                out.putVarLong(zigzag(d.scale()));
+                out.putVarLong(zigzag(d.unscaledValue().longValue()));
+            } else {
+                out.put(BIG_DECIMAL);
+                out.putVarLong(zigzag(d.scale()));
+                out.putBytes(d.unscaledValue().toByteArray());
+            }
+        } else if(v instanceof BigInteger) {
+            out.put(BIG_INTEGER);
+            out.putBytes(((BigInteger) v).toByteArray());
+        } else if(v instanceof RationalNumber) {
+            RationalNumber r = (RationalNumber) v;
+            out.put(RATIONAL);
+            out.putBytes(r.getDividend().toByteArray());
+            out.putBytes(r.getDivisor().toByteArray());
+        } else if(v instanceof Float) {
+            out.put(FLOAT);
+            out.putInt(Float.floatToRawIntBits(v.floatValue()));
+        } else {
+            throw new IllegalArgumentException("unsupported number type: " + v.getClass().getName());
+        }
+    }
+
+    private static <E extends Exception> Number readValue(In<E> in) throws E {
+        byte tag = in.get();
+        switch (tag) {
+        case INT:
+            return (int) unzigzag(in.getVarLong());
+        case LONG:
+            return unzigzag(in.getVarLong());
+        case DOUBLE:
+            return Double.longBitsToDouble(in.getLong());
+        case DECIMAL: {
+            int scale = (int) unzigzag(in.getVarLong());
+            return BigDecimal.valueOf(unzigzag(in.getVarLong()), scale);
+        }
+        case BIG_DECIMAL: {
+            int scale = (int) unzigzag(in.getVarLong());
+            return new BigDecimal(new BigInteger(in.getBytes()), scale);
+        }
+        case BIG_INTEGER:
+            return new BigInteger(in.getBytes());
+        case RATIONAL: {
+            BigInteger dividend = new BigInteger(in.getBytes());
+            return RationalNumber.of(dividend, new BigInteger(in.getBytes()));
+        }
+        case FLOAT:
+            return Float.intBitsToFloat(in.getInt());
+        default:
+            throw new IllegalArgumentException("unknown number type: " + tag);
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 写入的目标，ByteBuffer和DataOutput共用同一套编码逻辑
+     */
+    private abstract static class Out<E extends Exception> {
+        abstract void put(byte b) throws E;
+
+        abstract void putInt(int v) throws E;
+
+        abstract void putLong(long v) throws E;
+
+        abstract void putRaw(byte[] bytes) throws E;
+
+        final void putVarLong(long v) throws E {
+            while ((v & ~0x7FL) != 0) {
+                put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((byte) v);
+        }
+
+        /**
+         * 变长整数表示的长度，后面跟字节数组
+         */
+        final void putBytes(byte[] bytes) throws E {
+            putVarLong(bytes.length);
+            putRaw(bytes);
+        }
+    }
+
+    private abstract static class In<E extends Exception> {
+        abstract byte get() throws E;
+
+        abstract int getInt() throws E;
+
+        abstract long getLong() throws E;
+
+        abstract void getRaw(byte[] bytes) throws E;
+
+        final long getVarLong() throws E {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                v |= (long) (b & 0x7F) << shift;
+                if(b >= 0) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        final byte[] getBytes() throws E {
+            long len = getVarLong();
+            if(len < 0 || len > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("illegal length: " + len);
+            }
+            byte[] bytes = new byte[(int) len];
+            getRaw(bytes);
+            return bytes;
+        }
+    }
+
+    private static final class BufferOut extends Out<RuntimeException> {
+        private final ByteBuffer buf;
+
+        BufferOut(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        void put(byte b) {
+            buf.put(b);
+        }
+
+        @Override
+        void putInt(int v) {
+            buf.putInt(v);
+        }
+
+        @Override
+        void putLong(long v) {
+            buf.putLong(v);
+        }
+
+        @Override
+        void putRaw(byte[] bytes) {
+            buf.put(bytes);
+        }
+    }
+
+    private static final class DataOut extends Out<IOException> {
+        private final DataOutput out;
+
+        DataOut(DataOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        void put(byte b) throws IOException {
+            out.writeByte(b);
+        }
+
+        @Override
+        void putInt(int v) throws IOException {
+            out.writeInt(v);
+        }
+
+        @Override
+        void putLong(long v) throws IOException {
+            out.writeLong(v);
+        }
+
+        @Override
+        void putRaw(byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+    }
+
+    private static final class BufferIn extends In<RuntimeException> {
+        private final ByteBuffer buf;
+
+        BufferIn(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        byte get() {
+            return buf.get();
+        }
+
+        @Override
+        int getInt() {
+            return buf.getInt();
+        }
+
+        @Override
+        long getLong() {
+            return buf.getLong();
+        }
+
+        @Override
+        void getRaw(byte[] bytes) {
+            buf.get(bytes);
+        }
+    }
+
+    private static final class DataIn extends In<IOException> {
+        private final DataInput in;
+
+        DataIn(DataInput in) {
+            this.in = in;
+        }
+
+        @Override
+        byte get() throws IOException {
+            return in.readByte();
+        }
+
+        @Override
+        int getInt() throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        long getLong() throws IOException {
+            return in.readLong();
+        }
+
+        @Override
+        void getRaw(byte[] bytes) throws IOException {
+            in.readFully(bytes);
+        }
+    }
+}
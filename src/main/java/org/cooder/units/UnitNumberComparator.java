@@ -0,0 +1,222 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.Calculus;
+
+/**
+ * 按数值大小比较单位不同的量，比如 "5 mm"、"1 cm"、"0.2 m"。<br>
+ * 比较时先把两个量转换为国际标准单位下的double，double相差较大时直接得出结果，
+ * 只有double相等或者非常接近(可能受舍入误差影响)时才用BigDecimal精确比较，比较过程中不创建 {@link UnitNumber}。<br>
+ * 对大量数据排序时使用 {@link #sort(List)}，每个元素只计算一次double，再对下标数组进行稳定的归并排序。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitNumberComparator implements Comparator<UnitNumber<?>> {
+    public static final UnitNumberComparator INSTANCE = new UnitNumberComparator();
+
+    private static final int MAX_SIZE = 1024;
+
+    /**
+     * double的相对误差小于这个值时，认为可能受舍入误差影响，改用BigDecimal比较
+     */
+    private static final double TIE_EPSILON = 1e-12;
+
+    private final Map<Unit<?>, UnitKey> keys = new ConcurrentHashMap<>();
+
+    private UnitNumberComparator() {
+    }
+
+    /**
+     * @throws IllegalStateException 如果两个量的单位不能互相转换
+     */
+    @Override
+    public int compare(UnitNumber<?> x, UnitNumber<?> y) {
+        Unit<?> ux = x.getUnit();
+        Unit<?> uy = y.getUnit();
+        if(ux == uy) {
+            return Calculus.currentNumberSystem().compare(x.getValue(), y.getValue());
+        }
+
+        UnitKey kx = key(ux);
+        UnitKey ky = key(uy);
+        kx.checkCompatible(ky);
+        double dx = kx.toSystem.convert(x.getValue().doubleValue());
+        double dy = ky.toSystem.convert(y.getValue().doubleValue());
+        if(!isTie(dx, dy)) {
+            return Double.compare(dx, dy);
+        }
+        return kx.exact(x.getValue()).compareTo(ky.exact(y.getValue()));
+    }
+
+    /**
+     * 按数值从小到大排序，相等的元素保持原来的顺序
+     *
+     * @param list 需要排序的量，单位必须可以互相转换
+     *
+     * @throws IllegalStateException 如果有单位不能互相转换
+     */
+    public static <T extends UnitNumber<?>> void sort(List<T> list) {
+        int n = list.size();
+        if(n < 2) {
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] items = (T[]) list.toArray(new UnitNumber<?>[n]);
+        double[] doubles = new double[n];
+        UnitKey[] unitKeys = new UnitKey[n];
+
+        UnitKey first = null;
+        UnitKey last = null;
+        for (int i = 0; i < n; i++) {
+            Unit<?> u = items[i].getUnit();
+            UnitKey k = last != null && last.unit == u ? last : INSTANCE.key(u);
+            if(first == null) {
+                first = k;
+            } else if(k != last) {
+                first.checkCompatible(k);
+            }
+            last = k;
+            unitKeys[i] = k;
+            doubles[i] = k.toSystem.convert(items[i].getValue().doubleValue());
+        }
+
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        new Sorter(items, doubles, unitKeys).sort(index, new int[n], 0, n);
+
+        ListIterator<T> it = list.listIterator();
+        for (int i : index) {
+            it.next();
+            it.set(items[i]);
+        }
+    }
+
+    private UnitKey key(Unit<?> unit) {
+        UnitKey k = keys.get(unit);
+        if(k == null) {
+            if(keys.size() >= MAX_SIZE) {
+                keys.clear();
+            }
+            k = new UnitKey(unit);
+            keys.put(unit, k);
+        }
+        return k;
+    }
+
+    private static boolean isTie(double x, double y) {
+        return Math.abs(x - y) <= TIE_EPSILON * Math.max(Math.abs(x), Math.abs(y));
+    }
+
+    /**
+     * 单位到国际标准单位的转换
+     */
+    private static final class UnitKey {
+        private final Unit<?> unit;
+        private final Unit<?> systemUnit;
+        private final UnitConverter toSystem;
+
+        UnitKey(Unit<?> unit) {
+            this.unit = unit;
+            this.systemUnit = unit.getSystemUnit();
+            this.toSystem = UnitConverters.toSystemUnit(unit);
+        }
+
+        BigDecimal exact(Number value) {
+            return Numbers.toBigDecimal(toSystem.convert(value));
+        }
+
+        void checkCompatible(UnitKey that) {
+            if(this != that && !systemUnit.equals(that.systemUnit)) {
+                String msg = String.format("[%s] is not [%s]", unit, that.unit);
+                throw new IllegalStateException(msg);
+            }
+        }
+    }
+
+    /**
+     * 对下标数组进行归并排序，比较预先计算的double，接近时再精确比较
+     */
+    private static final class Sorter {
+        private static final int INSERTION_SORT_THRESHOLD = 16;
+
+        private final UnitNumber<?>[] items;
+        private final double[] doubles;
+        private final UnitKey[] unitKeys;
+        private BigDecimal[] exact;
+
+        Sorter(UnitNumber<?>[] items, double[] doubles, UnitKey[] unitKeys) {
+            this.items = items;
+            this.doubles = doubles;
+            this.unitKeys = unitKeys;
+        }
+
+        void sort(int[] a, int[] tmp, int from, int to) {
+            if(to - from <= INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    int v = a[i];
+                    int j = i - 1;
+                    while (j >= from && compare(a[j], v) > 0) {
+                        a[j + 1] = a[j];
+                        j--;
+                    }
+                    a[j + 1] = v;
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            sort(a, tmp, from, mid);
+            sort(a, tmp, mid, to);
+            if(compare(a[mid - 1], a[mid]) <= 0) {
+                return;
+            }
+
+            System.arraycopy(a, from, tmp, from, to - from);
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                if(j >= to || (i < mid && compare(tmp[i], tmp[j]) <= 0)) {
+                    a[k] = tmp[i++];
+                } else {
+                    a[k] = tmp[j++];
+                }
+            }
+        }
+
+        private int compare(int x, int y) {
+            double dx = doubles[x];
+            double dy = doubles[y];
+            if(!isTie(dx, dy)) {
+                return Double.compare(dx, dy);
+            }
+            if(unitKeys[x] == unitKeys[y]) {
+                return Calculus.currentNumberSystem().compare(items[x].getValue(), items[y].getValue());
+            }
+            return exact(x).compareTo(exact(y));
+        }
+
+        private BigDecimal exact(int i) {
+            if(exact == null) {
+                exact = new BigDecimal[items.length];
+            }
+            BigDecimal e = exact[i];
+            if(e == null) {
+                e = unitKeys[i].exact(items[i].getValue());
+                exact[i] = e;
+            }
+            return e;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+
+import javax.measure.Unit;
+
+/**
+ * {@link UnitNumber} 的格式化器，把数值和单位直接写入调用方提供的 {@link StringBuilder} 或 {@link Appendable}，适合生成报表等大批量输出。<br>
+ * 默认的格式与 {@link UnitNumber#toString()} 相同。单位的标签(包括组合单位)缓存在单位的驻留信息中，每个单位只格式化一次。
+ * 通过 {@link #ofScale(int, RoundingMode)} 可以指定保留的小数位数和舍入方式，结果与 {@link java.math.BigDecimal#setScale(int, RoundingMode)} 一致。<br>
+ * int、long、double类型的数值不创建任何对象；BigDecimal等其他类型在需要舍入时会创建临时对象。<br>
+ * 格式化器是不可变的，可以在多个线程中共享。
+ *
+ * <pre>
+ * UnitNumberFormatter f = UnitNumberFormatter.ofScale(2);
+ * StringBuilder sb = new StringBuilder();
+ * for (UnitNumber&lt;?&gt; n : numbers) {
+ *     f.format(n, sb).append('\n');
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitNumberFormatter {
+    /**
+     * 与 {@link UnitNumber#toString()} 格式相同的格式化器
+     */
+    public static final UnitNumberFormatter DEFAULT = new UnitNumberFormatter(-1, RoundingMode.HALF_UP);
+
+    /**
+     * double按 {@code v × 10^scale} 直接舍入的最大scale，更大的scale使用BigDecimal
+     */
+    private static final int MAX_FAST_SCALE = 15;
+    private static final double MAX_EXACT = 1L << 53;
+    private static final double[] POW10 = new double[MAX_FAST_SCALE + 1];
+    private static final long[] LONG_POW10 = new long[MAX_FAST_SCALE + 1];
+
+    static {
+        POW10[0] = 1;
+        LONG_POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+            LONG_POW10[i] = LONG_POW10[i - 1] * 10;
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    private final int scale;
+    private final RoundingMode roundingMode;
+
+    private UnitNumberFormatter(int scale, RoundingMode roundingMode) {
+        this.scale = scale;
+        this.roundingMode = roundingMode;
+    }
+
+    /**
+     * 保留scale位小数，四舍五入
+     */
+    public static UnitNumberFormatter ofScale(int scale) {
+        return ofScale(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * @param scale        保留的小数位数
+     * @param roundingMode 舍入方式
+     *
+     * @throws IllegalArgumentException 如果scale小于0
+     */
+    public static UnitNumberFormatter ofScale(int scale, RoundingMode roundingMode) {
+        if(scale < 0) {
+            throw new IllegalArgumentException("illegal scale: " + scale);
+        }
+        if(roundingMode == null) {
+            throw new IllegalArgumentException("roundingMode is null");
+        }
+        return new UnitNumberFormatter(scale, roundingMode);
+    }
+
+    /**
+     * @return 保留的小数位数，-1表示不做舍入
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    /**
+     * @return 格式化后的字符串
+     *
+     * @throws ArithmeticException 如果舍入方式为 {@link RoundingMode#UNNECESSARY} 并且需要舍入
+     */
+    public String format(UnitNumber<?> n) {
+        return format(n, scratch()).toString();
+    }
+
+    /**
+     * 把量追加到sb中
+     *
+     * @return sb
+     *
+     * @throws ArithmeticException 如果舍入方式为 {@link RoundingMode#UNNECESSARY} 并且需要舍入
+     */
+    public StringBuilder format(UnitNumber<?> n, StringBuilder sb) {
+        appendValue(n.getValue(), sb);
+        String label = label(n.getUnit());
+        if(label != null) {
+            sb.append(' ').append(label);
+        }
+        return sb;
+    }
+
+    /**
+     * 把量追加到dest中
+     *
+     * @return dest
+     *
+     * @throws ArithmeticException 如果舍入方式为 {@link RoundingMode#UNNECESSARY} 并且需要舍入
+     */
+    public <A extends Appendable> A format(UnitNumber<?> n, A dest) throws IOException {
+        if(dest instanceof StringBuilder) {
+            format(n, (StringBuilder) dest);
+            return dest;
+        }
+
+        // 先写入线程内复用的StringBuilder，再逐个字符复制，避免为数值创建字符串
+        StringBuilder sb = scratch();
+        appendValue(n.getValue(), sb);
+        for (int i = 0; i < sb.length(); i++) {
+            dest.append(sb.charAt(i));
+        }
+        String label = label(n.getUnit());
+        if(label != null) {
+            dest.append(' ').append(label);
+        }
+        return dest;
+    }
+
+    /**
+     * 只格式化数值，不带单位
+     *
+     * @return sb
+     */
+    public StringBuilder formatValue(Number value, StringBuilder sb) {
+        appendValue(value, sb);
+        return sb;
+    }
+
+    /**
+     * @return 单位的标签，单位一没有标签，返回null
+     */
+    static String label(Unit<?> unit) {
+        UnitInterner.Entry e = UnitInterner.entry(unit);
+        if(e != null) {
+            return e.one ? null : e.label;
+        }
+        return unit.equals(Units.ONE) ? null : Units.format(unit);
+    }
+
+    private void appendValue(Number v, StringBuilder sb) {
+        if(scale < 0) {
+            // 与 Number#toString() 的结果相同
+            if(Numbers.isIntegral(v)) {
+                sb.append(v.longValue());
+            } else if(v instanceof Double) {
+                sb.append(v.doubleValue());
+            } else if(v instanceof Float) {
+                sb.append(v.floatValue());
+            } else {
+                sb.append(v);
+            }
+            return;
+        }
+
+        if(Numbers.isIntegral(v)) {
+            sb.append(v.longValue());
+            if(scale > 0) {
+                sb.append('.');
+                for (int i = 0; i < scale; i++) {
+                    sb.append('0');
+                }
+            }
+            return;
+        }
+        if(v instanceof Double && appendDouble(v.doubleValue(), sb)) {
+            return;
+        }
+        if(v instanceof Float) {
+            // float按十进制字符串舍入(与 Number#toString() 一致)，扩展为double后的二进制值会得到不同的结果，比如 0.45f
+            float f = v.floatValue();
+            if(Float.isNaN(f) || Float.isInfinite(f)) {
+                sb.append(f);
+                return;
+            }
+        }
+        sb.append(Numbers.toBigDecimal(v).setScale(scale, roundingMode).toPlainString());
+    }
+
+    /**
+     * 在long中完成舍入。{@code v × 10^scale} 有二进制误差，结果接近整数或者接近两个整数的中点时，
+     * 舍入的结果可能与十进制不同，这时返回false，改用BigDecimal
+     *
+     * @return 是否已经写入
+     */
+    private boolean appendDouble(double v, StringBuilder sb) {
+        if(Double.isNaN(v) || Double.isInfinite(v)) {
+            sb.append(v);
+            return true;
+        }
+        if(scale > MAX_FAST_SCALE) {
+            return false;
+        }
+        double scaled = v * POW10[scale];
+        if(Math.abs(scaled) >= MAX_EXACT) {
+            return false;
+        }
+
+        double floor = Math.floor(scaled);
+        double frac = scaled - floor;
+        double tolerance = Math.ulp(scaled) * 16;
+        if(frac != 0 && (frac <= tolerance || 1 - frac <= tolerance || Math.abs(frac - 0.5) <= tolerance)) {
+            return false;
+        }
+
+        long r = (long) floor;
+        if(frac != 0) {
+            switch (roundingMode) {
+            case FLOOR:
+                break;
+            case CEILING:
+                r++;
+                break;
+            case DOWN:
+                r = v < 0 ? r + 1 : r;
+                break;
+            case UP:
+                r = v < 0 ? r : r + 1;
+                break;
+            case UNNECESSARY:
+                return false;
+            default:
+                r = frac < 0.5 ? r : r + 1;
+                break;
+            }
+        }
+        appendScaled(r, sb);
+        return true;
+    }
+
+    /**
+     * 写入 {@code r × 10^-scale}
+     */
+    private void appendScaled(long r, StringBuilder sb) {
+        if(r < 0) {
+            sb.append('-');
+            r = -r;
+        }
+        if(scale == 0) {
+            sb.append(r);
+            return;
+        }
+        long p = LONG_POW10[scale];
+        long fraction = r % p;
+        sb.append(r / p).append('.');
+        for (long q = p / 10; q > 1 && fraction < q; q /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    private static StringBuilder scratch() {
+        StringBuilder sb = SCRATCH.get();
+        sb.setLength(0);
+        return sb;
+    }
+}
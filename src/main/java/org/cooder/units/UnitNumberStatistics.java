@@ -0,0 +1,138 @@
+package org.cooder.units;
+
+import java.util.function.Consumer;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+import tech.units.indriya.function.Calculus;
+
+/**
+ * 一组量的个数、和、最小值、最大值和平均值，与 {@link java.util.DoubleSummaryStatistics} 类似。<br>
+ * 创建时确定结果的单位，每个量转换为该单位后参与统计，和在 {@link UnitAccumulator} 中精确累加。<br>
+ * 这个类不是线程安全的，并行流中每个线程使用各自的实例，最后通过 {@link #combine(UnitNumberStatistics)} 合并，
+ * 参见 {@link UnitCollectors#summarizing(Unit)}。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ *
+ * @param <Q> 量的类型
+ */
+public final class UnitNumberStatistics<Q extends Quantity<Q>> implements Consumer<UnitNumber<Q>> {
+    private final Unit<Q> unit;
+    private final UnitAccumulator<Q> sum;
+    private Number min;
+    private Number max;
+
+    private Unit<Q> lastUnit;
+    private UnitConverter lastConverter;
+
+    /**
+     * @param unit 结果的单位
+     */
+    public UnitNumberStatistics(Unit<Q> unit) {
+        this.unit = unit;
+        this.sum = new UnitAccumulator<>(unit);
+    }
+
+    /**
+     * 统计一个量
+     *
+     * @throws javax.measure.UnconvertibleException 如果量的单位不能转换为结果的单位
+     */
+    @Override
+    public void accept(UnitNumber<Q> n) {
+        Unit<Q> u = n.getUnit();
+        Number v = n.getValue();
+        if(u != unit) {
+            if(u != lastUnit) {
+                UnitNumber.checkDimensionless(unit, u);
+                lastConverter = UnitConverters.of(u, unit);
+                lastUnit = u;
+            }
+            v = lastConverter.convert(v);
+        }
+        sum.add(v, unit);
+        if(min == null) {
+            min = v;
+            max = v;
+        } else {
+            update(v, v);
+        }
+    }
+
+    /**
+     * 合并另一个统计的结果
+     *
+     * @param that 另一个统计，结果的单位必须相同
+     *
+     * @return this
+     */
+    public UnitNumberStatistics<Q> combine(UnitNumberStatistics<Q> that) {
+        if(!that.unit.equals(unit)) {
+            throw new IllegalArgumentException(String.format("[%s] is not [%s]", that.unit, unit));
+        }
+        if(that.min == null) {
+            return this;
+        }
+        sum.merge(that.sum);
+        if(min == null) {
+            min = that.min;
+            max = that.max;
+        } else {
+            update(that.min, that.max);
+        }
+        return this;
+    }
+
+    public Unit<Q> getUnit() {
+        return unit;
+    }
+
+    public long getCount() {
+        return sum.count();
+    }
+
+    /**
+     * @return 和，没有数据时为0
+     */
+    public UnitNumber<Q> getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return 最小值，没有数据时返回null
+     */
+    public UnitNumber<Q> getMin() {
+        return min == null ? null : new UnitNumber<>(min, unit);
+    }
+
+    /**
+     * @return 最大值，没有数据时返回null
+     */
+    public UnitNumber<Q> getMax() {
+        return max == null ? null : new UnitNumber<>(max, unit);
+    }
+
+    /**
+     * @return 平均值，没有数据时返回null
+     */
+    public UnitNumber<Q> getAverage() {
+        long count = getCount();
+        return count == 0 ? null : getSum().divide(count);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", sum=" + getSum() + ", min=" + getMin() + ", max=" + getMax();
+    }
+
+    private void update(Number lo, Number hi) {
+        if(Calculus.currentNumberSystem().compare(lo, min) < 0) {
+            min = lo;
+        }
+        if(Calculus.currentNumberSystem().compare(hi, max) > 0) {
+            max = hi;
+        }
+    }
+}
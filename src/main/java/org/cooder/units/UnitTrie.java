@@ -0,0 +1,77 @@
+package org.cooder.units;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.measure.Unit;
+
+/**
+ * 单位符号和别名的字典树，查找时直接读取 {@link CharSequence} 中的字符，不需要创建子字符串。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+final class UnitTrie {
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root = new Node();
+
+    UnitTrie(Map<String, Unit<?>> labels) {
+        for (Map.Entry<String, Unit<?>> e : labels.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * 查找 cs[start, end) 对应的单位
+     *
+     * @return 单位实例，不存在时返回null
+     */
+    Unit<?> get(CharSequence cs, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++) {
+            node = node.next(cs.charAt(i));
+        }
+        return node == null ? null : node.unit;
+    }
+
+    private void put(String label, Unit<?> unit) {
+        Node node = root;
+        for (int i = 0; i < label.length(); i++) {
+            node = node.nextOrCreate(label.charAt(i));
+        }
+        node.unit = unit;
+    }
+
+    private static final class Node {
+        private char[] chars = NO_CHARS;
+        private Node[] nodes = NO_NODES;
+        private Unit<?> unit;
+
+        Node next(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return i < 0 ? null : nodes[i];
+        }
+
+        Node nextOrCreate(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            if(i >= 0) {
+                return nodes[i];
+            }
+
+            int at = -i - 1;
+            char[] cs = new char[chars.length + 1];
+            Node[] ns = new Node[nodes.length + 1];
+            System.arraycopy(chars, 0, cs, 0, at);
+            System.arraycopy(nodes, 0, ns, 0, at);
+            System.arraycopy(chars, at, cs, at + 1, chars.length - at);
+            System.arraycopy(nodes, at, ns, at + 1, nodes.length - at);
+            Node node = new Node();
+            cs[at] = c;
+            ns[at] = node;
+            chars = cs;
+            nodes = ns;
+            return node;
+        }
+    }
+}
@@ -10,14 +10,26 @@ import static tech.units.indriya.unit.Units.RADIAN;
 import static tech.units.indriya.unit.Units.SECOND;
 import static tech.units.indriya.unit.Units.SQUARE_METRE;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.measure.Unit;
 import javax.measure.quantity.Angle;
@@ -34,7 +46,6 @@ import org.cooder.units.quantity.SKU;
 import org.cooder.units.quantity.WorkTime;
 
 import tech.units.indriya.AbstractUnit;
-import tech.units.indriya.format.SimpleQuantityFormat;
 import tech.units.indriya.format.SimpleUnitFormat;
 import tech.units.indriya.function.AddConverter;
 import tech.units.indriya.function.Calculus;
@@ -43,16 +54,81 @@ import tech.units.indriya.unit.AlternateUnit;
 import tech.units.indriya.unit.TransformedUnit;
 
 public final class Units {
+    private static final long INIT_START = System.nanoTime();
+
+    /**
+     * BigDecimal运算保留的有效数字，默认为0，表示不限制
+     */
+    public static final String MATH_PRECISION_PROPERTY = "cooder.units.mathPrecision";
+
+    /**
+     * BigDecimal运算保留的最大小数位数，默认不限制
+     */
+    public static final String MAX_SCALE_PROPERTY = "cooder.units.maxScale";
+
     static {
-        Calculus.setCurrentNumberSystem(new CustomNumberSystem());
+        MathContext mc = new MathContext(Integer.getInteger(MATH_PRECISION_PROPERTY, CustomNumberSystem.UNLIMITED_PRECISION),
+                RoundingMode.HALF_EVEN);
+        Calculus.setCurrentNumberSystem(
+                new CustomNumberSystem(mc, Integer.getInteger(MAX_SCALE_PROPERTY, CustomNumberSystem.UNLIMITED_SCALE)));
     }
 
     private static final tech.units.indriya.unit.Units BASIC_UNITS = tech.units.indriya.unit.Units.getInstance();
 
-    private static final Set<Unit<?>> ALL_UNITS = new HashSet<>();
-    private static final Map<String, Unit<?>> SYMBOL_MAP = new HashMap<>();
-    private static final Map<String, Unit<?>> NAME_MAP = new HashMap<>();
-    private static final Map<String, Unit<?>> parsedUnitCache = new ConcurrentHashMap<>();
+    /**
+     * indriya内置单位的字符串形式到单位的映射，在注册任何单位之前创建
+     */
+    private static final Map<String, Unit<?>> BASIC_STRINGS = new HashMap<>();
+    private static final Set<Unit<?>> BASIC_SET = new HashSet<>(BASIC_UNITS.getUnits());
+
+    static {
+        for (Unit<?> u : BASIC_UNITS.getUnits()) {
+            BASIC_STRINGS.putIfAbsent(u.toString(), u);
+        }
+    }
+
+    /**
+     * 格式化单位和查找indriya内置单位名使用的单位格式，不共享indriya全局的 {@link SimpleUnitFormat}。
+     * 只在类初始化期间注册内置单位的标签和别名，之后不再修改，可以不加锁地并发读取
+     */
+    static final SimpleUnitFormat FORMAT = SimpleUnitFormat.getNewInstance();
+
+    /**
+     * 注册表的快照，注册单位时创建新的快照整体替换，读取时不需要加锁
+     */
+    private static volatile Snapshot registry = new Snapshot(new LinkedHashSet<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), FORMAT);
+    private static final Object REGISTRY_LOCK = new Object();
+
+    /**
+     * 国际标准单位到计算方式的映射，只记录不是 {@link NumericMode#EXACT} 的单位，修改时整体替换
+     */
+    private static volatile Map<Unit<?>, NumericMode> numericModes = Collections.emptyMap();
+
+    /**
+     * 类初始化期间注册的内置单位先登记在这里，初始化结束时一次发布，之后为null。
+     * 内置单位的标签注册到 {@link #FORMAT}，同时注册到indriya全局的 {@link SimpleUnitFormat}，使 {@link Unit#toString()} 和indriya的解析也能识别
+     */
+    private static Registration bootstrap = new Registration(registry, true);
+
+    /**
+     * 类初始化期间注册的内置单位，按注册的顺序排列
+     */
+    private static List<Unit<?>> builtinUnits;
+
+    /**
+     * 类初始化的耗时，单位纳秒
+     */
+    private static long initNanos;
+
+    /**
+     * {@link #parse(String, boolean)} 缓存的默认容量，可以通过系统属性 {@value #PARSED_UNIT_CACHE_CAPACITY_PROPERTY} 修改
+     */
+    public static final int DEFAULT_PARSED_UNIT_CACHE_CAPACITY = 4096;
+    public static final String PARSED_UNIT_CACHE_CAPACITY_PROPERTY = "cooder.units.parsedUnitCache.capacity";
+
+    private static final SegmentedLruCache<String, Unit<?>> parsedUnitCache = new SegmentedLruCache<>(
+            Integer.getInteger(PARSED_UNIT_CACHE_CAPACITY_PROPERTY, DEFAULT_PARSED_UNIT_CACHE_CAPACITY));
 
     //
     // 无量纲单位
@@ -137,18 +213,24 @@ public final class Units {
     public static final Unit<Dimensionless> 未知 = addUnit(AlternateUnit.<Dimensionless>of(ONE, "未知", "未知"), "未知");
 
     //
-    // SKU单位
+    // SKU单位等不需要常量的单位定义在内置目录中
     //
-    private static final String[] SKU_UNITS_NAMES = new String[] {
-            "根", "片", "条", "袋", "框", "套", "樘", "个", "台",
-            "件", "只", "项", "扇", "卷", "桶", "盒", "张", "捆",
-            "把", "架", "块", "瓶", "支", "箱", "付", "对", "次",
-    };
-
     static {
-        for (String s : SKU_UNITS_NAMES) {
-            addSkuUnit(s, s);
+        try (InputStream in = Units.class.getResourceAsStream(UnitCatalog.BUILTIN)) {
+            if(in == null) {
+                throw new IllegalStateException(UnitCatalog.BUILTIN + " not found");
+            }
+            loadCatalog(new InputStreamReader(in, StandardCharsets.UTF_8), UnitCatalog.BUILTIN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+
+        synchronized (REGISTRY_LOCK) {
+            publish(bootstrap.build());
+            bootstrap = null;
+            builtinUnits = Collections.unmodifiableList(new ArrayList<>(registry.units));
+        }
+        initNanos = System.nanoTime() - INIT_START;
     }
 
     public static void init() {
@@ -167,9 +249,10 @@ public final class Units {
             return ONE;
         }
 
-        Unit<?> u = SYMBOL_MAP.get(symbol);
+        Snapshot snapshot = registry;
+        Unit<?> u = snapshot.symbols.get(symbol);
         if(u == null) {
-            u = getUnit(BASIC_UNITS.getUnits(), symbol);
+            u = BASIC_STRINGS.get(symbol);
         }
         return u;
     }
@@ -182,7 +265,7 @@ public final class Units {
      * @return Unit实例
      */
     public static Unit<?> nameFor(String name) {
-        return NAME_MAP.get(name);
+        return registry.names.get(name);
     }
 
     /**
@@ -197,24 +280,122 @@ public final class Units {
         return parse(symbol, false);
     }
 
+    /**
+     * 解析单位
+     *
+     * @param symbol 单位符号，比如 "kg/桶"
+     * @param cache  是否缓存解析结果。缓存的容量有限，超出容量时淘汰不常用的单位；同一个单位的并发解析只会执行一次
+     *
+     * @return Unit实例
+     */
     public static Unit<?> parse(String symbol, boolean cache) {
-        Unit<?> u = cache ? parsedUnitCache.get(symbol) : null;
-        if (u == null) {
-            String e = "0 " + symbol;
-            u = SimpleQuantityFormat.getInstance("n u").parse(e).getUnit();
-            if (cache) {
-                parsedUnitCache.put(symbol, u);
+        long start = UnitsMetrics.start();
+        boolean success = false;
+        try {
+            Unit<?> u;
+            if(cache) {
+                u = parsedUnitCache.getIfPresent(symbol);
+                UnitsMetrics.cacheLookup(u != null);
+                if(u == null) {
+                    u = parsedUnitCache.load(symbol, QuantityParser::parseUnit);
+                }
+            } else {
+                u = QuantityParser.parseUnit(symbol);
             }
+            success = true;
+            return u;
+        } finally {
+            UnitsMetrics.end(UnitsMetrics.Operation.PARSE_UNIT, start, success);
         }
-        return u;
+    }
+
+    /**
+     * 修改 {@link #parse(String, boolean)} 缓存的容量
+     *
+     * @param capacity 最多缓存的单位个数
+     */
+    public static void setParsedUnitCacheCapacity(int capacity) {
+        parsedUnitCache.setCapacity(capacity);
+    }
+
+    /**
+     * @return {@link #parse(String, boolean)} 缓存的统计数据
+     */
+    public static SegmentedLruCache.Stats parsedUnitCacheStats() {
+        return parsedUnitCache.stats();
+    }
+
+    /**
+     * 设置一类量的计算方式，所有与unit的国际标准单位相同的单位都使用该方式，比如设置了 米 之后，厘米、毫米也使用该方式。<br>
+     * 通常在启动时设置，已经创建的量的数值不受影响。
+     *
+     * @param unit 这类量中的任意一个单位
+     * @param mode 计算方式
+     */
+    public static void setNumericMode(Unit<?> unit, NumericMode mode) {
+        Objects.requireNonNull(mode);
+        Unit<?> systemUnit = unit.getSystemUnit();
+        synchronized (REGISTRY_LOCK) {
+            Map<Unit<?>, NumericMode> m = new HashMap<>(numericModes);
+            if(mode == NumericMode.EXACT) {
+                m.remove(systemUnit);
+            } else {
+                m.put(systemUnit, mode);
+            }
+            numericModes = Collections.unmodifiableMap(m);
+        }
+    }
+
+    /**
+     * @return 单位所属的这类量的计算方式，没有设置时为 {@link NumericMode#EXACT}
+     */
+    public static NumericMode numericMode(Unit<?> unit) {
+        return UnitInterner.numericMode(unit);
+    }
+
+    /**
+     * @return 国际标准单位到计算方式的映射，每次修改都是新的实例
+     */
+    static Map<Unit<?>, NumericMode> numericModes() {
+        return numericModes;
+    }
+
+    static int parsedUnitCacheSize() {
+        return parsedUnitCache.size();
     }
 
     static Unit<?> getUnit(String string) {
-        Unit<?> u = getUnit(ALL_UNITS, string);
-        if(u == null) {
-            u = getUnit(BASIC_UNITS.getUnits(), string);
+        Objects.requireNonNull(string);
+        Unit<?> u = registry.strings.get(string);
+        return u != null ? u : BASIC_STRINGS.get(string);
+    }
+
+    /**
+     * 判断单位是否包含在标准单位中，已注册的单位实例直接命中，不需要格式化单位
+     *
+     * @param unit 单位
+     *
+     * @return 包含时返回true
+     */
+    static boolean contains(Unit<?> unit) {
+        Snapshot snapshot = registry;
+        if(snapshot.units.contains(unit) || BASIC_SET.contains(unit)) {
+            return true;
         }
-        return u;
+        String str = FORMAT.format(unit);
+        return snapshot.strings.containsKey(str) || BASIC_STRINGS.containsKey(str);
+    }
+
+    /**
+     * 格式化单位，结果与 {@link Unit#toString()} 相同，但是不读取indriya全局的 {@link SimpleUnitFormat}。<br>
+     * 类初始化之后注册的单位没有标签，按indriya的规则输出单位符号，与注册的标签相同。
+     *
+     * @param unit 单位
+     *
+     * @return 单位的字符串形式
+     */
+    static String format(Unit<?> unit) {
+        return FORMAT.format(unit);
     }
 
     /**
@@ -223,51 +404,95 @@ public final class Units {
      * @param unit  需要添加别名的单位
      * @param alias 别名
      * 
-     * @throws IllegalArgumentException 如果单位不存在
+     * @throws IllegalArgumentException 如果单位不存在，或者别名不是合法的标签
      * @throws IllegalStateException    如果别名重复
      */
     public static <U extends Unit<?>> U addAlias(U unit, String alias) {
-        if(!ALL_UNITS.contains(unit)) {
-            throw new IllegalArgumentException("unit not exist.");
-        }
-
-        if(notEmpty(alias)) {
-            Unit<?> pre = NAME_MAP.putIfAbsent(alias, unit);
-            requireNull(pre);
-            SimpleUnitFormat.getInstance().alias(unit, alias);
-        }
-
+        register(Collections.singletonList(new UnitCatalog.Definition(unit, alias, false)));
         return unit;
     }
 
     /**
      * 增加自定义单位，不可以重复添加。<br>
-     * 当添加了同符号的单位或同名的单位时，将会抛出异常。
+     * 当添加了同符号的单位或同名的单位时，将会抛出异常。<br>
+     * indriya全局的 {@link SimpleUnitFormat} 不是线程安全的，类初始化之后注册的符号和别名只记录在注册表的快照中，
+     * 用于 {@link #parse(String)} 和 {@link UnitNumber#parse(CharSequence)}，不会修改全局的实例。
      * 
      * @param unit  单位实例
      * @param alias 别名
      * @param <U>   单位的类型
      * 
-     * @throws IllegalStateException 如果单位别名或单位符号重复
+     * @throws IllegalArgumentException 如果单位别名或单位符号不是合法的标签，比如以数字开头
+     * @throws IllegalStateException    如果单位别名或单位符号重复
      * 
      * @return 参数中的单位实例
      */
     public static <U extends Unit<?>> U addUnit(U unit, String alias) {
-        ALL_UNITS.add(unit);
+        register(Collections.singletonList(new UnitCatalog.Definition(unit, alias, true)));
+        return unit;
+    }
 
-        if(notEmpty(unit.getSymbol())) {
-            Unit<?> pre = SYMBOL_MAP.putIfAbsent(unit.getSymbol(), unit);
-            requireNull(pre);
-            SimpleUnitFormat.getInstance().label(unit, unit.getSymbol());
+    /**
+     * 从目录文件中批量注册单位，文件格式参见 {@link UnitCatalog}。<br>
+     * 所有定义先检查再注册，有任何一条定义重复时都不会注册，注册表只发布一次。
+     *
+     * @param path 目录文件，UTF-8编码
+     *
+     * @return 新注册的单位，按文件中的顺序排列
+     *
+     * @throws IllegalArgumentException 如果格式错误，引用的单位不存在，或者单位符号、别名不是合法的标签
+     * @throws IllegalStateException    如果单位别名或单位符号重复
+     */
+    public static List<Unit<?>> loadCatalog(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return loadCatalog(reader, path.toString());
         }
+    }
+
+    /**
+     * 从目录中批量注册单位
+     *
+     * @param reader 目录内容
+     *
+     * @return 新注册的单位，按定义的顺序排列
+     *
+     * @see #loadCatalog(Path)
+     */
+    public static List<Unit<?>> loadCatalog(Reader reader) throws IOException {
+        return loadCatalog(reader, "catalog");
+    }
+
+    private static List<Unit<?>> loadCatalog(Reader reader, String source) throws IOException {
+        List<UnitCatalog.Definition> defs = UnitCatalog.parse(reader, source);
+        register(defs);
 
-        if(notEmpty(alias)) {
-            Unit<?> pre = NAME_MAP.putIfAbsent(alias, unit);
-            requireNull(pre);
-            SimpleUnitFormat.getInstance().alias(unit, alias);
+        List<Unit<?>> ret = new ArrayList<>();
+        for (UnitCatalog.Definition d : defs) {
+            if(d.isUnit) {
+                ret.add(d.unit);
+            }
         }
+        return ret;
+    }
 
-        return unit;
+    /**
+     * 注册一批定义：先全部检查，再修改，最后发布一次快照。类初始化期间登记到 {@link #bootstrap}，初始化结束时统一发布。
+     */
+    private static void register(List<UnitCatalog.Definition> defs) {
+        synchronized (REGISTRY_LOCK) {
+            Registration r = bootstrap != null ? bootstrap : new Registration(registry, false);
+            r.check(defs);
+            for (UnitCatalog.Definition d : defs) {
+                if(d.isUnit) {
+                    r.addUnit(d.unit, d.alias);
+                } else {
+                    r.addAlias(d.unit, d.alias);
+                }
+            }
+            if(r != bootstrap) {
+                publish(r.build());
+            }
+        }
     }
 
     /**
@@ -290,7 +515,33 @@ public final class Units {
      * @return 所有单位
      */
     public static Collection<Unit<?>> all() {
-        return new ArrayList<>(ALL_UNITS);
+        return new ArrayList<>(registry.units);
+    }
+
+    /**
+     * @return 内置单位，按注册的顺序排列
+     */
+    static List<Unit<?>> builtinUnits() {
+        return builtinUnits;
+    }
+
+    /**
+     * @return Units类初始化的耗时，单位纳秒，包括注册所有内置单位
+     */
+    static long initNanos() {
+        return initNanos;
+    }
+
+    /**
+     * @return 当前的注册表快照，不可修改
+     */
+    static Snapshot snapshot() {
+        return registry;
+    }
+
+    private static void publish(Snapshot snapshot) {
+        registry = snapshot;
+        UnitConverters.invalidate();
     }
 
     private static void requireNull(Unit<?> pre) {
@@ -300,12 +551,164 @@ public final class Units {
         }
     }
 
-    private static Unit<?> getUnit(Collection<Unit<?>> units, String string) {
-        Objects.requireNonNull(string);
-        return units.stream().filter(u -> string.equals(u.toString())).findAny().orElse(null);
+    /**
+     * 符号和别名必须是 {@link SimpleUnitFormat} 接受的标识符：第一个字符是字母，或者不是空白、数字和组合单位中的运算符
+     */
+    private static void requireLabel(String label) {
+        if(!QuantityParser.isUnitIdentifierPart(label.charAt(0))) {
+            String msg = String.format("[%s] is not a valid label", label);
+            throw new IllegalArgumentException(msg);
+        }
     }
 
     private static boolean notEmpty(String str) {
         return str != null && str.length() > 0;
     }
+
+    /**
+     * 正在进行的一次注册，在锁内从当前快照复制出来修改，完成后生成新的快照
+     */
+    private static final class Registration {
+        private final Set<Unit<?>> units;
+        private final Map<String, Unit<?>> symbols;
+        private final Map<String, Unit<?>> names;
+        private final Map<String, Unit<?>> labels;
+        private final Map<String, Unit<?>> strings;
+
+        /**
+         * 是否注册到 {@link #FORMAT} 和indriya全局的 {@link SimpleUnitFormat}，只在类初始化期间为true
+         */
+        private final boolean shared;
+
+        Registration(Snapshot snapshot, boolean shared) {
+            this.units = new LinkedHashSet<>(snapshot.units);
+            this.symbols = new HashMap<>(snapshot.symbols);
+            this.names = new HashMap<>(snapshot.names);
+            this.labels = new HashMap<>(snapshot.labels);
+            this.strings = new HashMap<>(snapshot.strings);
+            this.shared = shared;
+        }
+
+        /**
+         * 检查一批定义，包括定义之间的重复，有问题时抛出异常，不做任何修改
+         */
+        void check(List<UnitCatalog.Definition> defs) {
+            Map<String, Unit<?>> newSymbols = new HashMap<>();
+            Map<String, Unit<?>> newNames = new HashMap<>();
+            Set<Unit<?>> newUnits = new HashSet<>();
+            for (UnitCatalog.Definition d : defs) {
+                if(d.isUnit) {
+                    String symbol = d.unit.getSymbol();
+                    if(notEmpty(symbol)) {
+                        requireLabel(symbol);
+                        requireNull(symbols.get(symbol));
+                        requireNull(newSymbols.put(symbol, d.unit));
+                    }
+                    newUnits.add(d.unit);
+                } else if(!units.contains(d.unit) && !newUnits.contains(d.unit)) {
+                    throw new IllegalArgumentException("unit not exist.");
+                }
+
+                if(notEmpty(d.alias)) {
+                    requireLabel(d.alias);
+                    requireNull(names.get(d.alias));
+                    requireNull(newNames.put(d.alias, d.unit));
+                }
+            }
+        }
+
+        void addUnit(Unit<?> unit, String alias) {
+            units.add(unit);
+
+            String symbol = unit.getSymbol();
+            if(notEmpty(symbol)) {
+                symbols.put(symbol, unit);
+                if(shared) {
+                    FORMAT.label(unit, symbol);
+                    SimpleUnitFormat.getInstance().label(unit, symbol);
+                }
+                labels.put(symbol, unit);
+            }
+
+            addAlias(unit, alias);
+
+            // 单位的字符串形式依赖于上面注册的标签
+            strings.putIfAbsent(FORMAT.format(unit), unit);
+        }
+
+        void addAlias(Unit<?> unit, String alias) {
+            if(notEmpty(alias)) {
+                names.put(alias, unit);
+                labels.put(alias, unit);
+                if(shared) {
+                    FORMAT.alias(unit, alias);
+                    SimpleUnitFormat.getInstance().alias(unit, alias);
+                }
+            }
+        }
+
+        Snapshot build() {
+            return new Snapshot(units, symbols, names, labels, strings, shared ? FORMAT : null);
+        }
+    }
+
+    /**
+     * 注册表的快照，创建后不再修改。<br>
+     * 注册单位时在锁内复制一份、修改后整体发布，读取的线程总是看到某一次注册完成后的完整状态。
+     */
+    static final class Snapshot {
+        final Set<Unit<?>> units;
+        final Map<String, Unit<?>> symbols;
+        final Map<String, Unit<?>> names;
+
+        /**
+         * 注册的标签和别名，与 {@link #format()} 内部的映射保持一致，后注册的覆盖先注册的
+         */
+        final Map<String, Unit<?>> labels;
+
+        /**
+         * 以单位的字符串形式为key的索引，同一个字符串对应多个单位时，先注册的优先
+         */
+        final Map<String, Unit<?>> strings;
+
+        /**
+         * 包含所有注册的标签和别名的单位格式，第一次用到时创建
+         */
+        private volatile SimpleUnitFormat format;
+
+        private Snapshot(Set<Unit<?>> units, Map<String, Unit<?>> symbols, Map<String, Unit<?>> names,
+                Map<String, Unit<?>> labels, Map<String, Unit<?>> strings, SimpleUnitFormat format) {
+            this.units = Collections.unmodifiableSet(units);
+            this.symbols = Collections.unmodifiableMap(symbols);
+            this.names = Collections.unmodifiableMap(names);
+            this.labels = Collections.unmodifiableMap(labels);
+            this.strings = Collections.unmodifiableMap(strings);
+            this.format = format;
+        }
+
+        /**
+         * 这个快照自己的单位格式，包含indriya内置的标签和这个快照中所有的标签、别名，创建之后不再修改，可以并发地解析。<br>
+         * 创建一个实例需要毫秒级的时间，只有交给indriya解析的少见写法才需要，所以在第一次用到时创建，并发时可能重复创建。
+         *
+         * @return 单位格式
+         */
+        SimpleUnitFormat format() {
+            SimpleUnitFormat f = format;
+            if(f == null) {
+                // SimpleUnitFormat不能复制，在新的实例上重新注册：先注册每个单位的符号，再按labels恢复后注册的覆盖先注册的结果
+                f = SimpleUnitFormat.getNewInstance();
+                for (Unit<?> u : units) {
+                    String symbol = u.getSymbol();
+                    if(notEmpty(symbol)) {
+                        f.label(u, symbol);
+                    }
+                }
+                for (Map.Entry<String, Unit<?>> e : labels.entrySet()) {
+                    f.alias(e.getValue(), e.getKey());
+                }
+                format = f;
+            }
+            return f;
+        }
+    }
 }
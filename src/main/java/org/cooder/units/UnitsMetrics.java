@@ -0,0 +1,520 @@
+package org.cooder.units;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.measure.Unit;
+
+/**
+ * 运行时统计，默认关闭。<br>
+ * 打开后统计每种操作的次数、失败次数和耗时分布，{@link Units#parse(String, boolean)} 缓存的命中情况，以及每对单位之间的转换次数。<br>
+ * 关闭时每次操作只多读一次volatile变量，不计时也不通知监听器。<br>
+ * 统计数据可以通过 {@link #registerMBean()} 注册的JMX MBean查看，也可以通过 {@link Listener} 转发到其他监控系统，
+ * 监听器可以调用 {@link #addListener(Listener)} 添加，或者在 META-INF/services 中声明。
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public final class UnitsMetrics {
+    /**
+     * JMX MBean的名字
+     */
+    public static final String OBJECT_NAME = "org.cooder.units:type=UnitsMetrics";
+
+    /**
+     * 最多统计的单位对个数，超过后新的单位对不再统计
+     */
+    static final int MAX_CONVERSION_PAIRS = 1024;
+
+    /**
+     * 耗时分布的桶数，第i个桶统计耗时在 [2^(i-1), 2^i) 纳秒的操作
+     */
+    private static final int BUCKETS = 64;
+
+    private static volatile boolean enabled;
+
+    private static final Map<Operation, Stats> STATS = new EnumMap<>(Operation.class);
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    private static final Map<Pair, LongAdder> CONVERSIONS = new ConcurrentHashMap<>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    static {
+        for (Operation op : Operation.values()) {
+            STATS.put(op, new Stats());
+        }
+        for (Listener l : ServiceLoader.load(Listener.class, UnitsMetrics.class.getClassLoader())) {
+            LISTENERS.add(l);
+        }
+    }
+
+    private UnitsMetrics() {
+    }
+
+    /**
+     * 统计的操作
+     */
+    public enum Operation {
+        /**
+         * {@link UnitNumber#parse(CharSequence)}
+         */
+        PARSE,
+
+        /**
+         * {@link Units#parse(String, boolean)}
+         */
+        PARSE_UNIT,
+
+        /**
+         * {@link UnitNumber#to(Unit)} 中的单位转换
+         */
+        CONVERT,
+    }
+
+    /**
+     * 统计事件的监听器，在执行操作的线程中同步调用，实现必须是线程安全的，并且应该尽快返回。<br>
+     * 只有在统计打开时才会调用，抛出的RuntimeException被忽略。
+     */
+    public interface Listener {
+        /**
+         * 一次操作结束
+         *
+         * @param op      操作
+         * @param nanos   耗时，单位纳秒
+         * @param success 操作是否成功
+         */
+        void onOperation(Operation op, long nanos, boolean success);
+
+        /**
+         * 一次单位转换
+         *
+         * @param from 源单位
+         * @param to   目标单位
+         */
+        default void onConversion(Unit<?> from, Unit<?> to) {
+        }
+
+        /**
+         * 一次 {@link Units#parse(String, boolean)} 缓存查找
+         *
+         * @param hit 是否命中
+         */
+        default void onCacheLookup(boolean hit) {
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 打开或者关闭统计，关闭时已有的统计数据保留
+     */
+    public static void setEnabled(boolean enabled) {
+        UnitsMetrics.enabled = enabled;
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(Objects.requireNonNull(listener));
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 清空所有统计数据
+     */
+    public static void reset() {
+        for (Stats s : STATS.values()) {
+            s.reset();
+        }
+        CACHE_HITS.reset();
+        CACHE_MISSES.reset();
+        CONVERSIONS.clear();
+    }
+
+    /**
+     * @return 操作的统计数据
+     */
+    public static OperationStats stats(Operation op) {
+        return STATS.get(op).snapshot(op);
+    }
+
+    /**
+     * @return {@link Units#parse(String, boolean)} 缓存命中的次数
+     */
+    public static long cacheHitCount() {
+        return CACHE_HITS.sum();
+    }
+
+    /**
+     * @return {@link Units#parse(String, boolean)} 缓存未命中的次数
+     */
+    public static long cacheMissCount() {
+        return CACHE_MISSES.sum();
+    }
+
+    /**
+     * @return 每对单位之间的转换次数，键为 "源单位 -&gt; 目标单位"，按次数从多到少排列
+     */
+    public static Map<String, Long> conversionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        CONVERSIONS.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(e -> counts.merge(e.getKey().toString(), e.getValue().sum(), Long::sum));
+        return counts;
+    }
+
+    /**
+     * 冷启动的耗时，即 {@link Units} 类初始化的耗时，包括注册所有内置单位，与统计是否打开无关
+     *
+     * @return 耗时，单位纳秒
+     */
+    public static long startupNanos() {
+        return Units.initNanos();
+    }
+
+    /**
+     * 注册JMX MBean，名字为 {@link #OBJECT_NAME}，已经注册时不做任何事
+     *
+     * @throws IllegalStateException 如果注册失败
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name)) {
+                server.registerMBean(new MXBeanImpl(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 注销JMX MBean，没有注册时不做任何事
+     */
+    public static synchronized void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 操作开始时调用
+     *
+     * @return 开始时间，统计关闭时返回0
+     */
+    static long start() {
+        if(!enabled) {
+            return 0;
+        }
+        long t = System.nanoTime();
+        return t == 0 ? 1 : t;
+    }
+
+    /**
+     * 操作结束时调用
+     *
+     * @param start {@link #start()} 的返回值，为0时不统计
+     */
+    static void end(Operation op, long start, boolean success) {
+        if(start == 0) {
+            return;
+        }
+        long nanos = Math.max(0, System.nanoTime() - start);
+        STATS.get(op).record(nanos, success);
+        for (Listener l : LISTENERS) {
+            try {
+                l.onOperation(op, nanos, success);
+            } catch (RuntimeException e) {
+                // 监听器的异常不能影响统计的操作，也不能覆盖操作本身抛出的异常
+            }
+        }
+    }
+
+    static void cacheLookup(boolean hit) {
+        if(!enabled) {
+            return;
+        }
+        (hit ? CACHE_HITS : CACHE_MISSES).increment();
+        for (Listener l : LISTENERS) {
+            try {
+                l.onCacheLookup(hit);
+            } catch (RuntimeException e) {
+                // 监听器的异常不能影响统计的操作，也不能覆盖操作本身抛出的异常
+            }
+        }
+    }
+
+    static void conversion(Unit<?> from, Unit<?> to) {
+        if(!enabled) {
+            return;
+        }
+        Pair key = new Pair(from, to);
+        LongAdder c = CONVERSIONS.get(key);
+        if(c == null && CONVERSIONS.size() < MAX_CONVERSION_PAIRS) {
+            c = CONVERSIONS.computeIfAbsent(key, k -> new LongAdder());
+        }
+        if(c != null) {
+            c.increment();
+        }
+        for (Listener l : LISTENERS) {
+            try {
+                l.onConversion(from, to);
+            } catch (RuntimeException e) {
+                // 监听器的异常不能影响统计的操作，也不能覆盖操作本身抛出的异常
+            }
+        }
+    }
+
+    /**
+     * 某种操作的统计数据
+     */
+    public static final class OperationStats {
+        private final String operation;
+        private final long count;
+        private final long errorCount;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        OperationStats(String operation, long count, long errorCount, long totalNanos, long maxNanos, long[] buckets) {
+            this.operation = operation;
+            this.count = count;
+            this.errorCount = errorCount;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return 操作次数，包括失败的操作
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        public long getP50Nanos() {
+            return percentile(0.5);
+        }
+
+        public long getP99Nanos() {
+            return percentile(0.99);
+        }
+
+        public long getP999Nanos() {
+            return percentile(0.999);
+        }
+
+        /**
+         * 按耗时分布估算百分位数，返回所在桶的上界，误差在2倍以内
+         *
+         * @param p 百分位，在 [0, 1] 之间
+         *
+         * @return 耗时，单位纳秒
+         */
+        public long percentile(double p) {
+            if(p < 0 || p > 1) {
+                throw new IllegalArgumentException("p must be in [0, 1]: " + p);
+            }
+            long total = 0;
+            for (long b : buckets) {
+                total += b;
+            }
+            if(total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if(seen >= rank) {
+                    return Math.min(maxNanos, i == 0 ? 0 : (1L << i) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{count=%d, errors=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns}",
+                    operation, count, errorCount, getMeanNanos(), getP50Nanos(), getP99Nanos(), maxNanos);
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Stats() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            if(!success) {
+                errors.increment();
+            }
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        }
+
+        void reset() {
+            count.reset();
+            errors.reset();
+            total.reset();
+            max.reset();
+            for (LongAdder b : buckets) {
+                b.reset();
+            }
+        }
+
+        OperationStats snapshot(Operation op) {
+            long[] b = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                b[i] = buckets[i].sum();
+            }
+            return new OperationStats(op.name(), count.sum(), errors.sum(), total.sum(), max.get(), b);
+        }
+    }
+
+    private static final class Pair {
+        private final Unit<?> from;
+        private final Unit<?> to;
+
+        Pair(Unit<?> from, Unit<?> to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(obj instanceof Pair) {
+                Pair that = (Pair) obj;
+                return from.equals(that.from) && to.equals(that.to);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * from.hashCode() + to.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return from + " -> " + to;
+        }
+    }
+
+    private static final class MXBeanImpl implements UnitsMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return UnitsMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            UnitsMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getStartupNanos() {
+            return startupNanos();
+        }
+
+        @Override
+        public Map<String, OperationStats> getOperations() {
+            Map<String, OperationStats> ret = new LinkedHashMap<>();
+            for (Operation op : Operation.values()) {
+                ret.put(op.name(), stats(op));
+            }
+            return ret;
+        }
+
+        @Override
+        public long getParsedUnitCacheHits() {
+            return cacheHitCount();
+        }
+
+        @Override
+        public long getParsedUnitCacheMisses() {
+            return cacheMissCount();
+        }
+
+        @Override
+        public int getParsedUnitCacheSize() {
+            return Units.parsedUnitCacheSize();
+        }
+
+        @Override
+        public long getConverterCacheHits() {
+            return UnitConverters.hitCount();
+        }
+
+        @Override
+        public long getConverterCacheMisses() {
+            return UnitConverters.missCount();
+        }
+
+        @Override
+        public int getConverterCacheSize() {
+            return UnitConverters.size();
+        }
+
+        @Override
+        public Map<String, Long> getConversionCounts() {
+            return conversionCounts();
+        }
+
+        @Override
+        public void reset() {
+            UnitsMetrics.reset();
+        }
+    }
+}
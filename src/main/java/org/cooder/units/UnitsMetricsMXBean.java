@@ -0,0 +1,48 @@
+package org.cooder.units;
+
+import java.util.Map;
+
+import org.cooder.units.UnitsMetrics.OperationStats;
+
+/**
+ * {@link UnitsMetrics} 的JMX接口
+ *
+ * @author <a href="mailto:wuling@cooder.org">wuling</a>
+ */
+public interface UnitsMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return Units类初始化的耗时，单位纳秒
+     */
+    long getStartupNanos();
+
+    /**
+     * @return 每种操作的次数、失败次数和耗时分布
+     */
+    Map<String, OperationStats> getOperations();
+
+    long getParsedUnitCacheHits();
+
+    long getParsedUnitCacheMisses();
+
+    int getParsedUnitCacheSize();
+
+    long getConverterCacheHits();
+
+    long getConverterCacheMisses();
+
+    int getConverterCacheSize();
+
+    /**
+     * @return 每对单位之间的转换次数
+     */
+    Map<String, Long> getConversionCounts();
+
+    /**
+     * 清空统计数据
+     */
+    void reset();
+}
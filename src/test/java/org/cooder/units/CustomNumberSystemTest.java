@@ -0,0 +1,90 @@
+package org.cooder.units;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import javax.measure.quantity.Length;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import tech.units.indriya.function.Calculus;
+import tech.units.indriya.spi.NumberSystem;
+
+public class CustomNumberSystemTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testNarrow() {
+        CustomNumberSystem ns = new CustomNumberSystem();
+        Assert.assertEquals(3, ns.narrow(new BigDecimal("3.00")));
+        Assert.assertEquals(0, ns.narrow(new BigDecimal("0.000")));
+        Assert.assertEquals(1500, ns.narrow(new BigDecimal("1.5E+3")));
+        Assert.assertEquals(-12, ns.narrow(new BigDecimal("-12.0")));
+        Assert.assertEquals(new BigInteger("100000000000000000000"), ns.narrow(new BigDecimal("100000000000000000000.00")));
+
+        // 非整数保持原样，包括末尾的0
+        BigDecimal d = new BigDecimal("1.2345000");
+        Assert.assertSame(d, ns.narrow(d));
+        d = new BigDecimal("0.50");
+        Assert.assertSame(d, ns.narrow(d));
+        // 非标度值能被 2^scale 整除但不是整数
+        d = new BigDecimal("0.64");
+        Assert.assertSame(d, ns.narrow(d));
+        d = new BigDecimal("6.4");
+        Assert.assertSame(d, ns.narrow(d));
+
+        Assert.assertEquals(3, ns.narrow(3.0));
+        Assert.assertEquals(5000000000L, ns.narrow(5e9));
+        Assert.assertEquals(new BigInteger("100000000000000000000"), ns.narrow(1e20));
+        Assert.assertEquals(0.5, ns.narrow(0.5));
+    }
+
+    @Test
+    public void testBounded() {
+        CustomNumberSystem ns = new CustomNumberSystem(MathContext.DECIMAL64, 4);
+        Assert.assertEquals(new BigDecimal("0.3333"), ns.narrow(BigDecimal.ONE.divide(BigDecimal.valueOf(3), MathContext.DECIMAL128)));
+        Assert.assertEquals(new BigInteger("12345678901234570000"), ns.narrow(new BigDecimal("12345678901234567890.5")));
+        // 舍入后为整数
+        Assert.assertEquals(2, ns.narrow(new BigDecimal("1.99999")));
+
+        boolean hasException = false;
+        try {
+            new CustomNumberSystem(MathContext.DECIMAL64, -1);
+        } catch (IllegalArgumentException e) {
+            hasException = true;
+        }
+        Assert.assertTrue(hasException);
+    }
+
+    @Test
+    public void testChain() {
+        BigDecimal rate = new BigDecimal("1.1");
+        UnitNumber<Length> unbounded = chain(rate);
+        // 乘法的结果按 Calculus.MATH_CONTEXT 保留34位有效数字
+        Assert.assertEquals(31, ((BigDecimal) unbounded.getValue()).scale());
+
+        NumberSystem old = Calculus.currentNumberSystem();
+        Calculus.setCurrentNumberSystem(new CustomNumberSystem(MathContext.DECIMAL128, 10));
+        try {
+            UnitNumber<Length> bounded = chain(rate);
+            Assert.assertEquals(10, ((BigDecimal) bounded.getValue()).scale());
+            Assert.assertEquals(unbounded.getValue().doubleValue(), bounded.getValue().doubleValue(), 1e-8);
+        } finally {
+            Calculus.setCurrentNumberSystem(old);
+        }
+    }
+
+    private static UnitNumber<Length> chain(BigDecimal rate) {
+        UnitNumber<Length> n = new UnitNumber<>(BigDecimal.ONE, Units.米);
+        for (int i = 0; i < 50; i++) {
+            n = n.multiply(rate);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,88 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.万元;
+import static org.cooder.units.Units.元;
+import static tech.units.indriya.function.AbstractConverter.IDENTITY;
+
+import java.math.BigDecimal;
+
+import javax.measure.Unit;
+
+import org.cooder.units.quantity.Money;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import tech.units.indriya.unit.TransformedUnit;
+
+public class FixedMoneyTest {
+    private static Unit<Money> 厘;
+
+    /**
+     * {@link FixedMoney#defaultScale()} 由已注册的货币单位决定，所以注册一个千分之一元的单位。
+     * 符号只在这个测试中使用，不会与其他测试注册或解析的单位重名
+     */
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+        厘 = Units.addUnit(new TransformedUnit<>("测试厘", "测试厘", 元.divide(1000), IDENTITY).asType(Money.class), null);
+    }
+
+    @Test
+    public void testScale() {
+        Assert.assertEquals(3, FixedMoney.defaultScale());
+
+        FixedMoney m = FixedMoney.of(UnitNumber.parse("12.5 元").asType(Money.class));
+        Assert.assertTrue(m.isCompact());
+        Assert.assertEquals(12500, m.unscaledValue());
+        Assert.assertEquals(3, m.scale());
+        Assert.assertEquals("12.500 元", m.toString());
+
+        Assert.assertEquals(1234, FixedMoney.of(1234, 厘).unscaledValue());
+        Assert.assertEquals(20000000, FixedMoney.of(2, 万元).unscaledValue());
+        Assert.assertEquals(5, FixedMoney.of(new BigDecimal("0.00005"), 元).scale());
+    }
+
+    @Test
+    public void testArithmetic() {
+        FixedMoney price = FixedMoney.of(12.5, 元);
+        FixedMoney total = price.multiply(3).add(FixedMoney.of(2, 万元)).subtract(FixedMoney.of(50, 厘));
+        Assert.assertEquals(new BigDecimal("20037.450"), total.toBigDecimal());
+        Assert.assertEquals(FixedMoney.of(new BigDecimal("0.001"), 元).add(price), FixedMoney.of(12501, 元).multiply(1)
+                .subtract(FixedMoney.of(new BigDecimal("12488.499"), 元)));
+        Assert.assertEquals(-1, price.negate().signum());
+        Assert.assertTrue(price.compareTo(FixedMoney.of(12501, 厘)) < 0);
+        Assert.assertEquals(FixedMoney.of(new BigDecimal("12.500"), 元), price);
+        Assert.assertEquals(FixedMoney.of(new BigDecimal("12.500"), 元).hashCode(), price.hashCode());
+    }
+
+    @Test
+    public void testOverflow() {
+        FixedMoney max = FixedMoney.ofUnscaled(Long.MAX_VALUE, 3);
+        FixedMoney sum = max.add(FixedMoney.of(1, 厘));
+        Assert.assertFalse(sum.isCompact());
+        Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 3).add(new BigDecimal("0.001")), sum.toBigDecimal());
+
+        FixedMoney back = sum.subtract(FixedMoney.of(1, 厘));
+        Assert.assertTrue(back.isCompact());
+        Assert.assertEquals(max, back);
+
+        FixedMoney product = max.multiply(10);
+        Assert.assertFalse(product.isCompact());
+        Assert.assertEquals(0, BigDecimal.valueOf(Long.MAX_VALUE, 2).compareTo(product.toBigDecimal()));
+    }
+
+    @Test
+    public void testConvert() {
+        FixedMoney m = FixedMoney.of(12345, 元);
+        Assert.assertEquals("1.2345 万元", m.to(万元).toString());
+        Assert.assertEquals("12345000 测试厘", m.to(厘).toString());
+        Assert.assertEquals("12345 元", m.toUnitNumber().toString());
+        Assert.assertTrue(m.to(万元).isEquivalentTo(new UnitNumber<>(12345, 元)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotMoney() {
+        FixedMoney.of(1, Units.getUnit("个").asType(Money.class));
+    }
+}
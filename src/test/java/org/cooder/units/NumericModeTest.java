@@ -0,0 +1,88 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.元;
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.米;
+import static org.cooder.units.Units.角度;
+import static tech.units.indriya.unit.Units.RADIAN;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.measure.quantity.Angle;
+import javax.measure.quantity.Length;
+
+import org.cooder.units.quantity.Money;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class NumericModeTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testAccumulator() {
+        UnitAccumulator<Length> fast = new UnitAccumulator<>(米, NumericMode.DOUBLE);
+        double naive = 0;
+        for (int i = 0; i < 1000000; i++) {
+            fast.add(0.1, 米);
+            naive += 0.1;
+        }
+        Number sum = fast.sum().getValue();
+        Assert.assertEquals(100000.0, sum.doubleValue(), 0);
+        Assert.assertNotEquals(100000.0, naive, 0);
+
+        // 单位转换和合并
+        UnitAccumulator<Length> other = new UnitAccumulator<>(米, NumericMode.DOUBLE).add(new UnitNumber<>(50, 厘米));
+        fast.reset();
+        fast.add(new UnitNumber<>(1, 米)).merge(other).merge(new UnitAccumulator<>(米).add(new UnitNumber<>(2, 米)));
+        Assert.assertEquals(3, fast.count());
+        Assert.assertEquals("3.5 m", fast.sum().toString());
+        Assert.assertEquals(NumericMode.EXACT, new UnitAccumulator<>(米).getNumericMode());
+
+        UnitNumber<Length> c = Arrays.asList(new UnitNumber<>(0.1, 米), new UnitNumber<>(0.2, 米)).stream()
+                .collect(UnitCollectors.summing(米, NumericMode.DOUBLE));
+        Assert.assertEquals(0.3, c.getValue().doubleValue(), 1e-15);
+    }
+
+    @Test
+    public void testQuantityType() {
+        Assert.assertEquals(NumericMode.EXACT, Units.numericMode(角度));
+        Units.setNumericMode(RADIAN, NumericMode.DOUBLE);
+        try {
+            Assert.assertEquals(NumericMode.DOUBLE, Units.numericMode(角度));
+            Assert.assertEquals(NumericMode.EXACT, Units.numericMode(米));
+            Assert.assertEquals(NumericMode.EXACT, Units.numericMode(元));
+
+            UnitNumber<Angle> a = new UnitNumber<>(90, 角度);
+            UnitNumber<Angle> b = new UnitNumber<>(Math.PI / 2, RADIAN);
+            UnitNumber<Angle> sum = a.add(b);
+            Assert.assertEquals(180, sum.getValue().doubleValue(), 1e-12);
+            Assert.assertEquals(Math.PI, sum.to(RADIAN).getValue().doubleValue(), 1e-15);
+            Assert.assertEquals(45, a.divide(2).getValue().doubleValue(), 0);
+            Assert.assertEquals(Math.PI, b.multiply(2).getValue().doubleValue(), 0);
+            Assert.assertEquals(Math.PI * Math.PI / 4, b.multiply(b).getValue().doubleValue(), 1e-15);
+            Assert.assertEquals(1, a.divide(b).getValue().doubleValue(), 1e-15);
+
+            List<UnitNumber<Angle>> list = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                list.add(new UnitNumber<>(0.1, 角度));
+            }
+            UnitNumber<Angle> total = list.parallelStream().collect(UnitCollectors.summing(角度));
+            Assert.assertEquals(100, total.getValue().doubleValue(), 1e-12);
+
+            // 与精确计算的量相乘时仍然精确计算
+            UnitNumber<Money> price = new UnitNumber<>(new BigDecimal("2.5"), 元);
+            Assert.assertEquals(new BigDecimal("2.5"), new UnitNumber<>(1, 元).multiply(price).getValue());
+        } finally {
+            Units.setNumericMode(RADIAN, NumericMode.EXACT);
+        }
+        Assert.assertEquals(NumericMode.EXACT, Units.numericMode(角度));
+        Assert.assertEquals("90 °", new UnitNumber<>(45, 角度).multiply(2).toString());
+    }
+}
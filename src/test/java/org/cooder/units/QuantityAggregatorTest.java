@@ -0,0 +1,121 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class QuantityAggregatorTest {
+    private static final Map<String, Unit<?>> TARGETS = new HashMap<>();
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+        TARGETS.put("钢管", Units.米);
+        TARGETS.put("螺丝", Units.nameFor("个"));
+        TARGETS.put("人工费", Units.万元);
+    }
+
+    private static final class Item {
+        final String material;
+        final UnitNumber<?> quantity;
+
+        Item(String material, String quantity) {
+            this.material = material;
+            this.quantity = quantity == null ? null : UnitNumber.parse(quantity);
+        }
+    }
+
+    private static QuantityAggregator<Item, String> aggregator() {
+        return new QuantityAggregator<>(i -> i.material, i -> i.quantity, TARGETS::get);
+    }
+
+    @Test
+    public void testAggregate() {
+        List<Item> items = Arrays.asList(new Item("钢管", "1500 mm"), new Item("螺丝", "20 个"),
+                new Item("钢管", "2 m"), new Item("人工费", "3000 元"), new Item("螺丝", "2 套"),
+                new Item("钢管", "50 cm"), new Item("人工费", "0.5 万元"), new Item("螺丝", "5 个"),
+                new Item("钢管", "3 kg"), new Item("门", "1 樘"), new Item("螺丝", null));
+
+        QuantityAggregator.Result<Item, String> r = aggregator().aggregateSequential(items);
+        Assert.assertEquals(Arrays.asList("钢管", "螺丝", "人工费"), new ArrayList<>(r.groups().keySet()));
+
+        QuantityAggregator.Group<String> pipe = r.group("钢管");
+        Assert.assertEquals(Units.米, pipe.getUnit());
+        Assert.assertEquals(3, pipe.count());
+        Assert.assertEquals("4 m", pipe.sum().toString());
+        Assert.assertEquals("0.5 m", pipe.min().toString());
+        Assert.assertEquals("2 m", pipe.max().toString());
+        Assert.assertEquals(0, UnitNumber.compare(UnitNumber.parse("4 m").divide(3), pipe.average()));
+
+        Assert.assertEquals("25 个", r.group("螺丝").sum().toString());
+        Assert.assertEquals("0.8 万元", r.group("人工费").sum().toString());
+        Assert.assertEquals("0.3 万元", r.group("人工费").min().toString());
+
+        List<Long> rows = new ArrayList<>();
+        for (QuantityAggregator.Mismatch<Item, String> m : r.mismatches()) {
+            rows.add(m.getIndex());
+            Assert.assertSame(items.get((int) m.getIndex()), m.getRow());
+            Assert.assertNotNull(m.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList(4L, 8L, 9L, 10L), rows);
+        Assert.assertNull(r.group("门"));
+    }
+
+    @Test
+    public void testParallel() {
+        String[] materials = { "钢管", "螺丝", "人工费", "未知材料" };
+        String[][] units = { { "mm", "m", "cm", "个" }, { "个", "套" }, { "元", "万元" }, { "个" } };
+        Random r = new Random(42);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            int k = r.nextInt(materials.length);
+            String[] u = units[k];
+            items.add(new Item(materials[k], r.nextInt(10000) + " " + u[r.nextInt(u.length)]));
+        }
+
+        QuantityAggregator<Item, String> agg = aggregator();
+        QuantityAggregator.Result<Item, String> expected = agg.aggregateSequential(items);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            QuantityAggregator.Result<Item, String> actual = agg.aggregate(items, pool);
+            Assert.assertEquals(new ArrayList<>(expected.groups().keySet()), new ArrayList<>(actual.groups().keySet()));
+            for (QuantityAggregator.Group<String> g : expected.groups().values()) {
+                QuantityAggregator.Group<String> a = actual.group(g.getKey());
+                Assert.assertEquals(g.toString(), a.toString());
+                Assert.assertEquals(g.count(), a.count());
+            }
+            Assert.assertEquals(expected.mismatches().size(), actual.mismatches().size());
+            for (int i = 0; i < expected.mismatches().size(); i++) {
+                Assert.assertEquals(expected.mismatches().get(i).getIndex(), actual.mismatches().get(i).getIndex());
+            }
+            Assert.assertTrue(actual.mismatches().size() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPartial() {
+        QuantityAggregator<Item, String> agg = aggregator();
+        QuantityAggregator.Partial<Item, String> a = agg.newPartial();
+        QuantityAggregator.Partial<Item, String> b = agg.newPartial();
+        agg.add(a, 0, new Item("钢管", "1 m"));
+        agg.add(b, 1, new Item("钢管", "300 cm"));
+        agg.add(b, 2, new Item("螺丝", "1 套"));
+        QuantityAggregator.Result<Item, String> r = a.merge(b).toResult();
+        Assert.assertEquals("4 m", r.group("钢管").sum().toString());
+        Assert.assertEquals("3 m", r.group("钢管").max().toString());
+        Assert.assertEquals(1, r.mismatches().size());
+        Assert.assertEquals(2, r.mismatches().get(0).getIndex());
+    }
+}
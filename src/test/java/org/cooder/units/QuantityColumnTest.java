@@ -0,0 +1,88 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.米;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Temperature;
+
+import org.cooder.units.quantity.SKU;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class QuantityColumnTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testConvert() {
+        List<UnitNumber<Length>> list = Arrays.asList(new UnitNumber<>(1, 米), new UnitNumber<>(50, 厘米),
+                new UnitNumber<>(2.5, 米));
+        QuantityColumn<Length> col = QuantityColumn.of(list);
+        Assert.assertEquals(米, col.getUnit());
+        Assert.assertArrayEquals(new double[] { 1, 0.5, 2.5 }, col.toArray(), 0);
+
+        QuantityColumn<Length> cm = col.to(厘米);
+        Assert.assertArrayEquals(new double[] { 100, 50, 250 }, cm.toArray(), 1e-9);
+        Assert.assertSame(col, col.to(米));
+        Assert.assertEquals("[100 cm, 50 cm, 250 cm]", cm.toList().toString());
+        Assert.assertTrue(col.get(1).isEquivalentTo(list.get(1)));
+    }
+
+    @Test
+    public void testArithmetic() {
+        QuantityColumn<Length> a = new QuantityColumn<>(new double[] { 1, 2, 3 }, 米);
+        QuantityColumn<Length> b = new QuantityColumn<>(new double[] { 10, 20, 30 }, 厘米);
+
+        Assert.assertArrayEquals(new double[] { 1.1, 2.2, 3.3 }, a.add(b).toArray(), 1e-9);
+        Assert.assertArrayEquals(new double[] { 0.9, 1.8, 2.7 }, a.subtract(b).toArray(), 1e-9);
+        Assert.assertArrayEquals(new double[] { 2, 4, 6 }, a.multiply(2).toArray(), 0);
+
+        Assert.assertEquals("6 m", a.sum().toString());
+        Assert.assertEquals("1 m", a.min().toString());
+        Assert.assertEquals("30 cm", b.max().toString());
+        Assert.assertEquals(0, new QuantityColumn<>(new double[0], 米).sum().getValue().doubleValue(), 0);
+    }
+
+    @Test
+    public void testNonLinear() {
+        UnitNumber<Temperature> t = new UnitNumber<>(10, Units.摄氏度);
+        QuantityColumn<Temperature> col = new QuantityColumn<>(new double[] { 10, 10 }, Units.摄氏度);
+        Assert.assertEquals(t.add(t).getValue().doubleValue(), col.sum().getValue().doubleValue(), 1e-9);
+        Assert.assertEquals(t.add(t).getValue().doubleValue(), col.add(col).getDouble(0), 1e-9);
+        Assert.assertEquals(t.multiply(2).getValue().doubleValue(), col.multiply(2).getDouble(1), 1e-9);
+
+        UnitNumber<Temperature> empty = new QuantityColumn<>(new double[0], Units.摄氏度).sum();
+        Assert.assertEquals(Units.摄氏度, empty.getUnit());
+        Assert.assertEquals(0, empty.getValue().doubleValue(), 0);
+    }
+
+    @Test
+    public void testInvalid() {
+        QuantityColumn<Length> a = new QuantityColumn<>(new double[] { 1, 2, 3 }, 米);
+        try {
+            a.add(new QuantityColumn<>(new double[] { 1 }, 米));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        try {
+            new QuantityColumn<Length>(new double[0], 米).max();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+
+        QuantityColumn<SKU> sku = new QuantityColumn<>(new double[] { 1 }, Units.getUnit("个").asType(SKU.class));
+        try {
+            sku.to(Units.getUnit("箱").asType(SKU.class));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+}
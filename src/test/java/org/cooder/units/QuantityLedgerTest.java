@@ -0,0 +1,150 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.measure.Unit;
+
+import org.cooder.units.quantity.Money;
+import org.cooder.units.quantity.WorkTime;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QuantityLedgerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        Path path = folder.newFile("a.ledger").toPath();
+        List<UnitNumber<?>> list = Arrays.asList(UnitNumber.parse("8 人时"), UnitNumber.parse("12.50 元"),
+                UnitNumber.parse("-3 万元"), UnitNumber.parse("1.5 人天"), new UnitNumber<>(0.1, Units.元));
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin(), 2)) {
+            for (int i = 0; i < list.size(); i++) {
+                Assert.assertEquals(i, ledger.append(i % 2, list.get(i)));
+            }
+            Assert.assertEquals(list.size(), ledger.size());
+            for (int i = 0; i < list.size(); i++) {
+                Assert.assertEquals(i % 2, ledger.key(i));
+                Assert.assertEquals(0, UnitNumber.compare(list.get(i), ledger.get(i)));
+            }
+            Assert.assertEquals("12.5 元", ledger.get(1).toString());
+        }
+
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin(), 2)) {
+            Assert.assertEquals(list.size(), ledger.size());
+            List<String> scanned = new ArrayList<>();
+            ledger.scan(3, (i, key, unit, unscaled, scale) -> {
+                scanned.add(i + ":" + key + ":" + BigDecimal.valueOf(unscaled, scale) + " " + unit);
+            });
+            Assert.assertEquals(Arrays.asList("3:1:1.5 人天", "4:0:0.1 元"), scanned);
+        }
+    }
+
+    @Test
+    public void testTotals() throws IOException {
+        QuantityLedger ledger = QuantityLedger.direct(UnitDictionary.builtin());
+        ledger.append(1, UnitNumber.parse("8 人时"));
+        ledger.append(1, UnitNumber.parse("1 人天"));
+        ledger.append(1, UnitNumber.parse("100 元"));
+        ledger.append(2, UnitNumber.parse("0.5 万元"));
+        ledger.append(1, UnitNumber.parse("0.25 万元"));
+        ledger.append(2, UnitNumber.parse("4 人时"));
+        ledger.append(2, new UnitNumber<>(Long.MAX_VALUE, Units.元));
+        ledger.append(2, new UnitNumber<>(1, Units.元));
+
+        Unit<WorkTime> day = Units.人天;
+        Assert.assertEquals("2 人天", ledger.total(1, day).toString());
+        Assert.assertEquals("2600 元", ledger.total(1, Units.元).toString());
+        Assert.assertEquals(0, ledger.total(3, Units.元).getValue().intValue());
+
+        Map<Long, UnitNumber<Money>> money = ledger.totals(Units.元);
+        Assert.assertEquals(2, money.size());
+        Assert.assertEquals("2600 元", money.get(1L).toString());
+        BigDecimal big = BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.valueOf(5001));
+        Assert.assertEquals(0, big.compareTo(Numbers.toBigDecimal(money.get(2L).getValue())));
+        Assert.assertEquals("0.5 人天", ledger.totals(day).get(2L).toString());
+
+        // 元和SKU单位都是无量纲的，不能互相汇总
+        ledger.append(4, UnitNumber.parse("100 元"));
+        ledger.append(4, UnitNumber.parse("3 个"));
+        ledger.append(4, UnitNumber.parse("5 桶"));
+        Assert.assertEquals("100 元", ledger.total(4, Units.元).toString());
+        Assert.assertEquals("3 个", ledger.total(4, Units.symbolFor("个")).toString());
+        Assert.assertEquals("100 元", ledger.totals(Units.元).get(4L).toString());
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        Path path = folder.newFile("b.ledger").toPath();
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin(), 4)) {
+            for (int i = 0; i < 6; i++) {
+                ledger.append(7, new UnitNumber<>(i, Units.元));
+            }
+        }
+
+        // 模拟崩溃：最后一条记录只写了一半，文件头的落盘位置还停留在前面
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(8);
+            b.putLong(0, 2);
+            ch.write(b, 24);
+            b.clear();
+            b.putLong(0, 99);
+            ch.write(b, QuantityLedger.HEADER_SIZE + 5 * QuantityLedger.RECORD_SIZE + 16);
+        }
+
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin(), 4)) {
+            Assert.assertEquals(5, ledger.size());
+            Assert.assertEquals("10 元", ledger.total(7, Units.元).toString());
+            ledger.append(7, new UnitNumber<>(100, Units.元));
+        }
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin(), 4)) {
+            Assert.assertEquals(6, ledger.size());
+            Assert.assertEquals("110 元", ledger.total(7, Units.元).toString());
+        }
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        Path path = folder.newFile("c.ledger").toPath();
+        try (QuantityLedger ledger = QuantityLedger.open(path, UnitDictionary.builtin())) {
+            ledger.append(1, UnitNumber.parse("3 元"));
+            try {
+                ledger.append(1, UnitNumber.parse("5 kg/桶"));
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        // 扩展后的字典可以继续使用原来的文件
+        UnitDictionary site = UnitDictionary.builtin().extend(Arrays.asList("kg/桶"));
+        try (QuantityLedger ledger = QuantityLedger.open(path, site)) {
+            ledger.append(1, UnitNumber.parse("5 kg/桶"));
+            Assert.assertEquals("5 kg/桶", ledger.get(1).toString());
+        }
+
+        try {
+            QuantityLedger.open(path, UnitDictionary.builtin());
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.cooder.units;
+
+import java.util.function.Supplier;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import tech.units.indriya.format.SimpleQuantityFormat;
+import tech.units.indriya.quantity.Quantities;
+
+public class QuantityParserTest {
+    private static final String[] QUANTITIES = {
+            "10 m", "12.5 平米", "3 个", "1 m 70 cm", "0.10 m", "-3.25 m", "2.0 m", "100 cm",
+            "5 kg/桶", "10 元*人天/平米", "0.0001 元/平方厘米", "10 元/平米", "3 km/h", "1.5 kg·m/s²",
+            "7 m^2", "10 人天", "500 千克", "500 l", "10 秒钟", "10 万元", "5 m2", "1 (m/s)/s",
+            "1 m/100", "8 kg*2", "123456789012345678 m", "3 hour 30 min", "1 m 2 mm ",
+            "1,000 m", "1/2 m", "1e3 m", "-0 m", "0.1234567890123456789 m", "10  m", " 10 m",
+    };
+
+    private static final String[] UNITS = {
+            "千克/桶", "kg/桶", "m", "米", "元/平米", "元*人天/平米", "m/s²", "(m/s)/s", "km/h", "m2",
+            "个", "kg·m^2", "m^1:2", "m/100", "分钟",
+    };
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testSameAsIndriya() {
+        for (String s : QUANTITIES) {
+            Assert.assertEquals(s, describe(() -> Quantities.getQuantity(s)), describe(() -> QuantityParser.parse(s)));
+        }
+    }
+
+    @Test
+    public void testUnitSameAsIndriya() {
+        for (String s : UNITS) {
+            String expect = describe(() -> SimpleQuantityFormat.getInstance("n u").parse("0 " + s).getUnit());
+            Assert.assertEquals(s, expect, describe(() -> QuantityParser.parseUnit(s)));
+        }
+    }
+
+    /**
+     * 解析结果的描述：数值的类型、数值、单位以及字符串形式，解析失败时为异常类型
+     */
+    private static String describe(Supplier<Object> parser) {
+        Object r;
+        try {
+            r = parser.get();
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+        if(r instanceof Unit) {
+            return r.getClass().getName() + " " + r;
+        }
+        Number value = r instanceof Quantity ? ((Quantity<?>) r).getValue() : ((UnitNumber<?>) r).getValue();
+        Unit<?> unit = r instanceof Quantity ? ((Quantity<?>) r).getUnit() : ((UnitNumber<?>) r).getUnit();
+        return value.getClass().getName() + " " + value + " " + unit.getClass().getName() + " " + unit + " " + r;
+    }
+
+    @Test
+    public void testRange() {
+        String s = "x|12.5 平米|y";
+        UnitNumber<?> n = QuantityParser.parse(s, 2, s.length() - 2);
+        Assert.assertEquals("12.5 m²", n.toString());
+    }
+
+    @Test
+    public void testReadNumber() {
+        Assert.assertEquals(Long.valueOf(12), QuantityParser.readNumber("12", 0, 2));
+        Assert.assertEquals(Long.valueOf(-12), QuantityParser.readNumber("-12.00", 0, 6));
+        Assert.assertEquals(Double.valueOf(0.1), QuantityParser.readNumber("0.1", 0, 3));
+        Assert.assertNull(QuantityParser.readNumber("1,000", 0, 5));
+        Assert.assertNull(QuantityParser.readNumber("-0", 0, 2));
+        Assert.assertNull(QuantityParser.readNumber("5.", 0, 2));
+    }
+
+    @Test
+    public void testRegisteredUnit() {
+        Unit<?> u = Units.addSkuUnit("樽", "樽");
+        UnitNumber<?> n = QuantityParser.parse("3 樽");
+        Assert.assertEquals(u, n.getUnit());
+        Assert.assertEquals(u, QuantityParser.parseUnit("樽"));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalid = { "5 m³2s/kg", "10", "10 foo", "m 10" };
+        for (String s : invalid) {
+            boolean hasException = false;
+            try {
+                UnitNumber.parse(s);
+            } catch (IllegalArgumentException e) {
+                hasException = true;
+            }
+            Assert.assertTrue(s, hasException);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QuantityReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        Path file = write("data.csv", StandardCharsets.UTF_8,
+                "名称,面积,数量\r\n",
+                "地板,25 m²,3 个\r\n",
+                "\"门,木质\",\"1.5 平米\",\r\n",
+                "\r\n",
+                "墙面,,10 人天\n",
+                "窗户,1 m 70 cm,\"2 个\"");
+
+        List<String> rows = new ArrayList<>();
+        long n = QuantityReader.csv(file).header(true).columns(1, 2).batchSize(2).bufferSize(16).read(batch -> {
+            Assert.assertEquals(2, batch.columnCount());
+            for (int i = 0; i < batch.size(); i++) {
+                rows.add(batch.line(i) + ":" + batch.get(i, 0) + "|" + batch.get(i, 1));
+            }
+        });
+
+        Assert.assertEquals(4, n);
+        Assert.assertEquals("[2:25 m²|3 个, 3:1.5 m²|null, 5:null|10 人天, 6:1.7 m|2 个]", rows.toString());
+    }
+
+    @Test
+    public void testTsv() throws IOException {
+        Path file = write("data.tsv", Charset.forName("GBK"), "12.5 平米\t5 kg/桶\n", "3 万元\t\"x\"\"y\"\n");
+
+        List<String> errors = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        long n = QuantityReader.tsv(file).charset(Charset.forName("GBK")).columns(1, 0)
+                .onError((line, column, cell, e) -> errors.add(line + ":" + column + ":" + cell))
+                .read(batch -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        rows.add(batch.get(i, 0) + "|" + batch.get(i, 1));
+                    }
+                });
+
+        Assert.assertEquals(2, n);
+        Assert.assertEquals("[5 kg/桶|12.5 m², null|3 万元]", rows.toString());
+        Assert.assertEquals("[2:1:x\"y]", errors.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() throws IOException {
+        Path file = write("invalid.csv", StandardCharsets.UTF_8, "10 m\n", "10 foo\n");
+        QuantityReader.csv(file).read(batch -> {
+        });
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        String[] units = { "m²", "个", "kg/桶", "平米", "万元" };
+        String[] lines = new String[5000];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i + " 个," + (i % 100) + " " + units[i % units.length] + "\n";
+        }
+        Path file = write("large.csv", StandardCharsets.UTF_8, lines);
+
+        Map<Long, String> seq = read(file, 1);
+        Map<Long, String> par = read(file, 4);
+        Assert.assertEquals(lines.length, seq.size());
+        Assert.assertEquals(seq, par);
+        Assert.assertEquals("(7,7 kg/桶)", seq.get(8L));
+    }
+
+    private static Map<Long, String> read(Path file, int parallelism) throws IOException {
+        Map<Long, String> ret = new ConcurrentHashMap<>();
+        QuantityReader reader = QuantityReader.csv(file).columns(0, 1).batchSize(100);
+        reader.minChunkSize = 1024;
+        long n = reader.read(batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                ret.put(batch.line(i), "(" + batch.get(i, 0).getValue() + "," + batch.get(i, 1) + ")");
+            }
+        }, parallelism);
+        Assert.assertEquals(ret.size(), n);
+        return ret;
+    }
+
+    private Path write(String name, Charset charset, String... lines) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line);
+        }
+        Path file = folder.newFile(name).toPath();
+        Files.write(file, sb.toString().getBytes(charset));
+        return file;
+    }
+}
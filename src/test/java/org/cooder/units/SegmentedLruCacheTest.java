@@ -0,0 +1,147 @@
+package org.cooder.units;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SegmentedLruCacheTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testEviction() {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<>(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put("hot" + i, i);
+            Assert.assertEquals(Integer.valueOf(i), cache.getIfPresent("hot" + i));
+        }
+
+        // 只出现一次的键不会把命中过的键挤出去
+        for (int i = 0; i < 100; i++) {
+            cache.put("once" + i, i);
+        }
+        Assert.assertEquals(10, cache.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Integer.valueOf(i), cache.getIfPresent("hot" + i));
+        }
+        Assert.assertNull(cache.getIfPresent("once0"));
+        Assert.assertNotNull(cache.getIfPresent("once99"));
+        Assert.assertEquals(95, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testSetCapacity() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(2000);
+        for (int i = 0; i < 5000; i++) {
+            cache.put(i, i);
+        }
+        Assert.assertTrue(cache.size() <= 2000);
+        Assert.assertTrue(cache.size() > 1500);
+
+        cache.setCapacity(100);
+        Assert.assertTrue(cache.size() <= 100);
+        Assert.assertEquals(100, cache.stats().getCapacity());
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalCapacity() {
+        new SegmentedLruCache<String, String>(0);
+    }
+
+    @Test
+    public void testSingleFlight() throws InterruptedException {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<>(10);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Integer> results = new ArrayList<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    Integer v = cache.get("k", k -> {
+                        calls.incrementAndGet();
+                        loading.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return 42;
+                    });
+                    synchronized (results) {
+                        results.add(v);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        loading.await();
+        Thread.sleep(50);
+        release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertNull(error.get());
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(8, results.size());
+        Assert.assertEquals(1, cache.stats().getLoadCount());
+    }
+
+    @Test
+    public void testLoadFailure() {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<>(10);
+        try {
+            cache.get("k", k -> {
+                throw new IllegalArgumentException(k);
+            });
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("k", e.getMessage());
+        }
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(1, cache.stats().getLoadFailureCount());
+        Assert.assertEquals(Integer.valueOf(1), cache.get("k", k -> 1));
+    }
+
+    @Test
+    public void testUnitsParse() {
+        Unit<?> u = Units.parse("元/延米", true);
+        long hits = Units.parsedUnitCacheStats().getHitCount();
+        Assert.assertSame(u, Units.parse("元/延米", true));
+        Assert.assertEquals(hits + 1, Units.parsedUnitCacheStats().getHitCount());
+
+        try {
+            Units.setParsedUnitCacheCapacity(8);
+            String[] sku = { "个", "箱", "件", "套", "桶", "瓶", "块", "张" };
+            for (String a : sku) {
+                for (String b : sku) {
+                    Units.parse(a + "/" + b, true);
+                }
+            }
+            Assert.assertTrue(Units.parsedUnitCacheStats().getSize() <= 8);
+        } finally {
+            Units.setParsedUnitCacheCapacity(Units.DEFAULT_PARSED_UNIT_CACHE_CAPACITY);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.万元;
+import static org.cooder.units.Units.元;
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.米;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Temperature;
+
+import org.cooder.units.quantity.Money;
+import org.cooder.units.quantity.SKU;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitAccumulatorTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testSum() {
+        List<UnitNumber<Length>> list = Arrays.asList(new UnitNumber<>(10, 米), new UnitNumber<>(20, 厘米),
+                new UnitNumber<>(1.5, 米), new UnitNumber<>(new BigDecimal("0.25"), 米));
+
+        UnitNumber<Length> expect = list.get(0);
+        for (int i = 1; i < list.size(); i++) {
+            expect = expect.add(list.get(i));
+        }
+
+        UnitAccumulator<Length> acc = new UnitAccumulator<>(米).addAll(list);
+        Assert.assertEquals(4, acc.count());
+        Assert.assertEquals(expect.toString(), acc.sum().toString());
+        Assert.assertEquals("1195 cm", new UnitAccumulator<>(厘米).addAll(list).sum().toString());
+
+        acc.reset();
+        Assert.assertEquals("0 m", acc.sum().toString());
+    }
+
+    @Test
+    public void testOverflow() {
+        UnitAccumulator<Money> acc = new UnitAccumulator<>(元);
+        acc.add(Long.MAX_VALUE, 元).add(1, 元).add(1, 万元);
+        Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.valueOf(10001)).toString(),
+                acc.sum().getValue().toString());
+    }
+
+    @Test
+    public void testNonLinear() {
+        UnitNumber<Temperature> t = new UnitNumber<>(10, Units.摄氏度);
+        UnitAccumulator<Temperature> acc = new UnitAccumulator<>(Units.摄氏度).add(t).add(t);
+        Assert.assertTrue(t.add(t).isEquivalentTo(acc.sum()));
+    }
+
+    @Test
+    public void testMerge() {
+        UnitAccumulator<Money> a = new UnitAccumulator<>(元).add(100, 元);
+        UnitAccumulator<Money> b = new UnitAccumulator<>(万元).add(1, 万元);
+        a.merge(b);
+        Assert.assertEquals(2, a.count());
+        Assert.assertEquals("10100 元", a.sum().toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncompatible() {
+        new UnitAccumulator<>(Units.getUnit("个").asType(SKU.class)).add(1, Units.getUnit("箱").asType(SKU.class));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        addConcurrently(new ConcurrentUnitAccumulator<>(元));
+    }
+
+    /**
+     * 线程比单元多，线程之间一定有竞争，竞争时换单元
+     */
+    @Test
+    public void testContended() throws InterruptedException {
+        addConcurrently(new ConcurrentUnitAccumulator<>(元, 2));
+    }
+
+    private static void addConcurrently(ConcurrentUnitAccumulator<Money> acc) throws InterruptedException {
+        int threads = 8;
+        int n = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < n; i++) {
+                    acc.add(1, 元);
+                    acc.add(new BigDecimal("0.01"), 元);
+                }
+            });
+            w.start();
+            workers.add(w);
+        }
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        Assert.assertEquals(threads * n * 2, acc.count());
+        Assert.assertEquals("80800 元", acc.sum().toString());
+        acc.reset();
+        Assert.assertEquals(0, acc.count());
+    }
+}
@@ -0,0 +1,121 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnitCatalogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testBuiltin() {
+        for (String s : Arrays.asList("根", "樘", "个", "箱", "次")) {
+            Unit<?> u = Units.nameFor(s);
+            Assert.assertNotNull(s, u);
+            Assert.assertSame(u, Units.symbolFor(s));
+            Assert.assertTrue(Units.all().contains(u));
+        }
+        Assert.assertTrue(UnitsMetrics.startupNanos() > 0);
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        String catalog = "# 测试目录\n"
+                + "\n"
+                + "sku 打 打\n"
+                + "unit 市斤 市斤 1/2 千克\n"
+                + "unit 市两 市两 0.1 市斤\n"
+                + "unit 打半 打半 18 个\n"
+                + "alias 千克 公斤\n";
+        List<Unit<?>> units = Units.loadCatalog(new StringReader(catalog));
+        Assert.assertEquals(4, units.size());
+        Assert.assertSame(units.get(1), Units.nameFor("市斤"));
+
+        Assert.assertEquals("1.5 kg", UnitNumber.to(UnitNumber.parse("3 市斤"), Units.千克).toString());
+        Assert.assertEquals("50 g", UnitNumber.to(UnitNumber.parse("1 市两"), Units.克).toString());
+        Assert.assertEquals("36 个", UnitNumber.to(UnitNumber.parse("2 打半"), Units.nameFor("个")).toString());
+        Assert.assertSame(Units.千克, Units.nameFor("公斤"));
+        Assert.assertEquals("2 kg", UnitNumber.parse("2 公斤").toString());
+    }
+
+    @Test
+    public void testLoadPath() throws IOException {
+        Path path = folder.newFile("site.catalog").toPath();
+        Files.write(path, "sku 托盘\nsku pallet 栈板\n".getBytes(StandardCharsets.UTF_8));
+        List<Unit<?>> units = Units.loadCatalog(path);
+        Assert.assertEquals(2, units.size());
+        Assert.assertSame(units.get(1), Units.symbolFor("pallet"));
+        Assert.assertSame(units.get(1), Units.nameFor("栈板"));
+    }
+
+    @Test
+    public void testAllOrNothing() throws IOException {
+        try {
+            Units.loadCatalog(new StringReader("sku 罐\nsku 个\n"));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertNull(Units.nameFor("罐"));
+
+        try {
+            Units.loadCatalog(new StringReader("sku 筐\nsku 筐\n"));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertNull(Units.nameFor("筐"));
+    }
+
+    @Test
+    public void testFormatError() throws IOException {
+        try {
+            Units.loadCatalog(new StringReader("sku 缸\n\nunit 缸半 缸半 1.5\n"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("catalog:3:"));
+        }
+        Assert.assertNull(Units.nameFor("缸"));
+
+        try {
+            Units.loadCatalog(new StringReader("sku 盆\nsku 2盆\n"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("[2盆] is not a valid label", e.getMessage());
+        }
+        Assert.assertNull(Units.nameFor("盆"));
+
+        try {
+            Units.addAlias(Units.千克, "/kg");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("[/kg] is not a valid label", e.getMessage());
+        }
+        Assert.assertNull(Units.nameFor("/kg"));
+
+        try {
+            Units.loadCatalog(new StringReader("alias 不存在 别名\n"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("catalog:1:"));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.万元;
+import static org.cooder.units.Units.元;
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.米;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import javax.measure.UnconvertibleException;
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+
+import org.cooder.units.quantity.Money;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitCollectorsTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    private static List<UnitNumber<Money>> prices(int n) {
+        Random r = new Random(20);
+        List<UnitNumber<Money>> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if(i % 10 == 0) {
+                list.add(new UnitNumber<>(BigDecimal.valueOf(r.nextInt(100), 4), 万元));
+            } else {
+                list.add(new UnitNumber<>(BigDecimal.valueOf(r.nextInt(100000), 2), 元));
+            }
+        }
+        return list;
+    }
+
+    @Test
+    public void testSumming() {
+        List<UnitNumber<Money>> list = prices(100000);
+        UnitNumber<Money> expect = new UnitAccumulator<>(元).addAll(list).sum();
+
+        UnitNumber<Money> seq = list.stream().collect(UnitCollectors.summing(元));
+        UnitNumber<Money> par = list.parallelStream().collect(UnitCollectors.summing(元));
+        Assert.assertEquals(expect.toString(), seq.toString());
+        Assert.assertEquals(expect.toString(), par.toString());
+
+        Assert.assertEquals("0 元", Collections.<UnitNumber<Money>> emptyList().stream()
+                .collect(UnitCollectors.summing(元)).toString());
+    }
+
+    @Test
+    public void testSummingAs() {
+        List<UnitNumber<?>> list = Arrays.asList(UnitNumber.parse("1.5 m"), UnitNumber.parse("20 cm"),
+                UnitNumber.parse("3 mm"));
+        UnitNumber<Length> sum = list.parallelStream().collect(UnitCollectors.summingAs(厘米));
+        Assert.assertEquals("170.3 cm", sum.toString());
+
+        try {
+            Arrays.<UnitNumber<?>> asList(UnitNumber.parse("1 kg")).stream().collect(UnitCollectors.summingAs(米));
+            Assert.fail();
+        } catch (UnconvertibleException e) {
+        }
+    }
+
+    @Test
+    public void testAveragingAndSummarizing() {
+        List<UnitNumber<Money>> list = prices(20000);
+        UnitNumberStatistics<Money> seq = list.stream().collect(UnitCollectors.summarizing(元));
+        UnitNumberStatistics<Money> par = list.parallelStream().collect(UnitCollectors.summarizing(元));
+
+        Assert.assertEquals(list.size(), seq.getCount());
+        Assert.assertEquals(seq.toString(), par.toString());
+        Assert.assertEquals(seq.getAverage().toString(), par.getAverage().toString());
+        Assert.assertEquals(seq.getAverage().toString(),
+                list.parallelStream().collect(UnitCollectors.averaging(元)).toString());
+
+        UnitNumber<Money> min = list.stream().min(UnitNumberComparator.INSTANCE).get();
+        UnitNumber<Money> max = list.stream().max(UnitNumberComparator.INSTANCE).get();
+        Assert.assertTrue(min.isEquivalentTo(par.getMin()));
+        Assert.assertTrue(max.isEquivalentTo(par.getMax()));
+
+        UnitNumberStatistics<Money> empty = new UnitNumberStatistics<>(元);
+        Assert.assertEquals(0, empty.getCount());
+        Assert.assertEquals("0 元", empty.getSum().toString());
+        Assert.assertNull(empty.getMin());
+        Assert.assertNull(empty.getAverage());
+        Assert.assertNull(Collections.<UnitNumber<Money>> emptyList().stream().collect(UnitCollectors.averaging(元)));
+
+        try {
+            empty.combine(new UnitNumberStatistics<>(万元));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testSummingByUnit() {
+        List<UnitNumber<?>> list = new ArrayList<>();
+        String[] skus = { "个", "套", "箱" };
+        for (int i = 0; i < 30000; i++) {
+            list.add(UnitNumber.parse((i % 7) + " " + skus[i % skus.length]));
+        }
+
+        Map<Unit<?>, UnitNumber<?>> seq = list.stream().collect(UnitCollectors.summingByUnit());
+        Map<Unit<?>, UnitNumber<?>> par = list.parallelStream().collect(UnitCollectors.summingByUnit());
+        Assert.assertEquals(seq.toString(), par.toString());
+
+        Iterator<UnitNumber<?>> it = par.values().iterator();
+        for (String sku : skus) {
+            long expect = list.stream().filter(n -> n.getUnit().toString().equals(sku))
+                    .collect(Collectors.summingLong(n -> n.getValue().longValue()));
+            Assert.assertEquals(expect + " " + sku, it.next().toString());
+        }
+    }
+
+    @Test
+    public void testColumnAndLedgerStream() throws Exception {
+        QuantityColumn<Length> column = new QuantityColumn<>(new double[] { 1, 2.5, 300 }, 厘米);
+        Assert.assertEquals(column.sum().toString(), column.stream().parallel().collect(UnitCollectors.summing(厘米))
+                .toString());
+
+        UnitDictionary dict = UnitDictionary.builtin();
+        try (QuantityLedger ledger = QuantityLedger.direct(dict)) {
+            List<UnitNumber<Money>> list = prices(5000);
+            for (int i = 0; i < list.size(); i++) {
+                ledger.append(i % 3, list.get(i));
+            }
+            UnitNumber<Money> sum = ledger.stream().parallel().collect(UnitCollectors.summingAs(元));
+            Assert.assertEquals(list.size(), ledger.stream().count());
+            Assert.assertEquals(ledger.totals(元).values().stream().collect(UnitCollectors.summing(元)).toString(),
+                    sum.toString());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.毫米;
+import static org.cooder.units.Units.米;
+
+import java.math.BigDecimal;
+
+import javax.measure.UnitConverter;
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Temperature;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitConvertersTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testCache() {
+        UnitConverter c1 = UnitConverters.of(厘米, 毫米);
+        long hits = UnitConverters.hitCount();
+        UnitConverter c2 = UnitConverters.of(厘米, 毫米);
+        Assert.assertSame(c1, c2);
+        Assert.assertEquals(hits + 1, UnitConverters.hitCount());
+        Assert.assertTrue(c1.convert((Number) 1).equals(10));
+    }
+
+    @Test
+    public void testInvalidate() {
+        UnitConverter c1 = UnitConverters.of(米, 厘米);
+        Units.addSkuUnit("卡", "卡");
+        long misses = UnitConverters.missCount();
+        UnitConverter c2 = UnitConverters.of(米, 厘米);
+        Assert.assertNotSame(c1, c2);
+        Assert.assertEquals(c1, c2);
+        Assert.assertEquals(misses + 1, UnitConverters.missCount());
+    }
+
+    @Test
+    public void testSameAsIndriya() {
+        UnitNumber<Length> len = new UnitNumber<>(new BigDecimal("12.5"), 厘米);
+        Assert.assertEquals("125 mm", len.to(毫米).toString());
+        Assert.assertEquals("0.125 m", len.to(米).toString());
+        Assert.assertSame(len, len.to(厘米));
+
+        // 非线性的转换，加法在国际标准单位下进行
+        UnitNumber<Temperature> t = new UnitNumber<>(10, Units.摄氏度);
+        Assert.assertEquals("293.15 ℃", t.add(t).toString());
+        Assert.assertEquals("-273.15 ℃", t.subtract(t).toString());
+    }
+}
@@ -0,0 +1,139 @@
+package org.cooder.units;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitFormulaTest {
+    private static final String PRICE = "长 * 宽 * 单价(元/平米) + 人工(人天) * 日薪(元/人天)";
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    private static Map<String, Unit<?>> lengths() {
+        Map<String, Unit<?>> units = new HashMap<>();
+        units.put("长", Units.米);
+        units.put("宽", Units.厘米);
+        return units;
+    }
+
+    @Test
+    public void testCompile() {
+        UnitFormula f = UnitFormula.compile(PRICE, lengths());
+        Assert.assertEquals(Arrays.asList("长", "宽", "单价", "人工", "日薪"), f.getVariables());
+        Assert.assertEquals(Units.厘米, f.getVariableUnit(1));
+        Assert.assertEquals(2, f.indexOf("单价"));
+        Assert.assertEquals(-1, f.indexOf("面积"));
+        Assert.assertEquals(Units.元, f.getUnit());
+
+        // 3m × 50cm × 100元/平米 + 2人天 × 400元/人天
+        Assert.assertEquals(950, f.evaluate(3, 50, 100, 2, 400), 1e-9);
+        Assert.assertEquals(0.095, f.to(Units.万元).evaluate(3, 50, 100, 2, 400), 1e-12);
+        Assert.assertSame(f, f.to(Units.元));
+    }
+
+    @Test
+    public void testSameAsUnitNumber() {
+        UnitNumber<?> l = UnitNumber.parse("3 m");
+        UnitNumber<?> w = UnitNumber.parse("50 cm");
+        UnitNumber<?> p = UnitNumber.parse("100 元/平米");
+        UnitNumber<?> d = UnitNumber.parse("2 人天");
+        UnitNumber<?> s = UnitNumber.parse("400 元/人天");
+        UnitNumber<?> expected = UnitNumber.add(l.multiply(w).multiply(p), d.multiply(s));
+
+        Map<String, UnitNumber<?>> values = new HashMap<>();
+        values.put("长", l);
+        values.put("宽", w);
+        values.put("单价", p);
+        values.put("人工", UnitNumber.parse("16 人时"));
+        values.put("日薪", s);
+        UnitNumber<?> res = UnitFormula.compile(PRICE, lengths()).evaluate(values);
+        Assert.assertEquals(expected.getUnit(), res.getUnit());
+        Assert.assertEquals(expected.getValue().doubleValue(), res.getValue().doubleValue(), 1e-9);
+    }
+
+    @Test
+    public void testConstants() {
+        UnitFormula f = UnitFormula.compile("-(a(m) + 50(cm)) * 2 / 4 + 1(km) - 3 * 2(m)");
+        Assert.assertEquals(Units.米, f.getUnit());
+        Assert.assertEquals(1000 - 6 - 0.75, f.evaluate(1), 1e-9);
+        Assert.assertEquals(3.5, UnitFormula.compile("1.5e1 / 3 - 1.5").evaluate(), 0);
+        Assert.assertEquals(Units.ONE, UnitFormula.compile("2 * (3 + 4)").getUnit());
+    }
+
+    @Test
+    public void testNonLinear() {
+        UnitFormula f = UnitFormula.compile("t(℃) + d(℃) - d(℃)").to(Units.摄氏度);
+        Assert.assertEquals(25, f.evaluate(25, 10), 1e-9);
+    }
+
+    @Test
+    public void testColumns() {
+        UnitFormula f = UnitFormula.compile("长(m) * 单价(元/m)");
+        double[] res = f.evaluate(new double[][] { { 1, 2, 3 }, { 10, 20, 30 } });
+        Assert.assertArrayEquals(new double[] { 10, 40, 90 }, res, 0);
+    }
+
+    @Test
+    public void testDimensionCheck() {
+        try {
+            UnitFormula.compile("长(m) + 单价(元/平米)");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            UnitFormula.compile("a(个) + b(桶)");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            UnitFormula.compile("a(m) + b(s)");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("[m] is not [s]", e.getMessage());
+        }
+        try {
+            UnitFormula.compile("长(m) * 宽(m)").to(Units.元);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            UnitFormula.compile("长(m) * 2").to(Units.千克);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("[m] is not [kg]", e.getMessage());
+        }
+        Assert.assertEquals(Units.平方米.getSystemUnit(), UnitFormula.compile("长(m) * 宽(m)").getUnit());
+    }
+
+    @Test
+    public void testSyntaxError() {
+        for (String s : Arrays.asList("长 * ", "长(m) * (宽(m)", "长(m) 宽(m)", "长(不存在的单位)", "长", "长(m) * 长(cm)",
+                "1..2")) {
+            try {
+                UnitFormula.compile(s, Collections.<String, Unit<?>> emptyMap());
+                Assert.fail(s);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("[" + s + "]"));
+            }
+        }
+        try {
+            UnitFormula.compile("长(m)").evaluate(1, 2);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.米;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitInternerTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testIntern() {
+        Unit<?> u1 = Units.parse("kg/桶");
+        Unit<?> u2 = Units.parse("kg/桶");
+        Assert.assertNotSame(u1, u2);
+        Assert.assertSame(UnitInterner.intern(u1), UnitInterner.intern(u2));
+        Assert.assertEquals(UnitInterner.id(u1), UnitInterner.id(u2));
+        Assert.assertNotEquals(UnitInterner.id(米), UnitInterner.id(厘米));
+
+        UnitNumber<?> n = UnitNumber.parse("5 kg/桶");
+        Assert.assertSame(UnitInterner.intern(u1), n.getUnit());
+    }
+
+    @Test
+    public void testRelations() {
+        UnitInterner.Entry m = UnitInterner.entry(米);
+        UnitInterner.Entry cm = UnitInterner.entry(厘米);
+        Assert.assertTrue(m.isCompatible(cm));
+        Assert.assertFalse(m.isCompatible(UnitInterner.entry(Units.千克)));
+        Assert.assertFalse(UnitInterner.isSame(米, 厘米));
+        Assert.assertTrue(UnitInterner.isSame(Units.parse("kg/桶"), Units.parse("千克/桶")));
+
+        Unit<?> ge = Units.getUnit("个");
+        Unit<?> xiang = Units.getUnit("箱");
+        Assert.assertTrue(UnitInterner.entry(ge).isCompatible(UnitInterner.entry(xiang)));
+        Assert.assertFalse(UnitInterner.isSame(ge, xiang));
+        Assert.assertTrue(UnitInterner.isDimensionless(ge));
+        Assert.assertFalse(UnitInterner.isDimensionless(米));
+    }
+
+    @Test
+    public void testRegistryChanged() {
+        Unit<?> u = Units.parse("m/桶");
+        UnitInterner.Entry before = UnitInterner.entry(u);
+        Units.addSkuUnit("坛", "坛");
+        UnitInterner.Entry after = UnitInterner.entry(u);
+        Assert.assertNotSame(before, after);
+        Assert.assertSame(after, UnitInterner.entry(Units.parse("m/桶")));
+    }
+
+    @Test
+    public void testFull() {
+        // 注册新单位得到新的驻留表，测试结束时再注册一个，不影响其他测试
+        Units.addSkuUnit("驻留甲", "驻留甲");
+        UnitInterner.Entry m = UnitInterner.entry(米);
+        for (int i = 2; i <= UnitInterner.MAX_UNITS; i++) {
+            UnitInterner.entry(米.multiply(i));
+        }
+
+        Unit<?> u = 米.multiply(UnitInterner.MAX_UNITS + 1);
+        Assert.assertNull(UnitInterner.entry(u));
+        Assert.assertSame(u, UnitInterner.intern(u));
+        Assert.assertEquals(-1, UnitInterner.id(u));
+        Assert.assertTrue(UnitInterner.isSame(u, 米.multiply(UnitInterner.MAX_UNITS + 1)));
+        Assert.assertSame(m, UnitInterner.entry(米));
+        Assert.assertSame(UnitInterner.entry(米.multiply(2)), UnitInterner.entry(米.multiply(2)));
+
+        Units.addSkuUnit("驻留乙", "驻留乙");
+        Assert.assertNotNull(UnitInterner.entry(u));
+    }
+}
@@ -0,0 +1,151 @@
+package org.cooder.units;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import tech.units.indriya.function.RationalNumber;
+
+public class UnitNumberCodecTest {
+    private static UnitNumberCodec codec;
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+        codec = UnitNumberCodec.builtin();
+    }
+
+    private static List<UnitNumber<?>> samples() {
+        return Arrays.asList(
+                new UnitNumber<>(5, Units.米),
+                new UnitNumber<>(-123456789012L, Units.毫米),
+                new UnitNumber<>(new BigDecimal("12.50"), Units.元),
+                new UnitNumber<>(new BigDecimal("-0.001"), Units.万元),
+                new UnitNumber<>(new BigDecimal("12345678901234567890.123456789"), Units.元),
+                new UnitNumber<>(new BigInteger("123456789012345678901234567890"), Units.克),
+                new UnitNumber<>(3.14, Units.摄氏度),
+                new UnitNumber<>(2.5f, Units.小时),
+                new UnitNumber<>(RationalNumber.of(1, 3), Units.人天),
+                UnitNumber.parse("3 箱"),
+                UnitNumber.parse("5 kg/桶"),
+                UnitNumber.parse("12.5 元/平米"),
+                UnitNumber.parse("10 m/s"));
+    }
+
+    @Test
+    public void testByteBuffer() {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (UnitNumber<?> n : samples()) {
+            buf.clear();
+            codec.write(n, buf);
+            buf.flip();
+            UnitNumber<?> m = codec.read(buf);
+            Assert.assertEquals(n.toString(), n, m);
+            Assert.assertEquals(n.toString(), m.toString());
+            Assert.assertEquals(n.getValue().getClass(), m.getValue().getClass());
+            Assert.assertFalse(buf.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testDataStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (UnitNumber<?> n : samples()) {
+            codec.write(n, out);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (UnitNumber<?> n : samples()) {
+            Assert.assertEquals(n, codec.read(in));
+        }
+        Assert.assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        List<UnitNumber<?>> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(new UnitNumber<>(i, i % 10 == 0 ? Units.万元 : Units.元));
+        }
+        list.addAll(samples());
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        codec.writeBatch(list, buf);
+        buf.flip();
+        Assert.assertEquals(list, codec.readBatch(buf));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.writeBatch(list, new DataOutputStream(bytes));
+        Assert.assertEquals(buf.limit(), bytes.size());
+        Assert.assertEquals(list, codec.readBatch(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        int text = 0;
+        for (UnitNumber<?> n : list) {
+            text += n.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        Assert.assertTrue(buf.limit() < text / 2);
+    }
+
+    @Test
+    public void testCompact() {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        codec.write(new UnitNumber<>(5, Units.元), buf);
+        Assert.assertTrue(buf.position() <= 4);
+    }
+
+    @Test
+    public void testDictionary() {
+        UnitDictionary builtin = UnitDictionary.builtin();
+        Assert.assertSame(builtin, codec.getDictionary());
+        int id = builtin.id(Units.米);
+        Assert.assertTrue(id >= 0);
+        Assert.assertSame(Units.米, builtin.unit(id));
+        Assert.assertEquals(-1, builtin.id(Units.parse("kg/桶")));
+
+        UnitDictionary site = builtin.extend(Arrays.asList("kg/桶", Units.米.toString()));
+        Assert.assertEquals(builtin.size() + 1, site.size());
+        Assert.assertEquals(id, site.id(Units.米));
+        Assert.assertEquals(builtin.size(), site.id(Units.parse("kg/桶")));
+        Assert.assertNotEquals(builtin.fingerprint(), site.fingerprint());
+        Assert.assertEquals(site.fingerprint(), UnitDictionary.of(site.strings()).fingerprint());
+
+        // 使用扩展字典写入的数据，组合单位也只占一个ID
+        UnitNumberCodec siteCodec = new UnitNumberCodec(site);
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        UnitNumber<?> n = UnitNumber.parse("5 kg/桶");
+        siteCodec.write(n, buf);
+        Assert.assertTrue(buf.position() <= 5);
+        buf.flip();
+        Assert.assertEquals(n, siteCodec.read(buf));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFingerprintMismatch() {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        new UnitNumberCodec(UnitDictionary.builtin().extend(Arrays.asList("kg/桶"))).writeBatch(samples(), buf);
+        buf.flip();
+        codec.readBatch(buf);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownId() {
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        buf.put((byte) 0x7F).put((byte) 0).put((byte) 2);
+        buf.flip();
+        codec.read(buf);
+    }
+}
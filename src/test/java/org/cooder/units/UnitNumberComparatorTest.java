@@ -0,0 +1,78 @@
+package org.cooder.units;
+
+import static org.cooder.units.Units.厘米;
+import static org.cooder.units.Units.毫米;
+import static org.cooder.units.Units.米;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitNumberComparatorTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testCompare() {
+        UnitNumberComparator c = UnitNumberComparator.INSTANCE;
+        Assert.assertTrue(c.compare(new UnitNumber<>(5, 毫米), new UnitNumber<>(1, 厘米)) < 0);
+        Assert.assertTrue(c.compare(new UnitNumber<>(0.2, 米), new UnitNumber<>(19, 厘米)) > 0);
+        Assert.assertEquals(0, c.compare(new UnitNumber<>(1, 米), new UnitNumber<>(100, 厘米)));
+
+        // double无法区分，精确比较
+        UnitNumber<Length> a = new UnitNumber<>(1, 米);
+        UnitNumber<Length> b = new UnitNumber<>(new BigDecimal("1000.0000000000000001"), 毫米);
+        Assert.assertTrue(c.compare(a, b) < 0);
+        Assert.assertTrue(c.compare(b, a) > 0);
+    }
+
+    @Test
+    public void testSort() {
+        Random r = new Random(42);
+        List<Unit<Length>> units = Arrays.asList(毫米, 厘米, 米);
+        List<UnitNumber<Length>> list = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Unit<Length> u = units.get(r.nextInt(units.size()));
+            Number v = r.nextBoolean() ? (Number) r.nextInt(1000) : new BigDecimal(r.nextInt(100000)).movePointLeft(2);
+            list.add(new UnitNumber<>(v, u));
+        }
+
+        List<UnitNumber<Length>> expect = new ArrayList<>(list);
+        expect.sort(UnitNumber::compare);
+        UnitNumberComparator.sort(list);
+        Assert.assertEquals(expect, list);
+
+        List<UnitNumber<Length>> sorted = new ArrayList<>(expect);
+        sorted.sort(UnitNumberComparator.INSTANCE);
+        Assert.assertEquals(expect, sorted);
+    }
+
+    @Test
+    public void testSortTie() {
+        UnitNumber<Length> a = new UnitNumber<>(new BigDecimal("1000.0000000000000001"), 毫米);
+        UnitNumber<Length> b = new UnitNumber<>(1, 米);
+        UnitNumber<Length> c = new UnitNumber<>(100, 厘米);
+        List<UnitNumber<Length>> list = new ArrayList<>(Arrays.asList(a, b, c));
+        UnitNumberComparator.sort(list);
+        Assert.assertEquals(Arrays.asList(b, c, a), list);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncompatible() {
+        List<UnitNumber<?>> list = new ArrayList<>();
+        list.add(new UnitNumber<>(1, 米));
+        list.add(new UnitNumber<>(1, Units.千克));
+        UnitNumberComparator.sort(list);
+    }
+}
@@ -0,0 +1,127 @@
+package org.cooder.units;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import tech.units.indriya.function.RationalNumber;
+import tech.units.indriya.quantity.Quantities;
+
+public class UnitNumberFormatterTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testDefault() throws IOException {
+        List<UnitNumber<?>> list = Arrays.asList(new UnitNumber<>(5, Units.米), new UnitNumber<>(-12L, Units.元),
+                new UnitNumber<>(3.14, Units.摄氏度), new UnitNumber<>(2.5f, Units.小时),
+                new UnitNumber<>(new BigDecimal("12.50"), Units.万元), new UnitNumber<>(BigInteger.TEN, Units.克),
+                new UnitNumber<>(RationalNumber.of(1, 3), Units.人天), new UnitNumber<>(7, Units.ONE),
+                UnitNumber.parse("5 kg/桶"), UnitNumber.parse("12.5 元/平米"), UnitNumber.parse("10 m/s"),
+                UnitNumber.parse("3 箱"));
+        StringBuilder sb = new StringBuilder();
+        StringWriter w = new StringWriter();
+        for (UnitNumber<?> n : list) {
+            String expected = Quantities.getQuantity(n.getValue(), n.getUnit()).toString();
+            Assert.assertEquals(expected, n.toString());
+            Assert.assertEquals(expected, UnitNumberFormatter.DEFAULT.format(n));
+            UnitNumberFormatter.DEFAULT.format(n, sb).append(';');
+            UnitNumberFormatter.DEFAULT.format(n, w).append(';');
+        }
+        Assert.assertEquals(sb.toString(), w.toString());
+        Assert.assertTrue(sb.toString(), sb.toString().startsWith("5 m;-12 元;3.14 "));
+    }
+
+    @Test
+    public void testScale() {
+        UnitNumberFormatter f = UnitNumberFormatter.ofScale(2);
+        Assert.assertEquals("5.00 m", f.format(new UnitNumber<>(5, Units.米)));
+        Assert.assertEquals("-0.05 元", f.format(new UnitNumber<>(-0.049, Units.元)));
+        Assert.assertEquals("0.00 元", f.format(new UnitNumber<>(-0.001, Units.元)));
+        Assert.assertEquals("3.14 元", f.format(new UnitNumber<>(3.14159, Units.元)));
+        Assert.assertEquals("12.50 万元", f.format(new UnitNumber<>(new BigDecimal("12.5"), Units.万元)));
+        Assert.assertEquals("0.33 人天", f.format(new UnitNumber<>(RationalNumber.of(1, 3), Units.人天)));
+        Assert.assertEquals("7", UnitNumberFormatter.ofScale(0).format(new UnitNumber<>(6.5, Units.ONE)));
+        Assert.assertEquals("NaN", f.formatValue(Double.NaN, new StringBuilder()).toString());
+
+        // 与BigDecimal的十进制舍入一致，不受二进制误差影响
+        Assert.assertEquals("1.01 元", f.format(new UnitNumber<>(1.005, Units.元)));
+        Assert.assertEquals("0.29 元",
+                UnitNumberFormatter.ofScale(2, RoundingMode.DOWN).format(new UnitNumber<>(0.29, Units.元)));
+
+        // float按十进制字符串舍入
+        UnitNumberFormatter g1 = UnitNumberFormatter.ofScale(1);
+        for (float v : new float[] { 0.45f, 0.35f, 1.15f, -2.25f }) {
+            String expected = new BigDecimal(Float.toString(v)).setScale(1, RoundingMode.HALF_UP).toPlainString();
+            Assert.assertEquals(v + "", expected, g1.formatValue(v, new StringBuilder()).toString());
+        }
+        Assert.assertEquals("0.5 m", g1.format(new UnitNumber<>(0.45f, Units.米)));
+        Assert.assertEquals("NaN", g1.formatValue(Float.NaN, new StringBuilder()).toString());
+
+        double[] values = { 0, 1.5, -1.5, 2.5, 0.125, -0.125, 1.005, 0.29, 123456.789, -98.7654321, 1e-7, 1e20 };
+        for (RoundingMode mode : RoundingMode.values()) {
+            if(mode == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            for (int scale = 0; scale <= 4; scale++) {
+                UnitNumberFormatter g = UnitNumberFormatter.ofScale(scale, mode);
+                for (double v : values) {
+                    String expected = new BigDecimal(Double.toString(v)).setScale(scale, mode).toPlainString();
+                    Assert.assertEquals(v + " " + mode + " " + scale, expected,
+                            g.formatValue(v, new StringBuilder()).toString());
+                }
+            }
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testUnnecessary() {
+        UnitNumberFormatter.ofScale(1, RoundingMode.UNNECESSARY).format(new UnitNumber<>(1.25, Units.米));
+    }
+
+    @Test
+    public void testNoAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        if(!mx.isThreadAllocatedMemorySupported() || !mx.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        UnitNumberFormatter f = UnitNumberFormatter.ofScale(2);
+        UnitNumber<?> a = new UnitNumber<>(1234567L, Units.元);
+        UnitNumber<?> b = new UnitNumber<>(3.14159, Units.米);
+        UnitNumber<?> c = UnitNumber.parse("12.5 元/平米");
+        StringBuilder sb = new StringBuilder(1024);
+        for (int i = 0; i < 20000; i++) {
+            sb.setLength(0);
+            f.format(a, sb);
+            f.format(b, sb);
+            f.format(c, sb);
+        }
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 10000; i++) {
+            sb.setLength(0);
+            f.format(a, sb);
+            f.format(b, sb);
+            f.format(c, sb);
+        }
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+        Assert.assertTrue("allocated: " + allocated, allocated < 10000);
+    }
+}
@@ -11,6 +11,8 @@ import static tech.units.indriya.unit.Units.*;
 
 import java.math.BigDecimal;
 
+import javax.measure.Quantity;
+import javax.measure.Unit;
 import javax.measure.quantity.Dimensionless;
 import javax.measure.quantity.Length;
 import javax.measure.quantity.Time;
@@ -22,6 +24,7 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import tech.units.indriya.quantity.Quantities;
 import tech.units.indriya.unit.TransformedUnit;
 
 public class UnitNumberTest {
@@ -148,6 +151,58 @@ public class UnitNumberTest {
         Assert.assertTrue("0.1 1/s".equals(it.toString()));
     }
 
+    @Test
+    public void testUnitAlgebra() {
+        String[] values = { "3 m", "20 cm", "1.5 mm", "12.50 元", "3 万元", "2 平米", "10 ℃", "8 人天", "0.3 kg", "4 个" };
+        for (String a : values) {
+            UnitNumber<?> x = parse(a);
+            Assert.assertEquals(a, x.inverse().toString(),
+                    Quantities.getQuantity(x.getValue(), x.getUnit()).inverse().toString());
+            for (String b : values) {
+                UnitNumber<?> y = parse(b);
+                Quantity<?> qx = Quantities.getQuantity(x.getValue(), x.getUnit()).toSystemUnit();
+                Quantity<?> qy = Quantities.getQuantity(y.getValue(), y.getUnit()).toSystemUnit();
+                for (int i = 0; i < 2; i++) {
+                    UnitNumber<?> m = x.multiply(y);
+                    Assert.assertEquals(a + " × " + b, qx.multiply(qy).getValue(), m.getValue());
+                    Assert.assertEquals(a + " × " + b, qx.multiply(qy).getUnit(), m.getUnit());
+                    UnitNumber<?> d = x.divide(y);
+                    Assert.assertEquals(a + " ÷ " + b, qx.divide(qy).getValue(), d.getValue());
+                    Assert.assertEquals(a + " ÷ " + b, qx.divide(qy).getUnit(), d.getUnit());
+                }
+            }
+        }
+
+        int size = UnitAlgebra.size();
+        parse("7 m").multiply(parse("9 cm"));
+        parse("7 元").divide(parse("9 平米"));
+        Assert.assertEquals(size, UnitAlgebra.size());
+        Assert.assertSame(parse("7 m").multiply(parse("9 cm")).getUnit(), parse("1 m").multiply(parse("2 m")).getUnit());
+    }
+
+    @Test
+    public void testOf() {
+        Unit<SKU> 个 = symbolFor("个").asType(SKU.class);
+        UnitNumber<SKU> n = UnitNumber.of(1, 个);
+        Assert.assertSame(n, UnitNumber.of(1, 个));
+        Assert.assertSame(n, parse("1 个"));
+        Assert.assertEquals("1 个", n.toString());
+        Assert.assertEquals(1, n.getValue());
+        Assert.assertSame(UnitNumber.of(0, Units.元), parse("0 元"));
+        Assert.assertSame(UnitNumber.of(-128, 米), UnitNumber.of(-128, 米));
+
+        // 运算结果为小整数
+        Assert.assertSame(UnitNumber.of(3, 个), UnitNumber.of(1, 个).add(UnitNumber.of(2, 个)));
+        Assert.assertSame(UnitNumber.of(100, 厘米), parse("1 m").asType(Length.class).to(厘米));
+
+        // 范围之外以及没有注册的单位
+        Assert.assertNotSame(UnitNumber.of(128, 米), UnitNumber.of(128, 米));
+        Assert.assertEquals(UnitNumber.of(128, 米), UnitNumber.of(128, 米));
+        Assert.assertEquals("100000 m", UnitNumber.of(100000, 米).toString());
+        Unit<UNKNOWN> u = 米.multiply(SECOND).asType(UNKNOWN.class);
+        Assert.assertNotSame(UnitNumber.of(1, u), UnitNumber.of(1, u));
+    }
+
     @Test
     public void testNegate() {
         UnitNumber<Money> m = parse("10 万元").asType(Money.class);
@@ -215,6 +270,39 @@ public class UnitNumberTest {
         Assert.assertFalse(l1.equals(l3));
     }
 
+    @Test
+    public void testToQuantity() {
+        UnitNumber<Length> l = parse("1.5 m").asType(Length.class);
+        Quantity<Length> q = l.toQuantity();
+        Assert.assertEquals(Quantities.getQuantity(l.getValue(), l.getUnit()), q);
+        Assert.assertEquals(l, new UnitNumber<>(q.getValue(), q.getUnit()));
+        Assert.assertSame(l, l.asType(Length.class));
+
+        boolean hasException = false;
+        try {
+            l.asType(Time.class);
+        } catch (ClassCastException e) {
+            hasException = true;
+        }
+        Assert.assertTrue(hasException);
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testSameUnitAddition() {
+        // 相同的线性单位直接相加
+        UnitNumber<?> a = parse("0.1 cm");
+        UnitNumber<?> b = parse("0.25 cm");
+        Assert.assertEquals("0.35 cm", UnitNumber.add(a, b).toString());
+        Assert.assertEquals("-0.15 cm", UnitNumber.subtract(a, b).toString());
+        Assert.assertEquals(0, UnitNumber.compare(UnitNumber.add(a, b), parse("3.5 mm")));
+
+        // 摄氏度有偏移量，与indriya一样转换为开尔文后计算
+        UnitNumber<?> t = parse("10 ℃");
+        Quantity<?> qt = t.toQuantity();
+        Assert.assertEquals(UnitNumber.add(t, t).getValue(), ((Quantity) qt).add(qt).getValue());
+    }
+
     @Test
     public void testEq() {
         UnitNumber<Length> l1 = parse("10 m").asType(Length.class);
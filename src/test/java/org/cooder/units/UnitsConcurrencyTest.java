@@ -0,0 +1,168 @@
+package org.cooder.units;
+
+import static javax.measure.MetricPrefix.KILO;
+import static tech.units.indriya.unit.Units.METRE;
+import static tech.units.indriya.unit.Units.SECOND;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.measure.Unit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 多个线程同时注册和查找单位
+ */
+public class UnitsConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int UNITS_PER_WRITER = 200;
+
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Test
+    public void testRegisterWhileReading() throws InterruptedException {
+        List<String> registered = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < UNITS_PER_WRITER; i++) {
+                        String name = name(writer * UNITS_PER_WRITER + i);
+                        Units.addSkuUnit(name, name);
+                        registered.add(name);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    writersDone.countDown();
+                }
+            }));
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    do {
+                        read(registered);
+                    } while (writersDone.getCount() > 0);
+                    read(registered);
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        if(error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        Assert.assertEquals(WRITERS * UNITS_PER_WRITER, registered.size());
+        for (String name : registered) {
+            Assert.assertNotNull(name, Units.nameFor(name));
+        }
+    }
+
+    @Test
+    public void testDuplicateRegistration() throws InterruptedException {
+        String name = name(100000);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger duplicated = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    Units.addSkuUnit(name, name);
+                    succeeded.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    duplicated.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertEquals(1, succeeded.get());
+        Assert.assertEquals(7, duplicated.get());
+        Assert.assertEquals(1, Units.all().stream().filter(u -> name.equals(u.getSymbol())).count());
+    }
+
+    private static void read(List<String> registered) {
+        // 快照内部必须一致：每个名字对应的单位都已经在单位集合中
+        Units.Snapshot snapshot = Units.snapshot();
+        for (Map.Entry<String, Unit<?>> e : snapshot.names.entrySet()) {
+            Assert.assertTrue(e.getKey(), snapshot.units.contains(e.getValue()));
+        }
+
+        int size = registered.size();
+        if(size == 0) {
+            return;
+        }
+        String name = registered.get(ThreadLocalRandom.current().nextInt(size));
+        Unit<?> u = Units.nameFor(name);
+        Assert.assertNotNull(name, u);
+        Assert.assertSame(u, Units.symbolFor(name));
+        Assert.assertSame(u, Units.getUnit(name));
+        Assert.assertSame(u, UnitNumber.parse("3 " + name).getUnit());
+        Assert.assertEquals(u, Units.parse(name + "/m").multiply(METRE));
+
+        // 组合单位和indriya内置的单位在注册的同时格式化、解析
+        Assert.assertEquals("3 kg/" + name, UnitNumber.parse("3 kg/" + name).toString());
+        Assert.assertSame(u, UnitNumber.parse("1/2 " + name).getUnit());
+        Assert.assertEquals(Units.元.divide(Units.平方米), Units.parse("元/平米"));
+        Assert.assertEquals("12 元/m²", UnitNumber.parse("12 元/平米").toString());
+        Assert.assertEquals(KILO(METRE), Units.parse("km"));
+        Assert.assertEquals(METRE.divide(SECOND), Units.parse("m/s"));
+        Assert.assertEquals("5 m/s", UnitNumber.parse("5 m/s").toString());
+        Assert.assertEquals("72 km/h", UnitNumber.parse("72 km/h").toString());
+        Assert.assertEquals("1 m", UnitNumber.parse("1 m").toString());
+    }
+
+    /**
+     * 只由字母组成的单位名，比如 "租户Abc"
+     */
+    private static String name(int i) {
+        StringBuilder sb = new StringBuilder("租户");
+        do {
+            sb.append((char) ('A' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return sb.toString();
+    }
+}
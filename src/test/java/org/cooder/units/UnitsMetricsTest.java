@@ -0,0 +1,167 @@
+package org.cooder.units;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import javax.measure.Unit;
+
+import org.cooder.units.UnitsMetrics.Operation;
+import org.cooder.units.UnitsMetrics.OperationStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UnitsMetricsTest {
+    @BeforeClass
+    public static void setup() {
+        Units.init();
+    }
+
+    @Before
+    public void enable() {
+        UnitsMetrics.reset();
+        UnitsMetrics.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        UnitsMetrics.setEnabled(false);
+        UnitsMetrics.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        UnitsMetrics.setEnabled(false);
+        UnitNumber.parse("5 m");
+        Units.parse("kg/桶", true);
+        new UnitNumber<>(1, Units.米).to(Units.厘米);
+        for (Operation op : Operation.values()) {
+            Assert.assertEquals(0, UnitsMetrics.stats(op).getCount());
+        }
+        Assert.assertEquals(0, UnitsMetrics.cacheHitCount() + UnitsMetrics.cacheMissCount());
+        Assert.assertTrue(UnitsMetrics.conversionCounts().isEmpty());
+    }
+
+    @Test
+    public void testOperations() {
+        for (int i = 0; i < 10; i++) {
+            UnitNumber.parse(i + " 箱");
+        }
+        try {
+            UnitNumber.parse("5 不存在的单位");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        OperationStats s = UnitsMetrics.stats(Operation.PARSE);
+        Assert.assertEquals(11, s.getCount());
+        Assert.assertEquals(1, s.getErrorCount());
+        Assert.assertTrue(s.getMaxNanos() > 0);
+        Assert.assertTrue(s.getP50Nanos() <= s.getP99Nanos());
+        Assert.assertTrue(s.getP99Nanos() <= s.getMaxNanos());
+    }
+
+    @Test
+    public void testCacheAndConversions() {
+        Units.parse("万元/平方厘米", true);
+        Units.parse("万元/平方厘米", true);
+        Units.parse("万元/平方厘米", false);
+        Assert.assertEquals(3, UnitsMetrics.stats(Operation.PARSE_UNIT).getCount());
+        Assert.assertEquals(1, UnitsMetrics.cacheHitCount());
+        Assert.assertEquals(1, UnitsMetrics.cacheMissCount());
+
+        for (int i = 0; i < 3; i++) {
+            new UnitNumber<>(i, Units.米).to(Units.厘米);
+        }
+        new UnitNumber<>(1, Units.米).to(Units.米);
+        Assert.assertEquals(3, UnitsMetrics.stats(Operation.CONVERT).getCount());
+        Assert.assertEquals(Long.valueOf(3), UnitsMetrics.conversionCounts().get(Units.米 + " -> " + Units.厘米));
+    }
+
+    @Test
+    public void testListener() {
+        List<Operation> ops = new ArrayList<>();
+        List<Unit<?>> units = new ArrayList<>();
+        UnitsMetrics.Listener l = new UnitsMetrics.Listener() {
+            @Override
+            public void onOperation(Operation op, long nanos, boolean success) {
+                ops.add(op);
+            }
+
+            @Override
+            public void onConversion(Unit<?> from, Unit<?> to) {
+                units.add(from);
+                units.add(to);
+            }
+        };
+        UnitsMetrics.addListener(l);
+        try {
+            new UnitNumber<>(1, Units.千克).to(Units.克);
+        } finally {
+            UnitsMetrics.removeListener(l);
+        }
+        new UnitNumber<>(1, Units.千克).to(Units.克);
+
+        Assert.assertEquals(1, ops.size());
+        Assert.assertEquals(Operation.CONVERT, ops.get(0));
+        Assert.assertSame(Units.千克, units.get(0));
+        Assert.assertSame(Units.克, units.get(1));
+    }
+
+    @Test
+    public void testFailures() {
+        try {
+            new UnitNumber<>(1, Units.人).to(Units.单位一);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(1, UnitsMetrics.stats(Operation.CONVERT).getCount());
+        Assert.assertEquals(1, UnitsMetrics.stats(Operation.CONVERT).getErrorCount());
+        Assert.assertTrue(UnitsMetrics.conversionCounts().isEmpty());
+
+        // 监听器抛出的异常不能覆盖操作本身的异常
+        UnitsMetrics.Listener l = (op, nanos, success) -> {
+            throw new UnsupportedOperationException();
+        };
+        UnitsMetrics.addListener(l);
+        try {
+            Assert.assertEquals(new UnitNumber<>(100, Units.厘米), new UnitNumber<>(1, Units.米).to(Units.厘米));
+            try {
+                UnitNumber.parse("5 不存在的单位");
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            UnitsMetrics.removeListener(l);
+        }
+        Assert.assertEquals(1, UnitsMetrics.stats(Operation.PARSE).getErrorCount());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        UnitsMetrics.registerMBean();
+        try {
+            UnitNumber.parse("3 个");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(UnitsMetrics.OBJECT_NAME);
+            Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+            TabularData ops = (TabularData) server.getAttribute(name, "Operations");
+            Assert.assertEquals(Operation.values().length, ops.size());
+            Assert.assertNotNull(server.getAttribute(name, "ConverterCacheHits"));
+
+            server.setAttribute(name, new javax.management.Attribute("Enabled", false));
+            Assert.assertFalse(UnitsMetrics.isEnabled());
+        } finally {
+            UnitsMetrics.unregisterMBean();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import javax.measure.Unit;
 import javax.measure.quantity.Area;
+import javax.measure.quantity.Length;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -88,6 +89,17 @@ public class UnitsTest {
 
         u = Units.getUnit("unknown");
         Assert.assertNull(u);
+
+        u = Units.getUnit("K");
+        Assert.assertTrue(u.equals(tech.units.indriya.unit.Units.KELVIN));
+
+        // 新增单位后索引需要更新
+        Assert.assertNull(Units.getUnit("英寸"));
+        Unit<?> inch = Units.addUnit(Units.厘米.multiply(2.54).asType(Length.class), "英寸");
+        Assert.assertEquals(inch, Units.getUnit(inch.toString()));
+        Assert.assertTrue(Units.contains(inch));
+        Assert.assertTrue(Units.contains(Units.平方米));
+        Assert.assertFalse(Units.contains(Units.平方米.multiply(Units.元)));
     }
 
     @Test